@@ -5,6 +5,10 @@ package com.google.android.accessibility.ext
 //fun CharSequence?.default(default: String = "") =
 //    if (this.isNullOrBlank()) default else this.toString()
 
+// 预编译，避免每次调用（每个节点）都重新编译正则
+private val NON_VISIBLE_REGEX = Regex("[^\u4e00-\u9fff\u0021-\u007E]")
+private val TRAILING_NUMBER_REGEX = Regex("\\(\\d+\\)$")
+
 fun CharSequence?.default(
     default: String = "",
     filter: Boolean = false
@@ -12,7 +16,7 @@ fun CharSequence?.default(
     val origin = if (this.isNullOrBlank()) default else this.toString()
     return if (filter) {
         // 匹配：中文汉字 + ASCII可见字符（从!到~，即\u0021-\u007E）
-        origin.replace(Regex("[^\u4e00-\u9fff\u0021-\u007E]"), "")
+        origin.replace(NON_VISIBLE_REGEX, "")
     } else origin
 }
 
@@ -21,9 +25,9 @@ fun String?.default(
     default: String = "",
     filter: Boolean = false
 ) = (this ?: default).let {
-    if (filter) it.replace(Regex("[^\u4e00-\u9fff\u0021-\u007E]"), "") else it
+    if (filter) it.replace(NON_VISIBLE_REGEX, "") else it
 }
 
 fun String.removeTrailingNumber(): String {
-    return replace(Regex("\\(\\d+\\)$"), "")
+    return replace(TRAILING_NUMBER_REGEX, "")
 }
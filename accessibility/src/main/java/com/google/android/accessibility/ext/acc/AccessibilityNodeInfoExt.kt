@@ -1,10 +1,10 @@
 package com.google.android.accessibility.ext.acc
 
 import android.accessibilityservice.AccessibilityService
-import android.util.Log
 import android.view.accessibility.AccessibilityNodeInfo
 import com.google.android.accessibility.ext.data.NodeWrapper
 import com.google.android.accessibility.ext.default
+import com.google.android.accessibility.ext.utils.KeywordAutomaton
 
 /**
  * 简化findAccessibilityNodeInfosByViewId
@@ -38,86 +38,112 @@ fun AccessibilityNodeInfo.contains(viewId: String): Boolean =
 
 
 /**
- * 递归遍历结点的方法
+ * 遍历结点的方法，基于 [NodeTraversal] 的显式栈实现
  */
 private fun AccessibilityNodeInfo?.findNodeWrapper(
     isPrint: Boolean = true,
-    prefix: String = "",
-    isLast: Boolean = false,
-    compare: (NodeWrapper) -> Boolean
-): NodeWrapper? {
-    val node = this ?: return null
-    val nodeWrapper = NodeWrapper(
-        className = node.className.default(),
-        text = node.text.default(),
-        id = node.viewIdResourceName.default(),
-        description = node.contentDescription.default(),
-        isClickable = node.isClickable,
-        isScrollable = node.isScrollable,
-        isEditable = node.isEditable,
-        nodeInfo = node
-    )
-
-    if (compare(nodeWrapper)) {
-        Log.d("findNodeWrapper", nodeWrapper.toString())
-        return nodeWrapper
-    }
-    val marker = if (isLast) """\--- """ else "+--- "
-    val currentPrefix = "$prefix$marker"
-    if (isPrint) {
-        Log.d("printNodeInfo", currentPrefix + nodeWrapper.toString())
-    }
-    val size = node.childCount
-    if (size > 0) {
-        val childPrefix = prefix + if (isLast) "  " else "|  "
-        val lastChildIndex = size - 1
-        for (index in 0 until size) {
-            val isLastChild = index == lastChildIndex
-            val find =
-                node.getChild(index).findNodeWrapper(isPrint, childPrefix, isLastChild, compare)
-            if (find != null) {
-                return find
-            }
-        }
-    }
-    return null
-}
+    order: TraversalOrder = TraversalOrder.DFS,
+    maxDepth: Int = Int.MAX_VALUE,
+    compare: (NodeCursor) -> Boolean
+): NodeWrapper? = NodeTraversal.find(this, order, maxDepth, isPrint, compare)
 
-fun AccessibilityNodeInfo?.findNodeWrapperById(id: String): NodeWrapper? {
-    return findNodeWrapper { node -> node.id == id }
+@JvmOverloads
+fun AccessibilityNodeInfo?.findNodeWrapperById(
+    id: String,
+    order: TraversalOrder = TraversalOrder.DFS,
+    maxDepth: Int = Int.MAX_VALUE
+): NodeWrapper? {
+    return findNodeWrapper(order = order, maxDepth = maxDepth) { node -> node.id == id }
 }
 
-fun AccessibilityNodeInfo?.findNodeWrapperByText(text: String): NodeWrapper? {
-    return findNodeWrapper { node -> node.text == text }
+@JvmOverloads
+fun AccessibilityNodeInfo?.findNodeWrapperByText(
+    text: String,
+    order: TraversalOrder = TraversalOrder.DFS,
+    maxDepth: Int = Int.MAX_VALUE
+): NodeWrapper? {
+    return findNodeWrapper(order = order, maxDepth = maxDepth) { node -> node.text == text }
 }
 
-fun AccessibilityNodeInfo?.findNodeWrapperByIdAndText(id: String, text: String): NodeWrapper? {
-    return findNodeWrapper { node -> node.text == text && node.id == id }
+@JvmOverloads
+fun AccessibilityNodeInfo?.findNodeWrapperByIdAndText(
+    id: String,
+    text: String,
+    order: TraversalOrder = TraversalOrder.DFS,
+    maxDepth: Int = Int.MAX_VALUE
+): NodeWrapper? {
+    return findNodeWrapper(order = order, maxDepth = maxDepth) { node -> node.text == text && node.id == id }
 }
 
+/**
+ * 文本包含任意关键词的第一个节点
+ * 关键词集合编译成 [KeywordAutomaton]（按集合缓存），每个节点只扫描一遍文本
+ * @param includeDesc 是否同时检查 contentDescription
+ */
+@JvmOverloads
 fun AccessibilityNodeInfo?.findNodeWrapperByContainsText(
     isPrint: Boolean = true,
-    textList: List<String>
+    textList: List<String>,
+    order: TraversalOrder = TraversalOrder.DFS,
+    maxDepth: Int = Int.MAX_VALUE,
+    includeDesc: Boolean = false
 ): NodeWrapper? {
-    return findNodeWrapper(isPrint) { node ->
-        textList.find { node.text?.contains(it) == true } != null
+    if (textList.isEmpty()) return null
+    val automaton = KeywordAutomaton.of(textList)
+    return findNodeWrapper(isPrint, order, maxDepth) { node ->
+        automaton.containsAny(node.node.text) ||
+                (includeDesc && automaton.containsAny(node.node.contentDescription))
     }
 }
 
+/**
+ * 同 [findNodeWrapperByContainsText]，同时返回命中的关键词
+ */
+@JvmOverloads
+fun AccessibilityNodeInfo?.findNodeWrapperAndKeyword(
+    textList: List<String>,
+    includeDesc: Boolean = false,
+    order: TraversalOrder = TraversalOrder.DFS,
+    maxDepth: Int = Int.MAX_VALUE
+): Pair<NodeWrapper, String>? {
+    if (textList.isEmpty()) return null
+    val automaton = KeywordAutomaton.of(textList)
+    var keyword: String? = null
+    val wrapper = findNodeWrapper(false, order, maxDepth) { node ->
+        keyword = automaton.firstKeyword(node.node.text)
+            ?: if (includeDesc) automaton.firstKeyword(node.node.contentDescription) else null
+        keyword != null
+    } ?: return null
+    return wrapper to keyword!!
+}
+
+@JvmOverloads
 fun AccessibilityNodeInfo?.findNodeWithCustomRule(
     isPrint: Boolean = true,
+    order: TraversalOrder = TraversalOrder.DFS,
+    maxDepth: Int = Int.MAX_VALUE,
     customRule: (AccessibilityNodeInfo) -> Boolean
 ): AccessibilityNodeInfo? {
-    return findNodeWrapper(isPrint) { node ->
-        val realNode = node.nodeInfo
-        if (realNode == null) {
-            false
-        } else {
-            customRule(realNode)
-        }
+    return findNodeWrapper(isPrint, order, maxDepth) { node ->
+        customRule(node.node)
     }?.nodeInfo
 }
 
+/**
+ * 收集所有满足规则的节点（不提前结束），最多 [limit] 个
+ */
+@JvmOverloads
+fun AccessibilityNodeInfo?.findAllNodesWithCustomRule(
+    order: TraversalOrder = TraversalOrder.DFS,
+    maxDepth: Int = Int.MAX_VALUE,
+    limit: Int = Int.MAX_VALUE,
+    customRule: (AccessibilityNodeInfo) -> Boolean
+): List<AccessibilityNodeInfo> {
+    return NodeTraversal.findAll(this, order, maxDepth, limit) { node ->
+        customRule(node.node)
+    }.mapNotNull { it.nodeInfo }
+}
+
 fun AccessibilityNodeInfo?.isTextView(): Boolean {
     this ?: return false
     return this.className.contains("TextView")
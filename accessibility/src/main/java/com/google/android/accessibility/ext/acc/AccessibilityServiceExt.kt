@@ -11,15 +11,22 @@ import android.view.accessibility.AccessibilityNodeInfo
 import androidx.annotation.RequiresApi
 import com.google.android.accessibility.ext.default
 import com.google.android.accessibility.ext.removeTrailingNumber
+import com.google.android.accessibility.ext.utils.GesturePriority
+import com.google.android.accessibility.ext.utils.GestureScheduler
 import com.google.android.accessibility.ext.utils.KeyguardUnLock
+import com.google.android.accessibility.ext.utils.ScrollDriver
 import com.google.android.accessibility.selecttospeak.SelectToSpeakServiceAbstract.Companion.copyNodeCompat
 import com.google.android.accessibility.selecttospeak.SelectToSpeakServiceAbstract.Companion.recycleCompat
 import kotlinx.coroutines.delay
+import java.io.File
 
 //fun AccessibilityService.findById(id: String): AccessibilityNodeInfo? {
 //    return rootInActiveWindow?.findNodesById(id)?.firstOrNull()
 //}
 fun AccessibilityService.findById(id: String): AccessibilityNodeInfo? {
+    snapshotOrNull()?.use { snap ->
+        return copyNodeCompat(snap.node(snap.firstById(id)))
+    }
     val raw = rootInActiveWindow
         ?.findNodesById(id)
         ?.firstOrNull()
@@ -33,6 +40,14 @@ fun AccessibilityService.findById(id: String): AccessibilityNodeInfo? {
 
 
 
+/**
+ * 开启 [WindowSnapshot.enabled] 时返回当前窗口快照（用完要 close，统一用 use {}），否则返回 null 走实时查询
+ */
+private fun AccessibilityService.snapshotOrNull(): WindowSnapshot? {
+    if (!WindowSnapshot.enabled) return null
+    return WindowSnapshot.obtain(this)
+}
+
 //fun AccessibilityService?.findNodesById(id: String): List<AccessibilityNodeInfo> {
 //    return this?.rootInActiveWindow?.findNodesById(id) ?: listOf()
 //}
@@ -57,6 +72,9 @@ fun AccessibilityService?.findNodesById(id: String): List<AccessibilityNodeInfo>
 //}
 
 fun AccessibilityService.findByText(text: String): AccessibilityNodeInfo? {
+    snapshotOrNull()?.use { snap ->
+        return copyNodeCompat(snap.node(snap.firstByText(text)))
+    }
     val raw = rootInActiveWindow
         ?.findNodeByText(text)
         ?: return null
@@ -77,10 +95,11 @@ fun AccessibilityService.findByText(text: String): AccessibilityNodeInfo? {
 
 fun AccessibilityService.findByContainsText(
     isPrint: Boolean = true,
-    textList: List<String>
+    textList: List<String>,
+    includeDesc: Boolean = false
 ): AccessibilityNodeInfo? {
     val raw = rootInActiveWindow
-        ?.findNodeWrapperByContainsText(isPrint, textList)
+        ?.findNodeWrapperByContainsText(isPrint, textList, includeDesc = includeDesc)
         ?.nodeInfo
         ?: return null
 
@@ -231,11 +250,15 @@ fun AccessibilityService.clickByTextOrDesc(
     useGesture: Boolean = true,
     mode: MatchMode = MatchMode.EXACT
 ): Boolean {
-    val root = rootInActiveWindow ?: return false
-
-    val raw = root.findNodeByTextOrDesc(keyword,mode) ?: return false
-    val node = copyNodeCompat(raw)
-    recycleCompat(raw)
+    val snap = snapshotOrNull()
+    val node = if (snap != null) {
+        // 快照里的节点还要给后续查找复用，不能回收，只复制
+        snap.use { copyNodeCompat(it.node(it.findClickableByTextOrDesc(keyword, mode))) } ?: return false
+    } else {
+        val root = rootInActiveWindow ?: return false
+        val raw = root.findNodeByTextOrDesc(keyword,mode) ?: return false
+        copyNodeCompat(raw).also { recycleCompat(raw) }
+    }
 
     return try {
         KeyguardUnLock.xpqclickNode(
@@ -282,41 +305,43 @@ private fun AccessibilityNodeInfo.findNodeByTextOrDesc(
     keyword: String,
     mode: MatchMode = MatchMode.EXACT
 ): AccessibilityNodeInfo? {
-
-    val text = this.text?.toString()
-    val desc = this.contentDescription?.toString()
-
-    fun match(value: String?): Boolean {
-        if (value == null) return false
-
-        return when (mode) {
-            MatchMode.EXACT -> {
-                value == keyword
-            }
-            MatchMode.PREFIX -> {
-                value.startsWith(keyword)
-            }
-            MatchMode.CONTAINS -> {
-                value.contains(keyword)
-            }
-            MatchMode.SEND_WITH_COUNT -> {
-                val pattern = Regex("^${Regex.escape(keyword)}(\\(\\d+\\))?$")
-                value.matches(pattern)
-            }
+    // 匹配器每次查询只构建一次，整棵树复用
+    val matcher = TextMatcher.of(keyword, mode)
+    var hit: AccessibilityNodeInfo? = null
+    NodeTraversal.traverse(this) { cursor ->
+        val node = cursor.node
+        if (matcher.matchesEither(node.text, node.contentDescription)) {
+            hit = node
+            false
+        } else {
+            true
         }
     }
+    val found = hit ?: return null
+    return if (found.isClickable) found else found.findClickableParent()
+}
 
-    if (match(text) || match(desc)) {
-        return if (isClickable) this else findClickableParent()
-    }
-
-    for (i in 0 until childCount) {
-        val child = getChild(i) ?: continue
-        val result = child.findNodeByTextOrDesc(keyword, mode)
-        if (result != null) return result
+/**
+ * 快照版 [findNodeByTextOrDesc]：同样的先序顺序，命中后取自身或可点击父节点
+ */
+private fun WindowSnapshot.findClickableByTextOrDesc(
+    keyword: String,
+    mode: MatchMode
+): Int {
+    val hit = if (mode == MatchMode.EXACT) {
+        val byText = firstByText(keyword)
+        val byDesc = firstByDesc(keyword)
+        when {
+            byText == WindowSnapshot.NO_INDEX -> byDesc
+            byDesc == WindowSnapshot.NO_INDEX -> byText
+            else -> minOf(byText, byDesc)
+        }
+    } else {
+        val matcher = TextMatcher.of(keyword, mode)
+        firstMatch { matcher.matchesEither(text(it), desc(it)) }
     }
-
-    return null
+    if (hit == WindowSnapshot.NO_INDEX) return WindowSnapshot.NO_INDEX
+    return clickableSelfOrParent(hit)
 }
 
 enum class MatchMode {
@@ -367,7 +392,8 @@ private fun AccessibilityService.clickByGesture(
         .addStroke(stroke)
         .build()
 
-    return dispatchGesture(gesture, null, null)
+    // true 表示已排队，队满被拒绝时为 false
+    return GestureScheduler.submit(this, gesture, GesturePriority.USER)
 }
 
 
@@ -434,13 +460,22 @@ fun AccessibilityService?.clickByIdAndText(
 ): Boolean {
     this ?: return false
 
-    val raw = rootInActiveWindow
-        ?.findNodesById(id)
-        ?.firstOrNull { it.text.default() == text }
-        ?: return false
-
-    val node = copyNodeCompat(raw)
-    recycleCompat(raw)
+    val snap = snapshotOrNull()
+    val node = if (snap != null) {
+        snap.use {
+            var i = it.firstById(id)
+            while (i != WindowSnapshot.NO_INDEX && it.text(i).default() != text) {
+                i = it.nextSameId(i)
+            }
+            copyNodeCompat(it.node(i))
+        }
+    } else {
+        val raw = rootInActiveWindow
+            ?.findNodesById(id)
+            ?.firstOrNull { it.text.default() == text }
+            ?: return false
+        copyNodeCompat(raw).also { recycleCompat(raw) }
+    }
     node ?: return false
 
     return try {
@@ -641,9 +676,11 @@ fun AccessibilityService?.clickByIdAndTextFilter(
 //        ?.firstOrNull { it.text.default(filter = true).removeTrailingNumber() == text }
 //        ?: return false
 
+    // 目标文本只规整一次，不在每个节点上重复处理
+    val target = text.default(filter = true).removeTrailingNumber()
     val raw = rootInActiveWindow
         ?.findNodesById(id)
-        ?.firstOrNull { it.text.default(filter = true).removeTrailingNumber() == text.default(filter = true).removeTrailingNumber() }
+        ?.firstOrNull { it.text.default(filter = true).removeTrailingNumber() == target }
         ?: return false
 
     val node = copyNodeCompat(raw)
@@ -888,7 +925,23 @@ suspend fun AccessibilityService?.scrollToFindByText(
 
 fun AccessibilityService?.printNodeInfo(simplePrint: Boolean = true): String {
     this ?: return ""
-    return rootInActiveWindow?.printNodeInfo(simplePrint = simplePrint).toString()
+    return rootInActiveWindow?.printNodeInfo(simplePrint = simplePrint) ?: ""
+}
+
+/**
+ * 把当前窗口的节点树导出到文件（默认紧凑二进制），开销小，可以在每次出错时抓取；返回节点数
+ */
+fun AccessibilityService?.dumpNodeTree(file: File, options: DumpOptions = DumpOptions(DumpFormat.BINARY)): Int {
+    this ?: return 0
+    val root = rootInActiveWindow ?: return 0
+    return try {
+        NodeTreeDumper.dumpToFile(root, file, options)
+    } catch (e: Exception) {
+        Log.e("dumpNodeTree", "导出失败: ${e.message}")
+        0
+    } finally {
+        recycleCompat(root)
+    }
 }
 
 
@@ -910,17 +963,17 @@ suspend fun AccessibilityService?.findAllChildByScroll(
     val timeL = 600L
     val attempts = 4
     while (parentNode.isScrollable && !isStop) {
-        parentNode.scrollForward()
-
-        delay(timeL)//时间太短的话有时候会获取不到节点信息
-        //==================
-        //==================
+        // 收到该列表的滚动事件就结束等待，timeL 只是上限
+        val step = ScrollDriver.awaitScrollForward(parentNode, timeL)
+        if (!step.scrolled) break
 
         var findNextNodes = findNextNodeInfos(parentViewId, childViewId, list)
 
-        for (i in 1..attempts) {
+        // 事件已表明最后一项可见时只再等一次：最后一屏的节点可能还没刷新
+        for (i in 1..(if (step.atEnd) 1 else attempts)) {
             if (findNextNodes.isEmpty()) {
-                delay(timeL) // 时间太短的话有时候会获取不到节点信息 如果findNextNodes为空，则延迟timeL毫秒
+                // 节点还没刷新：等下一个滚动 / 内容变化事件再查
+                ScrollDriver.awaitSettle(parentNode, timeL)
                 findNextNodes = findNextNodeInfos(parentViewId, childViewId, list)
             } else {
                 break // 如果findNextNodes非空，则退出循环
@@ -964,6 +1017,17 @@ fun AccessibilityService?.findChildNodes(
     childViewId: String
 ): List<AccessibilityNodeInfo> {
     this ?: return listOf()
+    snapshotOrNull()?.use { snap ->
+        val parent = snap.firstById(parentViewId)
+        if (parent == WindowSnapshot.NO_INDEX) return listOf()
+        val findList = mutableListOf<AccessibilityNodeInfo>()
+        for (child in snap.children(parent)) {
+            // 与 findNodesById 一致：子节点自身也参与匹配
+            val hit = if (snap.id(child) == childViewId) child else snap.firstByIdInSubtree(child, childViewId)
+            copyNodeCompat(snap.node(hit))?.let { findList.add(it) }
+        }
+        return findList
+    }
     val rootNode = rootInActiveWindow
     val parentNode: AccessibilityNodeInfo =
         rootNode?.findNodesById(parentViewId)?.firstOrNull() ?: return listOf()
@@ -1028,14 +1092,15 @@ suspend fun AccessibilityService?.selectChildByScroll(
     val timeL = 1000L
     val attempts = 5
     while (parentNode.isScrollable && findTexts.size < maxSelectCount && !isEnd) {
-        parentNode.scrollForward()
-        Log.d("selectChildByScroll", "滚动了一屏")
-        delay(timeL)
+        val step = ScrollDriver.awaitScrollForward(parentNode, timeL)
+        Log.d("selectChildByScroll", "滚动了一屏 $step")
+        if (!step.scrolled) break
         var findNextNodes = findNextNodeSelect(parentViewId, childViewId, maxSelectCount, findTexts, lastText)
 
-        for (i in 1..attempts) {
+        // 已到底时也至少再等一次，最后一屏的节点可能还没刷新
+        for (i in 1..(if (step.atEnd) 1 else attempts)) {
             if (findNextNodes.isEmpty()) {
-                delay(timeL)
+                ScrollDriver.awaitSettle(parentNode, timeL)
                 findNextNodes = findNextNodeSelect(parentViewId, childViewId, maxSelectCount, findTexts, lastText)
             } else {
                 break // 如果findNextNodes不为空，则跳出循环
@@ -0,0 +1,140 @@
+package com.google.android.accessibility.ext.acc
+
+import android.accessibilityservice.AccessibilityService
+import android.graphics.Rect
+import android.os.Build
+import android.view.accessibility.AccessibilityNodeInfo
+import androidx.annotation.RequiresApi
+import com.google.android.accessibility.ext.utils.KeyguardUnLock
+import com.google.android.accessibility.ext.utils.GestureComposer
+import com.google.android.accessibility.ext.utils.GesturePriority
+import com.google.android.accessibility.selecttospeak.SelectToSpeakServiceAbstract.Companion.copyNodeCompat
+import com.google.android.accessibility.selecttospeak.SelectToSpeakServiceAbstract.Companion.recycleCompat
+
+/**
+ * 批量点击的派发方式
+ */
+enum class BatchClickMode {
+    /** 合并成多笔画手势，按 startTime 错开依次按下（API 24+，低版本自动退回 ACTION） */
+    GESTURE,
+
+    /** 连续 performAction(ACTION_CLICK)，中间不等待 */
+    ACTION
+}
+
+/**
+ * 批量点击：一次遍历解析所有选择器，再流水线式派发点击
+ *
+ * 返回结果与 [selectors] 一一对应；没找到 / 选择器语法错误的项 success = false 并带 reason。
+ * 例：一个 5 个勾选框的表单在一帧内完成，不用 5 次重新取 rootInActiveWindow + 遍历 + delay。
+ *
+ * @param tapDurationMs 每个点击的按压时长
+ * @param tapIntervalMs 两次点击之间的间隔（手势模式下是笔画 startTime 的错开量）
+ */
+suspend fun AccessibilityService?.clickBatch(
+    selectors: List<String>,
+    mode: BatchClickMode = BatchClickMode.GESTURE,
+    tapDurationMs: Long = 50L,
+    tapIntervalMs: Long = 20L
+): List<ClickResult> {
+    this ?: return selectors.map { ClickResult(false, reason = "service_null") }
+    if (selectors.isEmpty()) return emptyList()
+
+    val nodes = resolveBatch(selectors)
+    val results = arrayOfNulls<ClickResult>(selectors.size)
+    try {
+        val useGesture = mode == BatchClickMode.GESTURE && Build.VERSION.SDK_INT >= Build.VERSION_CODES.N
+        if (useGesture) {
+            dispatchBatchGesture(nodes, results, tapDurationMs, tapIntervalMs)
+        } else {
+            for (i in nodes.indices) {
+                val node = nodes[i] ?: continue
+                val rect = Rect().apply(node::getBoundsInScreen)
+                val ok = node.click()
+                results[i] = ClickResult(
+                    success = ok,
+                    x = rect.centerX().toFloat(),
+                    y = rect.centerY().toFloat(),
+                    reason = if (ok) null else "action_failed"
+                )
+            }
+        }
+    } finally {
+        nodes.forEach { recycleCompat(it) }
+    }
+    return List(selectors.size) { i ->
+        results[i] ?: ClickResult(false, reason = if (nodes[i] == null) "node_not_found" else "dispatch_failed")
+    }
+}
+
+/**
+ * 单次遍历同时解析多个选择器，每个选择器取第一个命中节点（返回副本）
+ */
+fun AccessibilityService.resolveBatch(selectors: List<String>): Array<AccessibilityNodeInfo?> {
+    val result = arrayOfNulls<AccessibilityNodeInfo>(selectors.size)
+    val compiled = Array(selectors.size) { NodeSelector.compileOrNull(selectors[it]) }
+    var pending = compiled.count { it != null }
+    if (pending == 0) return result
+    val root = rootInActiveWindow ?: return result
+    try {
+        NodeTraversal.traverse(root) { cursor ->
+            val node = cursor.node
+            for (i in compiled.indices) {
+                if (result[i] != null) continue
+                val selector = compiled[i] ?: continue
+                if (selector.matches(node)) {
+                    result[i] = copyNodeCompat(node)
+                    pending--
+                }
+            }
+            pending > 0
+        }
+    } finally {
+        recycleCompat(root)
+    }
+    return result
+}
+
+/**
+ * 把多个点击合并成尽量少的 GestureDescription
+ */
+@RequiresApi(Build.VERSION_CODES.N)
+private suspend fun AccessibilityService.dispatchBatchGesture(
+    nodes: Array<AccessibilityNodeInfo?>,
+    results: Array<ClickResult?>,
+    tapDurationMs: Long,
+    tapIntervalMs: Long
+) {
+    val targets = ArrayList<Int>()
+    val xs = FloatArray(nodes.size)
+    val ys = FloatArray(nodes.size)
+    val rect = Rect()
+    for (i in nodes.indices) {
+        val node = nodes[i] ?: continue
+        node.getBoundsInScreen(rect)
+        if (rect.isEmpty) {
+            results[i] = ClickResult(false, reason = "bounds_empty")
+            continue
+        }
+        xs[i] = maxOf(0, rect.centerX()).toFloat()
+        ys[i] = maxOf(0, rect.centerY()).toFloat()
+        targets.add(i)
+    }
+    // 笔画按 startTime 依次错开，超过笔画上限时由 GestureComposer 拆成多个手势
+    val composer = GestureComposer()
+    for (i in targets) {
+        if (KeyguardUnLock.getShowClickIndicator()) {
+            KeyguardUnLock.showClickIndicator(this, xs[i].toInt(), ys[i].toInt())
+        }
+        composer.tap(xs[i], ys[i], pressMs = tapDurationMs, gapMs = if (composer.size == 0) 0L else tapIntervalMs)
+    }
+    val completed = composer.dispatch(this, GesturePriority.USER)
+    targets.forEachIndexed { order, i ->
+        results[i] = ClickResult(
+            success = completed[order],
+            x = xs[i],
+            y = ys[i],
+            reason = if (completed[order]) null else "gesture_cancelled"
+        )
+    }
+}
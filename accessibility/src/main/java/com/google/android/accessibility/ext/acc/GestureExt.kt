@@ -5,6 +5,8 @@ import android.accessibilityservice.GestureDescription
 import android.graphics.Path
 import android.graphics.Rect
 import android.view.accessibility.AccessibilityNodeInfo
+import com.google.android.accessibility.ext.utils.GesturePriority
+import com.google.android.accessibility.ext.utils.GestureScheduler
 import com.google.android.accessibility.ext.utils.KeyguardUnLock
 import com.google.android.accessibility.ext.utils.MyTouchGenerator
 
@@ -139,6 +141,7 @@ enum class ScrollDirection {
 /**
  * 利用手势模拟滑动
  * @param distance: 滑动距离占屏幕宽或高的百分比
+ * @return true 表示手势已进入 [GestureScheduler] 队列（不代表已执行完），队满被拒绝时为 false
  */
 private fun AccessibilityService?.gestureScroll(
     direction: ScrollDirection,
@@ -174,19 +177,16 @@ private fun AccessibilityService?.gestureScroll(
                 lineTo(x, y + realYDistance / 2)
             }
         }
-        return dispatchGesture(
+        // 滚动优先级最低，不会打断解锁 / 点击
+        return GestureScheduler.submit(
+            service,
             GestureDescription.Builder().apply {
                 addStroke(
                     GestureDescription.StrokeDescription(path, 0L, 300)
                 )
             }
                 .build(),
-            object : AccessibilityService.GestureResultCallback() {
-                override fun onCompleted(gestureDescription: GestureDescription?) {
-                    super.onCompleted(gestureDescription)
-                }
-            },
-            null
+            GesturePriority.BACKGROUND
         )
     } catch (e: Exception) {
         e.printStackTrace()
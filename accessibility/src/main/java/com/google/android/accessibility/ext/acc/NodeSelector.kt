@@ -0,0 +1,555 @@
+package com.google.android.accessibility.ext.acc
+
+import android.accessibilityservice.AccessibilityService
+import android.os.Build
+import android.util.Log
+import android.util.LruCache
+import android.view.accessibility.AccessibilityNodeInfo
+import com.google.android.accessibility.selecttospeak.SelectToSpeakServiceAbstract.Companion.copyNodeCompat
+import com.google.android.accessibility.selecttospeak.SelectToSpeakServiceAbstract.Companion.recycleCompat
+
+/*
+* 节点选择器（类似 CSS 选择器），规则可以直接以字符串下发
+*
+* 语法：
+*   复合条件之间用空格表示“后代”，用 > 表示“直接子节点”
+*   id:xxx           viewId，完整 id 或省略包名的短 id（如 id:btn_send）
+*   class:TextView   className，完整类名或简单类名
+*   text:xxx         text 完全相等，含空格时用引号 text:"发 送"
+*   desc:xxx         contentDescription 完全相等
+*   TextView         不带前缀时当作 class
+*   [attr]           布尔属性为 true：clickable scrollable editable checked checkable selected visible enabled focusable
+*   [attr=false]     布尔属性为 false
+*   [attr=v]  [attr^=v]  [attr$=v]  [attr*=v]  [attr~=正则]
+*                    attr 可以是 text desc id class hint
+*
+* 示例：
+*   id:com.tencent.mm:id/bottom > class:TextView[text^=发送]
+*   class:EditText[hint*=手机号][editable]
+*
+* 解析一次后编译成按开销排序的条件链，按字符串缓存在 LRU 中；
+* 执行时优先用 Binder 端的 findAccessibilityNodeInfosByViewId / ByText 预过滤，
+* 没有可用锚点时才整树遍历。
+* */
+
+/**
+ * 单个条件，cost 越小越先执行
+ */
+internal abstract class NodePredicate(val cost: Int) {
+    abstract fun test(node: AccessibilityNodeInfo): Boolean
+}
+
+/**
+ * 一个复合条件（两个组合符之间的部分）
+ */
+internal class SelectorStep(
+    /** 与左边一步的关系：true = 直接子节点，false = 后代 */
+    val childOfPrevious: Boolean,
+    /** 已按 cost 升序排列 */
+    val predicates: Array<NodePredicate>,
+    /** 精确 viewId（完整或短 id），可作为 Binder 端预过滤锚点 */
+    val anchorId: String?,
+    /** 精确 text，可作为 Binder 端预过滤锚点 */
+    val anchorText: String?
+) {
+    fun matches(node: AccessibilityNodeInfo): Boolean {
+        for (p in predicates) {
+            if (!p.test(node)) return false
+        }
+        return true
+    }
+}
+
+/**
+ * 编译后的选择器，线程安全、可复用
+ */
+class CompiledSelector internal constructor(
+    val source: String,
+    private val steps: Array<SelectorStep>
+) {
+
+    /**
+     * 一次查找内的父节点缓存：遍历得到的父子关系直接登记，其余的 node.parent 每个节点只走一次 Binder，
+     * 兄弟候选共享祖先链；查找结束时统一回收取到的父节点
+     */
+    private class Ancestry {
+        private val parents = HashMap<AccessibilityNodeInfo, AccessibilityNodeInfo?>()
+        private val fetched = ArrayList<AccessibilityNodeInfo>()
+
+        fun parentOf(node: AccessibilityNodeInfo): AccessibilityNodeInfo? {
+            if (parents.containsKey(node)) return parents[node]
+            val parent = try { node.parent } catch (_: Throwable) { null }
+            parents[node] = parent
+            if (parent != null) fetched.add(parent)
+            return parent
+        }
+
+        /** 遍历路径上已知的父子关系，不必再取 */
+        fun link(path: List<AccessibilityNodeInfo>) {
+            for (i in 1 until path.size) parents[path[i]] = path[i - 1]
+        }
+
+        fun recycle() {
+            for (node in fetched) recycleCompat(node)
+            fetched.clear()
+            parents.clear()
+        }
+    }
+
+    /**
+     * 节点本身是否满足整条选择器（含祖先约束）
+     */
+    fun matches(node: AccessibilityNodeInfo): Boolean {
+        val ancestry = Ancestry()
+        return try {
+            matchFrom(node, steps.size - 1, ancestry)
+        } finally {
+            ancestry.recycle()
+        }
+    }
+
+    fun findFirst(root: AccessibilityNodeInfo?): AccessibilityNodeInfo? =
+        findAll(root, limit = 1).firstOrNull()
+
+    /**
+     * 查找所有匹配节点，最多 [limit] 个
+     */
+    fun findAll(root: AccessibilityNodeInfo?, limit: Int = Int.MAX_VALUE): List<AccessibilityNodeInfo> {
+        root ?: return emptyList()
+        if (limit <= 0) return emptyList()
+        val ancestry = Ancestry()
+        try {
+            return findAll(root, limit, ancestry)
+        } finally {
+            ancestry.recycle()
+        }
+    }
+
+    private fun findAll(root: AccessibilityNodeInfo, limit: Int, ancestry: Ancestry): List<AccessibilityNodeInfo> {
+        val last = steps.last()
+
+        // 1️⃣ 最后一步有 id：直接在 Binder 端按 id 取候选
+        last.anchorId?.let { id ->
+            resolveAnchorIds(root, id)?.let { candidates ->
+                return filterCandidates(candidates, limit, ancestry)
+            }
+        }
+
+        // 2️⃣ 前面某一步有 id：只遍历这些锚点的子树
+        for (k in steps.size - 2 downTo 0) {
+            val id = steps[k].anchorId ?: continue
+            val scopes = resolveAnchorIds(root, id) ?: break
+            val result = ArrayList<AccessibilityNodeInfo>()
+            // 锚点子树可能嵌套，按节点去重
+            val seen = HashSet<AccessibilityNodeInfo>()
+            try {
+                for (scope in scopes) {
+                    if (result.size >= limit) break
+                    if (!matchFrom(scope, k, ancestry)) continue
+                    collect(scope, false, limit, ancestry, result, seen)
+                }
+            } finally {
+                for (scope in scopes) recycleCompat(scope)
+            }
+            return result
+        }
+
+        // 3️⃣ 最后一步有精确 text：Binder 端按文字预过滤（包含匹配），本地再精确校验
+        last.anchorText?.let { text ->
+            val candidates = try { root.findAccessibilityNodeInfosByText(text) } catch (_: Throwable) { null }
+            if (candidates != null) return filterCandidates(candidates, limit, ancestry)
+        }
+
+        // 4️⃣ 没有锚点，整树遍历
+        val result = ArrayList<AccessibilityNodeInfo>()
+        collect(root, true, limit, ancestry, result, null)
+        return result
+    }
+
+    /**
+     * 在 [start] 子树内按最后一步匹配，祖先校验复用遍历路径
+     */
+    private fun collect(
+        start: AccessibilityNodeInfo,
+        includeStart: Boolean,
+        limit: Int,
+        ancestry: Ancestry,
+        result: MutableList<AccessibilityNodeInfo>,
+        seen: MutableSet<AccessibilityNodeInfo>?
+    ) {
+        val lastIndex = steps.size - 1
+        val last = steps[lastIndex]
+        // path[d] 是当前节点在深度 d 的祖先（path[0] = start）
+        val path = ArrayList<AccessibilityNodeInfo>()
+        NodeTraversal.traverse(start) { cursor ->
+            val node = cursor.node
+            val depth = cursor.depth
+            while (path.size > depth) path.removeAt(path.size - 1)
+            path.add(node)
+            if ((depth > 0 || includeStart) && last.matches(node)) {
+                ancestry.link(path)
+                if (matchAncestors(node, lastIndex, ancestry) && (seen == null || seen.add(node))) {
+                    result.add(node)
+                }
+            }
+            result.size < limit
+        }
+    }
+
+    private fun filterCandidates(
+        candidates: List<AccessibilityNodeInfo>,
+        limit: Int,
+        ancestry: Ancestry
+    ): List<AccessibilityNodeInfo> {
+        val result = ArrayList<AccessibilityNodeInfo>(minOf(candidates.size, limit))
+        for (node in candidates) {
+            if (result.size < limit && matchFrom(node, steps.size - 1, ancestry)) {
+                result.add(node)
+            } else {
+                recycleCompat(node)
+            }
+        }
+        return result
+    }
+
+    /**
+     * 短 id 补全为 包名:id/xxx；补全后查不到时返回 null，交给后续遍历兜底
+     */
+    private fun resolveAnchorIds(root: AccessibilityNodeInfo, id: String): List<AccessibilityNodeInfo>? {
+        val fullId = if (id.contains(":id/")) {
+            id
+        } else {
+            val pkg = root.packageName?.toString() ?: return null
+            "$pkg:id/$id"
+        }
+        val found = try { root.findAccessibilityNodeInfosByViewId(fullId) } catch (_: Throwable) { null }
+        if (found.isNullOrEmpty() && fullId !== id) return null
+        return found ?: emptyList()
+    }
+
+    /**
+     * 从右往左校验：node 满足第 index 步，且祖先满足之前的步骤（后代组合符会回溯）
+     */
+    private fun matchFrom(node: AccessibilityNodeInfo, index: Int, ancestry: Ancestry): Boolean =
+        steps[index].matches(node) && matchAncestors(node, index, ancestry)
+
+    /**
+     * 已知 node 满足第 index 步，只校验祖先
+     */
+    private fun matchAncestors(node: AccessibilityNodeInfo, index: Int, ancestry: Ancestry): Boolean {
+        if (index == 0) return true
+        var ancestor = ancestry.parentOf(node)
+        if (steps[index].childOfPrevious) {
+            return ancestor != null && matchFrom(ancestor, index - 1, ancestry)
+        }
+        while (ancestor != null) {
+            if (matchFrom(ancestor, index - 1, ancestry)) return true
+            ancestor = ancestry.parentOf(ancestor)
+        }
+        return false
+    }
+
+    override fun toString(): String = source
+}
+
+object NodeSelector {
+    private const val TAG = "NodeSelector"
+
+    private val cache = LruCache<String, CompiledSelector>(64)
+
+    /**
+     * 编译选择器（带 LRU 缓存），语法错误抛 IllegalArgumentException
+     */
+    @JvmStatic
+    fun compile(selector: String): CompiledSelector {
+        cache.get(selector)?.let { return it }
+        val compiled = SelectorParser(selector).parse()
+        cache.put(selector, compiled)
+        return compiled
+    }
+
+    /**
+     * 编译失败时打日志并返回 null
+     */
+    @JvmStatic
+    fun compileOrNull(selector: String): CompiledSelector? = try {
+        compile(selector)
+    } catch (e: IllegalArgumentException) {
+        Log.e(TAG, "选择器语法错误: $selector", e)
+        null
+    }
+
+    @JvmStatic
+    fun clearCache() = cache.evictAll()
+}
+
+/**
+ * 选择器解析器，只在缓存未命中时使用
+ */
+private class SelectorParser(private val src: String) {
+    private var pos = 0
+
+    fun parse(): CompiledSelector {
+        val steps = ArrayList<SelectorStep>()
+        var childOfPrevious = false
+        skipSpaces()
+        while (pos < src.length) {
+            if (src[pos] == '>') {
+                if (steps.isEmpty() || childOfPrevious) fail("多余的 >")
+                childOfPrevious = true
+                pos++
+                skipSpaces()
+                continue
+            }
+            steps.add(parseStep(childOfPrevious))
+            childOfPrevious = false
+            skipSpaces()
+        }
+        if (steps.isEmpty()) fail("空选择器")
+        if (childOfPrevious) fail("> 后缺少条件")
+        return CompiledSelector(src, steps.toTypedArray())
+    }
+
+    private fun parseStep(childOfPrevious: Boolean): SelectorStep {
+        val predicates = ArrayList<NodePredicate>()
+        var anchorId: String? = null
+        var anchorText: String? = null
+        while (pos < src.length && !src[pos].isWhitespace() && src[pos] != '>') {
+            if (src[pos] == '[') {
+                pos++
+                predicates.add(parseAttribute())
+                continue
+            }
+            val start = pos
+            while (pos < src.length && src[pos] != ':' && src[pos] != '[' &&
+                !src[pos].isWhitespace() && src[pos] != '>'
+            ) pos++
+            val word = src.substring(start, pos)
+            if (pos < src.length && src[pos] == ':') {
+                pos++
+                val value = parseValue()
+                when (word) {
+                    "id" -> {
+                        anchorId = anchorId ?: value
+                        predicates.add(idEquals(value))
+                    }
+                    "class" -> predicates.add(classEquals(value))
+                    "text" -> {
+                        anchorText = anchorText ?: value
+                        predicates.add(stringPredicate(ATTR_TEXT, "=", value))
+                    }
+                    "desc" -> predicates.add(stringPredicate(ATTR_DESC, "=", value))
+                    else -> fail("未知前缀 $word")
+                }
+            } else {
+                if (word.isEmpty()) fail("缺少条件")
+                predicates.add(classEquals(word))
+            }
+        }
+        if (predicates.isEmpty()) fail("缺少条件")
+        predicates.sortBy { it.cost }
+        return SelectorStep(childOfPrevious, predicates.toTypedArray(), anchorId, anchorText)
+    }
+
+    private fun parseAttribute(): NodePredicate {
+        skipSpaces()
+        val start = pos
+        while (pos < src.length && (src[pos].isLetter())) pos++
+        val name = src.substring(start, pos)
+        if (name.isEmpty()) fail("缺少属性名")
+        skipSpaces()
+        if (pos >= src.length) fail("缺少 ]")
+        if (src[pos] == ']') {
+            pos++
+            return flagPredicate(name, true)
+        }
+        val opStart = pos
+        if (src[pos] in "^$*~") pos++
+        if (pos >= src.length || src[pos] != '=') fail("无效的运算符")
+        pos++
+        val op = src.substring(opStart, pos)
+        skipSpaces()
+        val value = parseValue(stopAtBracket = true)
+        skipSpaces()
+        if (pos >= src.length || src[pos] != ']') fail("缺少 ]")
+        pos++
+        if (name in FLAGS) {
+            if (op != "=") fail("布尔属性只支持 =")
+            return flagPredicate(name, value.toBooleanStrictOrNull() ?: fail("布尔属性值只能是 true/false"))
+        }
+        return when (name) {
+            "id" -> if (op == "=") idEquals(value) else stringPredicate(ATTR_ID, op, value)
+            "class" -> if (op == "=") classEquals(value) else stringPredicate(ATTR_CLASS, op, value)
+            "text" -> stringPredicate(ATTR_TEXT, op, value)
+            "desc" -> stringPredicate(ATTR_DESC, op, value)
+            "hint" -> stringPredicate(ATTR_HINT, op, value)
+            else -> fail("未知属性 $name")
+        }
+    }
+
+    private fun parseValue(stopAtBracket: Boolean = false): String {
+        if (pos < src.length && (src[pos] == '"' || src[pos] == '\'')) {
+            val quote = src[pos++]
+            val sb = StringBuilder()
+            while (pos < src.length && src[pos] != quote) {
+                if (src[pos] == '\\' && pos + 1 < src.length) pos++
+                sb.append(src[pos++])
+            }
+            if (pos >= src.length) fail("引号未闭合")
+            pos++
+            return sb.toString()
+        }
+        val start = pos
+        while (pos < src.length) {
+            val c = src[pos]
+            if (stopAtBracket) {
+                if (c == ']') break
+            } else if (c.isWhitespace() || c == '[' || c == '>') {
+                break
+            }
+            pos++
+        }
+        val value = src.substring(start, pos).trim()
+        if (value.isEmpty()) fail("缺少值")
+        return value
+    }
+
+    private fun skipSpaces() {
+        while (pos < src.length && src[pos].isWhitespace()) pos++
+    }
+
+    private fun fail(msg: String): Nothing =
+        throw IllegalArgumentException("$msg (位置 $pos): $src")
+
+    companion object {
+        private const val ATTR_TEXT = 0
+        private const val ATTR_DESC = 1
+        private const val ATTR_ID = 2
+        private const val ATTR_CLASS = 3
+        private const val ATTR_HINT = 4
+
+        private val FLAGS = setOf(
+            "clickable", "scrollable", "editable", "checked", "checkable",
+            "selected", "visible", "enabled", "focusable"
+        )
+
+        fun read(node: AccessibilityNodeInfo, attr: Int): String? = when (attr) {
+            ATTR_TEXT -> node.text?.toString()
+            ATTR_DESC -> node.contentDescription?.toString()
+            ATTR_ID -> node.viewIdResourceName
+            ATTR_CLASS -> node.className?.toString()
+            else -> if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) node.hintText?.toString() else null
+        }
+
+        fun flagPredicate(name: String, expected: Boolean): NodePredicate {
+            if (name !in FLAGS) throw IllegalArgumentException("未知布尔属性 $name")
+            return object : NodePredicate(1) {
+                override fun test(node: AccessibilityNodeInfo): Boolean {
+                    val actual = when (name) {
+                        "clickable" -> node.isClickable
+                        "scrollable" -> node.isScrollable
+                        "editable" -> node.isEditable
+                        "checked" -> node.isChecked
+                        "checkable" -> node.isCheckable
+                        "selected" -> node.isSelected
+                        "visible" -> node.isVisibleToUser
+                        "enabled" -> node.isEnabled
+                        else -> node.isFocusable
+                    }
+                    return actual == expected
+                }
+            }
+        }
+
+        fun idEquals(value: String): NodePredicate {
+            // 短 id 只比较 :id/ 之后的部分
+            val suffix = if (value.contains(":id/")) null else ":id/$value"
+            return object : NodePredicate(2) {
+                override fun test(node: AccessibilityNodeInfo): Boolean {
+                    val id = node.viewIdResourceName ?: return false
+                    return if (suffix == null) id == value else id.endsWith(suffix)
+                }
+            }
+        }
+
+        fun classEquals(value: String): NodePredicate {
+            val simple = if (value.contains('.')) null else ".$value"
+            return object : NodePredicate(2) {
+                override fun test(node: AccessibilityNodeInfo): Boolean {
+                    val cls = node.className?.toString() ?: return false
+                    return cls == value || (simple != null && cls.endsWith(simple))
+                }
+            }
+        }
+
+        fun stringPredicate(attr: Int, op: String, value: String): NodePredicate = when (op) {
+            "=" -> object : NodePredicate(3) {
+                override fun test(node: AccessibilityNodeInfo) = read(node, attr) == value
+            }
+            "^=" -> object : NodePredicate(4) {
+                override fun test(node: AccessibilityNodeInfo) = read(node, attr)?.startsWith(value) == true
+            }
+            "$=" -> object : NodePredicate(4) {
+                override fun test(node: AccessibilityNodeInfo) = read(node, attr)?.endsWith(value) == true
+            }
+            "*=" -> object : NodePredicate(5) {
+                override fun test(node: AccessibilityNodeInfo) = read(node, attr)?.contains(value) == true
+            }
+            else -> {
+                val regex = try {
+                    Regex(value)
+                } catch (e: Exception) {
+                    throw IllegalArgumentException("无效的正则: $value", e)
+                }
+                object : NodePredicate(10) {
+                    override fun test(node: AccessibilityNodeInfo): Boolean {
+                        val v = read(node, attr) ?: return false
+                        return regex.containsMatchIn(v)
+                    }
+                }
+            }
+        }
+    }
+}
+
+fun AccessibilityNodeInfo?.selectFirst(selector: String): AccessibilityNodeInfo? =
+    NodeSelector.compileOrNull(selector)?.findFirst(this)
+
+fun AccessibilityNodeInfo?.selectAll(selector: String, limit: Int = Int.MAX_VALUE): List<AccessibilityNodeInfo> =
+    NodeSelector.compileOrNull(selector)?.findAll(this, limit) ?: emptyList()
+
+/**
+ * 按选择器查找（返回副本）
+ */
+fun AccessibilityService.findBySelector(selector: String): AccessibilityNodeInfo? {
+    val raw = rootInActiveWindow?.selectFirst(selector) ?: return null
+    val safe = copyNodeCompat(raw)
+    recycleCompat(raw)
+    return safe
+}
+
+/**
+ * 按选择器查找并点击
+ */
+fun AccessibilityService?.clickBySelector(
+    selector: String,
+    gestureClick: Boolean = true
+): Boolean {
+    this ?: return false
+
+    val raw = rootInActiveWindow?.selectFirst(selector) ?: return false
+
+    val node = copyNodeCompat(raw)
+    recycleCompat(raw)
+    node ?: return false
+
+    return try {
+        if (gestureClick) {
+            gestureClick(node).takeIf { it } ?: node.click()
+        } else {
+            node.click().takeIf { it } ?: gestureClick(node)
+        }
+    } finally {
+        recycleCompat(node)
+    }
+}
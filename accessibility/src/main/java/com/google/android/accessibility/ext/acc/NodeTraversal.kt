@@ -0,0 +1,341 @@
+package com.google.android.accessibility.ext.acc
+
+import android.util.Log
+import android.view.accessibility.AccessibilityNodeInfo
+import com.google.android.accessibility.ext.data.NodeWrapper
+import com.google.android.accessibility.ext.default
+
+/**
+ * 遍历顺序
+ */
+enum class TraversalOrder {
+    DFS, // 深度优先（先序），与原递归 findNodeWrapper 顺序一致
+    BFS  // 广度优先，适合目标在浅层的页面
+}
+
+/**
+ * 遍历时传给判断条件的游标
+ *
+ * 整个遍历只有一个实例，属性第一次读取时才去取并缓存，切到下一个节点时清空。
+ * 不要在判断条件外持有它，需要保存结果请用 [toWrapper]。
+ */
+class NodeCursor internal constructor() {
+
+    lateinit var node: AccessibilityNodeInfo
+        private set
+
+    /** 相对遍历起点的深度，起点为 0 */
+    var depth: Int = 0
+        private set
+
+    private var classNameCache: String? = null
+    private var textCache: String? = null
+    private var idCache: String? = null
+    private var descriptionCache: String? = null
+
+    val className: String
+        get() = classNameCache ?: node.className.default().also { classNameCache = it }
+
+    val text: String
+        get() = textCache ?: node.text.default().also { textCache = it }
+
+    val id: String
+        get() = idCache ?: node.viewIdResourceName.default().also { idCache = it }
+
+    val description: String
+        get() = descriptionCache ?: node.contentDescription.default().also { descriptionCache = it }
+
+    val isClickable: Boolean get() = node.isClickable
+    val isScrollable: Boolean get() = node.isScrollable
+    val isEditable: Boolean get() = node.isEditable
+
+    internal fun moveTo(node: AccessibilityNodeInfo, depth: Int) {
+        this.node = node
+        this.depth = depth
+        classNameCache = null
+        textCache = null
+        idCache = null
+        descriptionCache = null
+    }
+
+    /**
+     * 只有命中或打印时才生成 NodeWrapper
+     */
+    fun toWrapper(): NodeWrapper = NodeWrapper(
+        className = className,
+        text = text,
+        id = id,
+        description = description,
+        isClickable = node.isClickable,
+        isScrollable = node.isScrollable,
+        isEditable = node.isEditable,
+        nodeInfo = node
+    )
+}
+
+/**
+ * 非递归节点遍历引擎
+ *
+ * 用可复用的显式栈/队列代替逐层递归：不会因层级过深栈溢出，
+ * 不命中的节点不创建 NodeWrapper，只有 isPrint 时才拼接前缀字符串。
+ */
+object NodeTraversal {
+
+    /**
+     * 每个线程复用一套数组；判断条件里再发起遍历时（重入）临时新建一套
+     *
+     * DFS 时一帧是一条从起点到当前节点路径上的节点：[nexts] 是下一个要取的子节点下标，[counts] 是子节点数，
+     * 子节点按需逐个 getChild，提前结束的查找不会多取兄弟节点；BFS 时一格是一个待访问节点。
+     */
+    private class Frames {
+        var nodes = arrayOfNulls<AccessibilityNodeInfo>(64)
+        var depths = IntArray(64)
+        var prefixes = arrayOfNulls<String>(64)
+        var lasts = BooleanArray(64)
+        var nexts = IntArray(64)
+        var counts = IntArray(64)
+        var inUse = false
+
+        fun ensure(capacity: Int) {
+            if (capacity <= nodes.size) return
+            val newCap = maxOf(nodes.size shl 1, capacity)
+            nodes = nodes.copyOf(newCap)
+            depths = depths.copyOf(newCap)
+            prefixes = prefixes.copyOf(newCap)
+            lasts = lasts.copyOf(newCap)
+            nexts = nexts.copyOf(newCap)
+            counts = counts.copyOf(newCap)
+        }
+
+        fun clear(from: Int, to: Int) {
+            for (i in from until to) {
+                nodes[i] = null
+                prefixes[i] = null
+            }
+        }
+    }
+
+    private val localFrames = object : ThreadLocal<Frames>() {
+        override fun initialValue() = Frames()
+    }
+
+    /**
+     * 找到第一个满足条件的节点（提前结束）
+     *
+     * @param order 遍历顺序
+     * @param maxDepth 最大深度（起点为 0），超过的子树不再展开
+     * @param isPrint 是否把未命中的节点按树形打印到 logcat
+     */
+    fun find(
+        root: AccessibilityNodeInfo?,
+        order: TraversalOrder = TraversalOrder.DFS,
+        maxDepth: Int = Int.MAX_VALUE,
+        isPrint: Boolean = false,
+        predicate: (NodeCursor) -> Boolean
+    ): NodeWrapper? {
+        var found: NodeWrapper? = null
+        traverse(root, order, maxDepth, isPrint) { cursor ->
+            if (predicate(cursor)) {
+                found = cursor.toWrapper()
+                Log.d("findNodeWrapper", found.toString())
+                false
+            } else {
+                true
+            }
+        }
+        return found
+    }
+
+    /**
+     * 收集所有满足条件的节点，最多 [limit] 个
+     */
+    fun findAll(
+        root: AccessibilityNodeInfo?,
+        order: TraversalOrder = TraversalOrder.DFS,
+        maxDepth: Int = Int.MAX_VALUE,
+        limit: Int = Int.MAX_VALUE,
+        predicate: (NodeCursor) -> Boolean
+    ): List<NodeWrapper> {
+        val result = mutableListOf<NodeWrapper>()
+        if (limit <= 0) return result
+        traverse(root, order, maxDepth, false) { cursor ->
+            if (predicate(cursor)) {
+                result.add(cursor.toWrapper())
+            }
+            result.size < limit
+        }
+        return result
+    }
+
+    /**
+     * 底层遍历，[visitor] 返回 false 时立即结束
+     */
+    fun traverse(
+        root: AccessibilityNodeInfo?,
+        order: TraversalOrder = TraversalOrder.DFS,
+        maxDepth: Int = Int.MAX_VALUE,
+        isPrint: Boolean = false,
+        visitor: (NodeCursor) -> Boolean
+    ) {
+        root ?: return
+        val shared = localFrames.get()!!
+        val frames = if (shared.inUse) Frames() else shared
+        frames.inUse = true
+        try {
+            if (order == TraversalOrder.DFS) {
+                dfs(frames, root, maxDepth, isPrint, visitor)
+            } else {
+                bfs(frames, root, maxDepth, isPrint, visitor)
+            }
+        } finally {
+            frames.inUse = false
+        }
+    }
+
+    /**
+     * 访问一个节点并按需打印，返回是否继续遍历
+     */
+    private inline fun visit(
+        cursor: NodeCursor,
+        node: AccessibilityNodeInfo,
+        depth: Int,
+        prefix: String?,
+        isLast: Boolean,
+        isPrint: Boolean,
+        visitor: (NodeCursor) -> Boolean
+    ): Boolean {
+        cursor.moveTo(node, depth)
+        if (!visitor(cursor)) return false
+        if (isPrint) {
+            val marker = if (isLast) """\--- """ else "+--- "
+            Log.d("printNodeInfo", prefix + marker + cursor.toWrapper().toString())
+        }
+        return true
+    }
+
+    /**
+     * 先序 DFS：访问节点后只记下子节点数，子节点在回到这一帧时才逐个获取
+     */
+    private fun dfs(
+        frames: Frames,
+        root: AccessibilityNodeInfo,
+        maxDepth: Int,
+        isPrint: Boolean,
+        visitor: (NodeCursor) -> Boolean
+    ) {
+        val cursor = NodeCursor()
+        var top = 0
+        try {
+            if (!visit(cursor, root, 0, "", false, isPrint, visitor)) return
+            if (maxDepth <= 0) return
+            top = push(frames, 0, root, 0, "", false, isPrint)
+            while (top > 0) {
+                val slot = top - 1
+                val index = frames.nexts[slot]
+                val count = frames.counts[slot]
+                if (index >= count) {
+                    frames.nodes[slot] = null
+                    frames.prefixes[slot] = null
+                    top--
+                    continue
+                }
+                frames.nexts[slot] = index + 1
+                val child = frames.nodes[slot]!!.getChild(index) ?: continue
+                val depth = frames.depths[slot] + 1
+                val childPrefix = frames.prefixes[slot]
+                val isLast = index == count - 1
+                if (!visit(cursor, child, depth, childPrefix, isLast, isPrint, visitor)) return
+                if (depth >= maxDepth) continue
+                top = push(frames, top, child, depth, childPrefix, isLast, isPrint)
+            }
+        } finally {
+            frames.clear(0, top)
+        }
+    }
+
+    /**
+     * 有子节点时压入一帧，返回新的栈顶
+     */
+    private fun push(
+        frames: Frames,
+        top: Int,
+        node: AccessibilityNodeInfo,
+        depth: Int,
+        prefix: String?,
+        isLast: Boolean,
+        isPrint: Boolean
+    ): Int {
+        val size = node.childCount
+        if (size <= 0) return top
+        frames.ensure(top + 1)
+        frames.nodes[top] = node
+        frames.depths[top] = depth
+        // 帧里存的是给子节点用的前缀
+        frames.prefixes[top] = if (isPrint) prefix + if (isLast) "  " else "|  " else null
+        frames.nexts[top] = 0
+        frames.counts[top] = size
+        return top + 1
+    }
+
+    /**
+     * 层序 BFS：[head, top) 作队列
+     */
+    private fun bfs(
+        frames: Frames,
+        root: AccessibilityNodeInfo,
+        maxDepth: Int,
+        isPrint: Boolean,
+        visitor: (NodeCursor) -> Boolean
+    ) {
+        val cursor = NodeCursor()
+        var head = 0
+        var top = 0
+        frames.nodes[top] = root
+        frames.depths[top] = 0
+        frames.prefixes[top] = ""
+        frames.lasts[top] = false
+        top++
+        try {
+            while (top > head) {
+                val slot = head++
+                val node = frames.nodes[slot] ?: continue
+                val depth = frames.depths[slot]
+                val prefix = frames.prefixes[slot]
+                val isLast = frames.lasts[slot]
+                frames.nodes[slot] = null
+                frames.prefixes[slot] = null
+
+                if (!visit(cursor, node, depth, prefix, isLast, isPrint, visitor)) return
+                if (depth >= maxDepth) continue
+
+                val size = node.childCount
+                if (size <= 0) continue
+                val childPrefix = if (isPrint) prefix + if (isLast) "  " else "|  " else null
+
+                if (head > 0 && top + size > frames.nodes.size) {
+                    // 队列前部已出队的空间挪回来再扩容
+                    val live = top - head
+                    System.arraycopy(frames.nodes, head, frames.nodes, 0, live)
+                    System.arraycopy(frames.depths, head, frames.depths, 0, live)
+                    System.arraycopy(frames.prefixes, head, frames.prefixes, 0, live)
+                    System.arraycopy(frames.lasts, head, frames.lasts, 0, live)
+                    frames.clear(live, top)
+                    head = 0
+                    top = live
+                }
+                frames.ensure(top + size)
+                val lastChildIndex = size - 1
+                for (index in 0..lastChildIndex) {
+                    val child = node.getChild(index) ?: continue
+                    frames.nodes[top] = child
+                    frames.depths[top] = depth + 1
+                    frames.prefixes[top] = childPrefix
+                    frames.lasts[top] = index == lastChildIndex
+                    top++
+                }
+            }
+        } finally {
+            frames.clear(0, maxOf(top, head))
+        }
+    }
+}
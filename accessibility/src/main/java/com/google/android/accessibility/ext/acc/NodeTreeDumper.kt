@@ -0,0 +1,422 @@
+package com.google.android.accessibility.ext.acc
+
+import android.graphics.Rect
+import android.util.Log
+import android.view.accessibility.AccessibilityNodeInfo
+import com.google.android.accessibility.selecttospeak.SelectToSpeakServiceAbstract.Companion.recycleCompat
+import java.io.BufferedOutputStream
+import java.io.File
+import java.io.FileOutputStream
+import java.io.OutputStream
+import java.io.OutputStreamWriter
+
+/**
+ * 节点树导出格式
+ */
+enum class DumpFormat {
+    /** 与 printNodeInfo 相同的树形文本 */
+    TEXT,
+
+    /** 每个节点一行 JSON，带 depth / index / parent，方便脚本还原树 */
+    JSON_LINES,
+
+    /** 紧凑二进制：头部 "NDMP" + 版本 + 字段掩码，之后每个节点 varint 深度 + 标志位 + 选中的字符串 / 坐标 */
+    BINARY
+}
+
+/**
+ * 可导出的字段
+ */
+enum class DumpField {
+    CLASS_NAME, TEXT, ID, DESCRIPTION,
+    CLICKABLE, SCROLLABLE, EDITABLE, SELECTED, CHECKED,
+    ENABLED, FOCUSED, BOUNDS, CHILD_COUNT
+}
+
+/**
+ * 导出参数
+ *
+ * @param simple 文本格式下只输出非空 / 为 true 的字段（同 NodeWrapper.toSimpleString）
+ * @param fields 要输出的字段，null 时按 [simple] 取与原 printNodeInfo 一致的字段
+ * @param maxDepth 最大深度（根为 0），更深的子树不展开
+ * @param maxNodes 最多输出的节点数，防止异常页面无限输出
+ * @param prefix 文本格式下每行额外的前缀（接在已有树形输出下面时用）
+ * @param rootIsLast 文本格式下根节点是否按最后一个孩子画
+ */
+class DumpOptions @JvmOverloads constructor(
+    val format: DumpFormat = DumpFormat.TEXT,
+    val simple: Boolean = true,
+    fields: Set<DumpField>? = null,
+    val maxDepth: Int = Int.MAX_VALUE,
+    val maxNodes: Int = 20_000,
+    val prefix: String = "",
+    val rootIsLast: Boolean = false
+) {
+    val fields: Set<DumpField> = fields ?: if (simple) SIMPLE_FIELDS else FULL_FIELDS
+
+    companion object {
+        @JvmField
+        val FULL_FIELDS: Set<DumpField> = setOf(
+            DumpField.CLASS_NAME, DumpField.TEXT, DumpField.ID, DumpField.DESCRIPTION,
+            DumpField.CLICKABLE, DumpField.SCROLLABLE, DumpField.EDITABLE
+        )
+
+        @JvmField
+        val SIMPLE_FIELDS: Set<DumpField> = FULL_FIELDS + setOf(DumpField.SELECTED, DumpField.CHECKED)
+    }
+}
+
+/**
+ * 流式节点树导出
+ *
+ * 非递归先序遍历，每个节点读一次属性后直接写进 Appendable / OutputStream，
+ * 不拼中间字符串、不在每层 toString()，耗时和内存都与节点数成线性；
+ * 遍历完的子节点立即回收。logcat 模式按约 [LOG_CHUNK_CHARS] 字符一段输出，不再每行一条 Log。
+ */
+object NodeTreeDumper {
+
+    private const val LOG_CHUNK_CHARS = 3500
+    private val BINARY_MAGIC = byteArrayOf('N'.code.toByte(), 'D'.code.toByte(), 'M'.code.toByte(), 'P'.code.toByte())
+    private const val BINARY_VERSION = 1
+
+    /**
+     * 遍历中当前节点的状态，整个导出只有一个实例
+     */
+    private class Frame {
+        lateinit var node: AccessibilityNodeInfo
+        var depth = 0
+        var index = 0
+        var parentIndex = -1
+        var isLast = false
+        /** lastAt[d]：当前路径上深度 d 的祖先是否是最后一个孩子，用来画前缀 */
+        var lastAt = BooleanArray(32)
+        val bounds = Rect()
+    }
+
+    /**
+     * 导出为文本 / JSON Lines，返回节点数
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun dump(root: AccessibilityNodeInfo?, out: Appendable, options: DumpOptions = DumpOptions()): Int {
+        require(options.format != DumpFormat.BINARY) { "BINARY 请用 OutputStream" }
+        return walk(root, options) { frame -> writeLine(frame, options, out) }
+    }
+
+    /**
+     * 导出到字节流（三种格式都支持），返回节点数；不关闭 [out]
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun dump(root: AccessibilityNodeInfo?, out: OutputStream, options: DumpOptions = DumpOptions()): Int {
+        if (options.format != DumpFormat.BINARY) {
+            val writer = OutputStreamWriter(out, Charsets.UTF_8).buffered()
+            val count = dump(root, writer, options)
+            writer.flush()
+            return count
+        }
+        val mask = options.fields.fold(0) { acc, f -> acc or (1 shl f.ordinal) }
+        out.write(BINARY_MAGIC)
+        out.write(BINARY_VERSION)
+        writeVarInt(out, mask)
+        return walk(root, options) { frame -> writeBinary(frame, options, out) }
+    }
+
+    /**
+     * 导出到文件，返回节点数
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun dumpToFile(root: AccessibilityNodeInfo?, file: File, options: DumpOptions = DumpOptions()): Int {
+        file.parentFile?.mkdirs()
+        return BufferedOutputStream(FileOutputStream(file), 64 * 1024).use { dump(root, it, options) }
+    }
+
+    /**
+     * 分段输出到 logcat，返回节点数
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun dumpToLogcat(
+        root: AccessibilityNodeInfo?,
+        tag: String = "printNodeInfo",
+        options: DumpOptions = DumpOptions()
+    ): Int {
+        require(options.format != DumpFormat.BINARY) { "logcat 不支持 BINARY" }
+        val chunk = StringBuilder(LOG_CHUNK_CHARS + 512)
+        val count = walk(root, options) { frame ->
+            writeLine(frame, options, chunk)
+            if (chunk.length >= LOG_CHUNK_CHARS) {
+                Log.d(tag, chunk.toString())
+                chunk.setLength(0)
+            }
+        }
+        if (chunk.isNotEmpty()) Log.d(tag, chunk.toString())
+        return count
+    }
+
+    /**
+     * 把已生成的文本从 [start] 开始按行分段输出到 logcat（每段约 [LOG_CHUNK_CHARS] 字符）
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun logChunked(tag: String, text: CharSequence, start: Int = 0) {
+        var from = start
+        while (from < text.length) {
+            var end = minOf(from + LOG_CHUNK_CHARS, text.length)
+            if (end < text.length) {
+                // 尽量在换行处断开
+                var cut = end
+                while (cut > from && text[cut - 1] != '\n') cut--
+                if (cut > from) end = cut
+            }
+            Log.d(tag, text.subSequence(from, end).toString())
+            from = end
+        }
+    }
+
+    /**
+     * 非递归先序遍历；根节点归调用方，子节点用完即回收
+     */
+    private inline fun walk(root: AccessibilityNodeInfo?, options: DumpOptions, emit: (Frame) -> Unit): Int {
+        root ?: return 0
+        var nodes = arrayOfNulls<AccessibilityNodeInfo>(64)
+        var depths = IntArray(64)
+        var parents = IntArray(64)
+        var lasts = BooleanArray(64)
+        var top = 0
+        nodes[top] = root
+        depths[top] = 0
+        parents[top] = -1
+        lasts[top] = options.rootIsLast
+        top++
+        val frame = Frame()
+        var count = 0
+        try {
+            while (top > 0) {
+                val slot = --top
+                val node = nodes[slot] ?: continue
+                nodes[slot] = null
+                if (count >= options.maxNodes) {
+                    if (node !== root) recycleCompat(node)
+                    continue
+                }
+                val depth = depths[slot]
+                frame.node = node
+                frame.depth = depth
+                frame.index = count
+                frame.parentIndex = parents[slot]
+                frame.isLast = lasts[slot]
+                if (depth >= frame.lastAt.size) frame.lastAt = frame.lastAt.copyOf(depth * 2)
+                frame.lastAt[depth] = frame.isLast
+                emit(frame)
+                val index = count++
+
+                val size = if (depth < options.maxDepth) node.childCount else 0
+                if (size > 0) {
+                    if (top + size > nodes.size) {
+                        val cap = maxOf(nodes.size shl 1, top + size)
+                        nodes = nodes.copyOf(cap)
+                        depths = depths.copyOf(cap)
+                        parents = parents.copyOf(cap)
+                        lasts = lasts.copyOf(cap)
+                    }
+                    // 倒序入栈，出栈即为先序
+                    for (i in size - 1 downTo 0) {
+                        val child = node.getChild(i) ?: continue
+                        nodes[top] = child
+                        depths[top] = depth + 1
+                        parents[top] = index
+                        lasts[top] = i == size - 1
+                        top++
+                    }
+                }
+                if (node !== root) recycleCompat(node)
+            }
+        } finally {
+            // 异常中断时回收还在栈里的子节点
+            for (i in 0 until top) {
+                val node = nodes[i]
+                if (node != null && node !== root) recycleCompat(node)
+            }
+        }
+        return count
+    }
+
+    private fun writeLine(frame: Frame, options: DumpOptions, out: Appendable) {
+        if (options.format == DumpFormat.JSON_LINES) {
+            writeJson(frame, options, out)
+        } else {
+            writeText(frame, options, out)
+        }
+        out.append('\n')
+    }
+
+    private fun writeText(frame: Frame, options: DumpOptions, out: Appendable) {
+        // 前缀：祖先是最后一个孩子画 "  "，否则画 "|  "
+        out.append(options.prefix)
+        for (d in 0 until frame.depth) {
+            out.append(if (frame.lastAt[d]) "  " else "|  ")
+        }
+        out.append(if (frame.isLast) """\--- """ else "+--- ")
+        val node = frame.node
+        val fields = options.fields
+        val simple = options.simple
+        var first = true
+        // 与原 NodeWrapper 一致：CharSequence 字段空白按空串输出，id（String）原样输出
+        fun field(name: String, value: CharSequence?, keepBlank: Boolean = false) {
+            if (simple && value.isNullOrBlank()) return
+            if (!first) out.append(" → ")
+            first = false
+            out.append(name).append(" = ")
+            if (value != null && (keepBlank || value.isNotBlank())) out.append(value)
+        }
+        fun flag(name: String, value: Boolean) {
+            if (simple && !value) return
+            if (!first) out.append(" → ")
+            first = false
+            out.append(name).append(" = ").append(if (value) "true" else "false")
+        }
+        if (DumpField.CLASS_NAME in fields) {
+            if (!first) out.append(" → ")
+            first = false
+            out.append("className = ")
+            val className = node.className
+            if (!className.isNullOrBlank()) out.append(className)
+        }
+        if (DumpField.TEXT in fields) field("text", node.text)
+        if (DumpField.ID in fields) field("id", node.viewIdResourceName, keepBlank = true)
+        if (DumpField.DESCRIPTION in fields) field("description", node.contentDescription)
+        if (DumpField.CLICKABLE in fields) flag("isClickable", node.isClickable)
+        if (DumpField.SCROLLABLE in fields) flag("isScrollable", node.isScrollable)
+        if (DumpField.EDITABLE in fields) flag("isEditable", node.isEditable)
+        if (DumpField.SELECTED in fields) flag("isSelected", node.isSelected)
+        if (DumpField.CHECKED in fields) flag("isChecked", node.isChecked)
+        if (DumpField.ENABLED in fields) flag("isEnabled", node.isEnabled)
+        if (DumpField.FOCUSED in fields) flag("isFocused", node.isFocused)
+        if (DumpField.BOUNDS in fields) {
+            node.getBoundsInScreen(frame.bounds)
+            if (!first) out.append(" → ")
+            first = false
+            val b = frame.bounds
+            out.append("bounds = [").append(b.left.toString()).append(',').append(b.top.toString())
+                .append("][").append(b.right.toString()).append(',').append(b.bottom.toString()).append(']')
+        }
+        if (DumpField.CHILD_COUNT in fields) {
+            if (!first) out.append(" → ")
+            first = false
+            out.append("childCount = ").append(node.childCount.toString())
+        }
+    }
+
+    private fun writeJson(frame: Frame, options: DumpOptions, out: Appendable) {
+        val node = frame.node
+        val fields = options.fields
+        out.append("{\"index\":").append(frame.index.toString())
+            .append(",\"parent\":").append(frame.parentIndex.toString())
+            .append(",\"depth\":").append(frame.depth.toString())
+        fun str(name: String, value: CharSequence?) {
+            if (value == null) return
+            out.append(",\"").append(name).append("\":")
+            writeJsonString(value, out)
+        }
+        fun flag(name: String, value: Boolean) {
+            if (options.simple && !value) return
+            out.append(",\"").append(name).append("\":").append(if (value) "true" else "false")
+        }
+        if (DumpField.CLASS_NAME in fields) str("class", node.className)
+        if (DumpField.TEXT in fields) str("text", node.text)
+        if (DumpField.ID in fields) str("id", node.viewIdResourceName)
+        if (DumpField.DESCRIPTION in fields) str("desc", node.contentDescription)
+        if (DumpField.CLICKABLE in fields) flag("clickable", node.isClickable)
+        if (DumpField.SCROLLABLE in fields) flag("scrollable", node.isScrollable)
+        if (DumpField.EDITABLE in fields) flag("editable", node.isEditable)
+        if (DumpField.SELECTED in fields) flag("selected", node.isSelected)
+        if (DumpField.CHECKED in fields) flag("checked", node.isChecked)
+        if (DumpField.ENABLED in fields) flag("enabled", node.isEnabled)
+        if (DumpField.FOCUSED in fields) flag("focused", node.isFocused)
+        if (DumpField.BOUNDS in fields) {
+            node.getBoundsInScreen(frame.bounds)
+            val b = frame.bounds
+            out.append(",\"bounds\":[").append(b.left.toString()).append(',').append(b.top.toString())
+                .append(',').append(b.right.toString()).append(',').append(b.bottom.toString()).append(']')
+        }
+        if (DumpField.CHILD_COUNT in fields) out.append(",\"childCount\":").append(node.childCount.toString())
+        out.append('}')
+    }
+
+    private fun writeJsonString(value: CharSequence, out: Appendable) {
+        out.append('"')
+        for (i in 0 until value.length) {
+            val c = value[i]
+            when {
+                c == '"' -> out.append("\\\"")
+                c == '\\' -> out.append("\\\\")
+                c == '\n' -> out.append("\\n")
+                c == '\r' -> out.append("\\r")
+                c == '\t' -> out.append("\\t")
+                c < ' ' -> {
+                    out.append("\\u00")
+                    out.append(HEX[c.code shr 4]).append(HEX[c.code and 0xF])
+                }
+                else -> out.append(c)
+            }
+        }
+        out.append('"')
+    }
+
+    private const val HEX = "0123456789abcdef"
+
+    /**
+     * 二进制记录：varint depth | varint flags | [字符串: varint 字节数 + UTF-8]... | [bounds: 4 个 zigzag varint] | [varint childCount]
+     * 字符串 / 坐标只写字段掩码里选中的，顺序同 [DumpField]；flags 的位序同 [DumpField] 中的布尔字段
+     */
+    private fun writeBinary(frame: Frame, options: DumpOptions, out: OutputStream) {
+        val node = frame.node
+        val fields = options.fields
+        writeVarInt(out, frame.depth)
+        var flags = 0
+        if (node.isClickable) flags = flags or (1 shl DumpField.CLICKABLE.ordinal)
+        if (node.isScrollable) flags = flags or (1 shl DumpField.SCROLLABLE.ordinal)
+        if (node.isEditable) flags = flags or (1 shl DumpField.EDITABLE.ordinal)
+        if (node.isSelected) flags = flags or (1 shl DumpField.SELECTED.ordinal)
+        if (node.isChecked) flags = flags or (1 shl DumpField.CHECKED.ordinal)
+        if (node.isEnabled) flags = flags or (1 shl DumpField.ENABLED.ordinal)
+        if (node.isFocused) flags = flags or (1 shl DumpField.FOCUSED.ordinal)
+        writeVarInt(out, flags)
+        if (DumpField.CLASS_NAME in fields) writeBinaryString(out, node.className)
+        if (DumpField.TEXT in fields) writeBinaryString(out, node.text)
+        if (DumpField.ID in fields) writeBinaryString(out, node.viewIdResourceName)
+        if (DumpField.DESCRIPTION in fields) writeBinaryString(out, node.contentDescription)
+        if (DumpField.BOUNDS in fields) {
+            node.getBoundsInScreen(frame.bounds)
+            val b = frame.bounds
+            writeVarInt(out, zigzag(b.left))
+            writeVarInt(out, zigzag(b.top))
+            writeVarInt(out, zigzag(b.right))
+            writeVarInt(out, zigzag(b.bottom))
+        }
+        if (DumpField.CHILD_COUNT in fields) writeVarInt(out, node.childCount)
+    }
+
+    private fun writeBinaryString(out: OutputStream, value: CharSequence?) {
+        if (value.isNullOrEmpty()) {
+            writeVarInt(out, 0)
+            return
+        }
+        val bytes = value.toString().toByteArray(Charsets.UTF_8)
+        writeVarInt(out, bytes.size)
+        out.write(bytes)
+    }
+
+    private fun zigzag(v: Int): Int = (v shl 1) xor (v shr 31)
+
+    private fun writeVarInt(out: OutputStream, value: Int) {
+        var v = value
+        while (v and 0x7F.inv() != 0) {
+            out.write((v and 0x7F) or 0x80)
+            v = v ushr 7
+        }
+        out.write(v)
+    }
+}
@@ -1,10 +1,13 @@
 package com.google.android.accessibility.ext.acc
 
-import android.util.Log
 import android.view.accessibility.AccessibilityNodeInfo
-import com.google.android.accessibility.ext.data.NodeWrapper
-import com.google.android.accessibility.ext.default
 
+/**
+ * 按树形打印节点（同时输出到 logcat），返回 [printContent] 的全部内容
+ *
+ * 由 [NodeTreeDumper] 单次流式生成，不再逐层递归 toString()；logcat 按段输出。
+ * 需要 JSON / 二进制 / 写文件时直接用 [NodeTreeDumper]。
+ */
 fun AccessibilityNodeInfo?.printNodeInfo(
     prefix: String = "",
     isLast: Boolean = false,
@@ -12,33 +15,8 @@ fun AccessibilityNodeInfo?.printNodeInfo(
     simplePrint: Boolean = false
 ): String {
     val node = this ?: return printContent.toString()
-    val nodeWrapper = NodeWrapper(
-        className = node.className.default(),
-        text = node.text.default(),
-        id = node.viewIdResourceName.default(),
-        description = node.contentDescription.default(),
-        isClickable = node.isClickable,
-        isScrollable = node.isScrollable,
-        isEditable = node.isEditable,
-        isSelected = node.isSelected,
-        isChecked = node.isChecked,
-        nodeInfo = node
-    )
-    val marker = if (isLast) """\--- """ else "+--- "
-    val currentPrefix = "$prefix$marker"
-    val print =
-        currentPrefix + if (simplePrint) nodeWrapper.toSimpleString() else nodeWrapper.toString()
-    printContent.append("${print}\n")
-    Log.d("printNodeInfo", print)
-
-    val size = node.childCount
-    if (size > 0) {
-        val childPrefix = prefix + if (isLast) "  " else "|  "
-        val lastChildIndex = size - 1
-        for (index in 0 until size) {
-            val isLastChild = index == lastChildIndex
-            node.getChild(index).printNodeInfo(childPrefix, isLastChild, printContent, simplePrint)
-        }
-    }
+    val start = printContent.length
+    NodeTreeDumper.dump(node, printContent, DumpOptions(simple = simplePrint, prefix = prefix, rootIsLast = isLast))
+    NodeTreeDumper.logChunked("printNodeInfo", printContent, start)
     return printContent.toString()
-}
\ No newline at end of file
+}
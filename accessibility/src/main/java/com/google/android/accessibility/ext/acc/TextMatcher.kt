@@ -0,0 +1,77 @@
+package com.google.android.accessibility.ext.acc
+
+/**
+ * 文本匹配器
+ *
+ * 每次查询只创建一次，整个遍历过程复用，避免在每个节点上重复编译正则。
+ * 纯 JVM 实现，不依赖 Android，可以直接做基准测试。
+ */
+abstract class TextMatcher {
+
+    abstract fun matches(value: CharSequence?): Boolean
+
+    /**
+     * text 或 desc 任意一个命中
+     */
+    fun matchesEither(text: CharSequence?, desc: CharSequence?): Boolean =
+        matches(text) || matches(desc)
+
+    private class Exact(private val keyword: String) : TextMatcher() {
+        override fun matches(value: CharSequence?): Boolean =
+            value != null && value.length == keyword.length && keyword.contentEquals(value)
+    }
+
+    private class Prefix(private val keyword: String) : TextMatcher() {
+        override fun matches(value: CharSequence?): Boolean =
+            value != null && value.startsWith(keyword)
+    }
+
+    private class Contains(private val keyword: String) : TextMatcher() {
+        override fun matches(value: CharSequence?): Boolean =
+            value != null && value.contains(keyword)
+    }
+
+    /**
+     * 手写的 “keyword” / “keyword(123)” 匹配，等价于 ^keyword(\(\d+\))?$，不走正则
+     */
+    private class WithCount(private val keyword: String) : TextMatcher() {
+        override fun matches(value: CharSequence?): Boolean {
+            value ?: return false
+            val k = keyword.length
+            val len = value.length
+            if (len < k || !value.startsWith(keyword)) return false
+            if (len == k) return true
+            // 至少要有 “(” + 1 位数字 + “)”
+            if (len < k + 3 || value[k] != '(' || value[len - 1] != ')') return false
+            for (i in k + 1 until len - 1) {
+                if (value[i] !in '0'..'9') return false
+            }
+            return true
+        }
+    }
+
+    private class Pattern(private val regex: Regex) : TextMatcher() {
+        override fun matches(value: CharSequence?): Boolean =
+            value != null && regex.matches(value)
+    }
+
+    companion object {
+
+        @JvmStatic
+        fun of(keyword: String, mode: MatchMode): TextMatcher = when (mode) {
+            MatchMode.EXACT -> Exact(keyword)
+            MatchMode.PREFIX -> Prefix(keyword)
+            MatchMode.CONTAINS -> Contains(keyword)
+            MatchMode.SEND_WITH_COUNT -> WithCount(keyword)
+        }
+
+        /**
+         * 整串匹配的正则（只编译一次）
+         */
+        @JvmStatic
+        fun regex(pattern: String): TextMatcher = Pattern(Regex(pattern))
+
+        @JvmStatic
+        fun regex(regex: Regex): TextMatcher = Pattern(regex)
+    }
+}
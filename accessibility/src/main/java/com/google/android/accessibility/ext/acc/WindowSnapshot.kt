@@ -0,0 +1,429 @@
+package com.google.android.accessibility.ext.acc
+
+import android.accessibilityservice.AccessibilityService
+import android.graphics.Rect
+import android.os.SystemClock
+import android.view.accessibility.AccessibilityEvent
+import android.view.accessibility.AccessibilityNodeInfo
+import com.google.android.accessibility.selecttospeak.SelectToSpeakServiceAbstract.Companion.recycleCompat
+import java.io.Closeable
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicReference
+
+/**
+ * 当前活动窗口的节点树快照
+ *
+ * 一次先序遍历把整棵树拍平到基本类型数组里，并按 viewId / text / contentDescription 建立哈希索引，
+ * 之后同一窗口内的多次查找都在进程内完成，不再反复走 Binder 遍历 rootInActiveWindow。
+ *
+ * 快照由 [SelectToSpeakServiceAbstract.dealEvent][com.google.android.accessibility.selecttospeak.SelectToSpeakServiceAbstract]
+ * 收到的窗口/内容变化事件失效，下一次查找时才会懒重建，所以一串连续的 CONTENT_CHANGED 只会触发一次重建。
+ *
+ * 节点下标即先序遍历顺序，节点 i 的子树是区间 [i, subtreeEnd(i))。
+ *
+ * 快照持有拍平时取到的全部节点，按引用计数回收：缓存占一个引用，[obtain] / [capture] 返回给调用方的也占一个，
+ * 调用方用完要 [close]（或 `use {}`）；失效 / 被新快照替换时缓存的引用释放，最后一个引用释放时统一 recycle。
+ */
+class WindowSnapshot private constructor(
+    val packageName: String,
+    val windowId: Int,
+    val size: Int,
+    /** 构建时的 [SystemClock.uptimeMillis] */
+    val createdAt: Long,
+    private val parents: IntArray,
+    private val depths: IntArray,
+    private val subtreeEnds: IntArray,
+    private val flags: IntArray,
+    private val bounds: IntArray,
+    private val classNames: Array<String?>,
+    private val texts: Array<String?>,
+    private val ids: Array<String?>,
+    private val descs: Array<String?>,
+    private val nodes: Array<AccessibilityNodeInfo?>,
+    private val idHeads: HashMap<String, Int>,
+    private val idNext: IntArray,
+    private val textHeads: HashMap<String, Int>,
+    private val textNext: IntArray,
+    private val descHeads: HashMap<String, Int>,
+    private val descNext: IntArray
+) : Closeable {
+
+    private val refs = AtomicInteger(1)
+
+    fun parent(index: Int): Int = parents[index]
+    fun depth(index: Int): Int = depths[index]
+    fun subtreeEnd(index: Int): Int = subtreeEnds[index]
+    fun className(index: Int): String? = classNames[index]
+    fun text(index: Int): String? = texts[index]
+    fun id(index: Int): String? = ids[index]
+    fun desc(index: Int): String? = descs[index]
+
+    fun isClickable(index: Int): Boolean = flags[index] and FLAG_CLICKABLE != 0
+    fun isScrollable(index: Int): Boolean = flags[index] and FLAG_SCROLLABLE != 0
+    fun isEditable(index: Int): Boolean = flags[index] and FLAG_EDITABLE != 0
+    fun isChecked(index: Int): Boolean = flags[index] and FLAG_CHECKED != 0
+    fun isSelected(index: Int): Boolean = flags[index] and FLAG_SELECTED != 0
+    fun isVisibleToUser(index: Int): Boolean = flags[index] and FLAG_VISIBLE != 0
+    fun isEnabled(index: Int): Boolean = flags[index] and FLAG_ENABLED != 0
+
+    fun getBounds(index: Int, outRect: Rect) {
+        val base = index * 4
+        outRect.set(bounds[base], bounds[base + 1], bounds[base + 2], bounds[base + 3])
+    }
+
+    /**
+     * 快照里保存的原始节点（不要回收；快照 close 之后失效，需要长期持有请自行 copyNodeCompat）
+     */
+    fun node(index: Int): AccessibilityNodeInfo? = if (index in 0 until size) nodes[index] else null
+
+    /**
+     * 第一个 viewId 完全相等的节点下标，找不到返回 -1
+     */
+    fun firstById(id: String): Int = idHeads[id] ?: NO_INDEX
+
+    fun firstByText(text: String): Int = textHeads[text] ?: NO_INDEX
+
+    fun firstByDesc(desc: String): Int = descHeads[desc] ?: NO_INDEX
+
+    /** 同一 viewId 链上的下一个节点下标（先序），没有返回 -1 */
+    fun nextSameId(index: Int): Int = idNext[index]
+
+    fun nextSameText(index: Int): Int = textNext[index]
+
+    fun nextSameDesc(index: Int): Int = descNext[index]
+
+    /**
+     * 所有 viewId 相等的节点下标，按先序排列
+     */
+    fun indicesById(id: String): IntArray = collect(firstById(id), idNext)
+
+    fun indicesByText(text: String): IntArray = collect(firstByText(text), textNext)
+
+    fun indicesByDesc(desc: String): IntArray = collect(firstByDesc(desc), descNext)
+
+    /**
+     * 在 [ancestor] 子树内（不含自身）第一个 viewId 相等的节点
+     */
+    fun firstByIdInSubtree(ancestor: Int, id: String): Int {
+        val end = subtreeEnds[ancestor]
+        var i = firstById(id)
+        while (i != NO_INDEX) {
+            if (i > ancestor && i < end) return i
+            if (i >= end) return NO_INDEX
+            i = idNext[i]
+        }
+        return NO_INDEX
+    }
+
+    /**
+     * 直接子节点下标
+     */
+    fun children(index: Int): IntArray {
+        val end = subtreeEnds[index]
+        var count = 0
+        var c = index + 1
+        while (c < end) {
+            count++
+            c = subtreeEnds[c]
+        }
+        val result = IntArray(count)
+        c = index + 1
+        var k = 0
+        while (c < end) {
+            result[k++] = c
+            c = subtreeEnds[c]
+        }
+        return result
+    }
+
+    /**
+     * 自身或最近的可点击祖先
+     */
+    fun clickableSelfOrParent(index: Int): Int {
+        var i = index
+        while (i != NO_INDEX) {
+            if (isClickable(i)) return i
+            i = parents[i]
+        }
+        return NO_INDEX
+    }
+
+    /**
+     * 线性扫描（进程内），返回第一个满足条件的下标
+     */
+    inline fun firstMatch(predicate: (Int) -> Boolean): Int {
+        for (i in 0 until size) {
+            if (predicate(i)) return i
+        }
+        return NO_INDEX
+    }
+
+    /**
+     * 释放一个引用，最后一个引用释放时回收全部节点
+     */
+    override fun close() {
+        if (refs.decrementAndGet() == 0) {
+            for (i in 0 until size) {
+                recycleCompat(nodes[i])
+                nodes[i] = null
+            }
+        }
+    }
+
+    /** 已回收的快照不能再加引用 */
+    private fun retain(): Boolean {
+        while (true) {
+            val r = refs.get()
+            if (r <= 0) return false
+            if (refs.compareAndSet(r, r + 1)) return true
+        }
+    }
+
+    private fun collect(head: Int, next: IntArray): IntArray {
+        if (head == NO_INDEX) return EMPTY
+        var count = 0
+        var i = head
+        while (i != NO_INDEX) {
+            count++
+            i = next[i]
+        }
+        val result = IntArray(count)
+        i = head
+        var k = 0
+        while (i != NO_INDEX) {
+            result[k++] = i
+            i = next[i]
+        }
+        return result
+    }
+
+    companion object {
+        const val NO_INDEX = -1
+
+        private const val FLAG_CLICKABLE = 1
+        private const val FLAG_SCROLLABLE = 1 shl 1
+        private const val FLAG_EDITABLE = 1 shl 2
+        private const val FLAG_CHECKED = 1 shl 3
+        private const val FLAG_SELECTED = 1 shl 4
+        private const val FLAG_VISIBLE = 1 shl 5
+        private const val FLAG_ENABLED = 1 shl 6
+
+        private val EMPTY = IntArray(0)
+
+        /**
+         * 是否让 AccessibilityServiceExt 中的 findById / findByText / clickByIdAndText /
+         * clickByTextOrDesc / findChildNodes 走快照，默认关闭（保持原有每次实时查询的行为）
+         */
+        @Volatile
+        var enabled: Boolean = false
+
+        /**
+         * 兜底过期时间，防止服务没订阅 CONTENT_CHANGED 时一直读到旧树
+         */
+        @Volatile
+        var maxAgeMs: Long = 1500L
+
+        /**
+         * 单次拍平的最大节点数，超出部分丢弃
+         */
+        @Volatile
+        var maxNodes: Int = 5000
+
+        private val generation = AtomicInteger(0)
+
+        private class Entry(val generation: Int, val snapshot: WindowSnapshot)
+
+        private val current = AtomicReference<Entry?>(null)
+
+        /**
+         * 由无障碍事件驱动失效，只打标记，不做任何遍历
+         */
+        @JvmStatic
+        fun invalidate(event: AccessibilityEvent?) {
+            when (event?.eventType) {
+                AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED,
+                AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED,
+                AccessibilityEvent.TYPE_VIEW_SCROLLED,
+                AccessibilityEvent.TYPE_WINDOWS_CHANGED -> invalidate()
+                else -> {}
+            }
+        }
+
+        @JvmStatic
+        fun invalidate() {
+            generation.incrementAndGet()
+            current.getAndSet(null)?.snapshot?.close()
+        }
+
+        /**
+         * 取当前有效快照，失效或过期时从 rootInActiveWindow 重建；返回的快照用完必须 [close]
+         */
+        @JvmStatic
+        fun obtain(service: AccessibilityService): WindowSnapshot? {
+            val gen = generation.get()
+            val cached = current.get()
+            if (cached != null && cached.generation == gen &&
+                SystemClock.uptimeMillis() - cached.snapshot.createdAt <= maxAgeMs &&
+                cached.snapshot.retain()
+            ) {
+                return cached.snapshot
+            }
+            val root = try { service.rootInActiveWindow } catch (_: Throwable) { null } ?: return null
+            val built = capture(root, maxNodes)
+            // 构建期间又收到了事件，则本次结果只给调用方用，不缓存
+            if (generation.get() == gen && built.retain()) {
+                val entry = Entry(gen, built)
+                current.getAndSet(entry)?.snapshot?.close()
+                // 放入缓存的同时又失效了：撤回缓存的引用
+                if (generation.get() != gen && current.compareAndSet(entry, null)) built.close()
+            }
+            return built
+        }
+
+        /**
+         * 非递归先序遍历，把 [root] 拍平成快照（root 归快照所有，[close] 时一起回收）
+         */
+        @JvmStatic
+        fun capture(root: AccessibilityNodeInfo, maxNodes: Int = this.maxNodes): WindowSnapshot {
+            var capacity = 256
+            var parents = IntArray(capacity)
+            var depths = IntArray(capacity)
+            var subtreeEnds = IntArray(capacity)
+            var flags = IntArray(capacity)
+            var bounds = IntArray(capacity * 4)
+            var classNames = arrayOfNulls<String>(capacity)
+            var texts = arrayOfNulls<String>(capacity)
+            var ids = arrayOfNulls<String>(capacity)
+            var descs = arrayOfNulls<String>(capacity)
+            var nodes = arrayOfNulls<AccessibilityNodeInfo>(capacity)
+
+            // 显式栈：节点 + 父下标 + 深度
+            var stackNodes = arrayOfNulls<AccessibilityNodeInfo>(64)
+            var stackParents = IntArray(64)
+            var stackDepths = IntArray(64)
+            var top = 0
+            stackNodes[0] = root
+            stackParents[0] = NO_INDEX
+            stackDepths[0] = 0
+            top = 1
+
+            val rect = Rect()
+            var size = 0
+            while (top > 0 && size < maxNodes) {
+                top--
+                val node = stackNodes[top]!!
+                stackNodes[top] = null
+                val parent = stackParents[top]
+                val depth = stackDepths[top]
+
+                if (size == capacity) {
+                    capacity = capacity shl 1
+                    parents = parents.copyOf(capacity)
+                    depths = depths.copyOf(capacity)
+                    subtreeEnds = subtreeEnds.copyOf(capacity)
+                    flags = flags.copyOf(capacity)
+                    bounds = bounds.copyOf(capacity * 4)
+                    classNames = classNames.copyOf(capacity)
+                    texts = texts.copyOf(capacity)
+                    ids = ids.copyOf(capacity)
+                    descs = descs.copyOf(capacity)
+                    nodes = nodes.copyOf(capacity)
+                }
+                val index = size++
+                parents[index] = parent
+                depths[index] = depth
+                nodes[index] = node
+                classNames[index] = node.className?.toString()
+                texts[index] = node.text?.toString()
+                ids[index] = node.viewIdResourceName
+                descs[index] = node.contentDescription?.toString()
+                var f = 0
+                if (node.isClickable) f = f or FLAG_CLICKABLE
+                if (node.isScrollable) f = f or FLAG_SCROLLABLE
+                if (node.isEditable) f = f or FLAG_EDITABLE
+                if (node.isChecked) f = f or FLAG_CHECKED
+                if (node.isSelected) f = f or FLAG_SELECTED
+                if (node.isVisibleToUser) f = f or FLAG_VISIBLE
+                if (node.isEnabled) f = f or FLAG_ENABLED
+                flags[index] = f
+                node.getBoundsInScreen(rect)
+                val base = index * 4
+                bounds[base] = rect.left
+                bounds[base + 1] = rect.top
+                bounds[base + 2] = rect.right
+                bounds[base + 3] = rect.bottom
+
+                val childCount = node.childCount
+                if (top + childCount > stackNodes.size) {
+                    val newCap = maxOf(stackNodes.size shl 1, top + childCount)
+                    stackNodes = stackNodes.copyOf(newCap)
+                    stackParents = stackParents.copyOf(newCap)
+                    stackDepths = stackDepths.copyOf(newCap)
+                }
+                // 倒序入栈，保证出栈顺序与递归先序一致
+                for (c in childCount - 1 downTo 0) {
+                    val child = try { node.getChild(c) } catch (_: Throwable) { null } ?: continue
+                    stackNodes[top] = child
+                    stackParents[top] = index
+                    stackDepths[top] = depth + 1
+                    top++
+                }
+            }
+            // 超出 maxNodes 时回收剩余栈上已经取到的子节点
+            while (top > 0) {
+                recycleCompat(stackNodes[--top])
+                stackNodes[top] = null
+            }
+
+            // 先序下标 + parent 数组 => 子树右边界（倒序累积）
+            for (i in 0 until size) subtreeEnds[i] = i + 1
+            for (i in size - 1 downTo 1) {
+                val p = parents[i]
+                if (p != NO_INDEX && subtreeEnds[i] > subtreeEnds[p]) subtreeEnds[p] = subtreeEnds[i]
+            }
+
+            val idHeads = HashMap<String, Int>()
+            val textHeads = HashMap<String, Int>()
+            val descHeads = HashMap<String, Int>()
+            val idNext = IntArray(size)
+            val textNext = IntArray(size)
+            val descNext = IntArray(size)
+            // 倒序插入链表头，链表即为先序
+            for (i in size - 1 downTo 0) {
+                idNext[i] = link(idHeads, ids[i], i)
+                textNext[i] = link(textHeads, texts[i], i)
+                descNext[i] = link(descHeads, descs[i], i)
+            }
+
+            return WindowSnapshot(
+                packageName = root.packageName?.toString() ?: "",
+                windowId = root.windowId,
+                size = size,
+                createdAt = SystemClock.uptimeMillis(),
+                parents = parents,
+                depths = depths,
+                subtreeEnds = subtreeEnds,
+                flags = flags,
+                bounds = bounds,
+                classNames = classNames,
+                texts = texts,
+                ids = ids,
+                descs = descs,
+                nodes = nodes,
+                idHeads = idHeads,
+                idNext = idNext,
+                textHeads = textHeads,
+                textNext = textNext,
+                descHeads = descHeads,
+                descNext = descNext
+            )
+        }
+
+        private fun link(heads: HashMap<String, Int>, key: String?, index: Int): Int {
+            if (key.isNullOrEmpty()) return NO_INDEX
+            val next = heads[key] ?: NO_INDEX
+            heads[key] = index
+            return next
+        }
+    }
+}
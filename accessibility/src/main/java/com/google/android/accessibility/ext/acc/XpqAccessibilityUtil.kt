@@ -90,6 +90,19 @@ object XpqAccessibilityUtil {
         return null
     }
 
+    /*
+     * 选择器版本，规则可以直接下发字符串（只写 [...] 属性条件，会拼在 EditText 后面）
+     * val edit = findEditTextBySelector("[hint*=手机号][editable]")
+     * */
+    @JvmStatic
+    @JvmOverloads
+    fun findEditTextBySelector(
+        selector: String,
+        node: AccessibilityNodeInfo? = accessibilityService?.rootInActiveWindow
+    ): AccessibilityNodeInfo? {
+        return node.selectFirst("class:android.widget.EditText$selector")
+    }
+
 /*    editNode?.let {
         it.performAction(AccessibilityNodeInfo.ACTION_FOCUS)
         setText(it, "13800138000")
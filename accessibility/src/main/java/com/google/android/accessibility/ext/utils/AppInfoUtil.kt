@@ -65,13 +65,8 @@ object AppInfoUtil {
     @JvmStatic
     @JvmOverloads
     fun getAppName(context: Context = appContext, pkgName: String): String {
-        return try {
-            val pm = context.packageManager
-            val ai = pm.getApplicationInfo(pkgName, 0)
-            pm.getApplicationLabel(ai).toString()
-        } catch (e: Exception) {
-            UNKNOWN
-        }
+        // PackageManager 与 context 无关，统一走 AppMetaCache
+        return AppMetaCache.getLabel(pkgName) ?: UNKNOWN
     }
 
     /**
@@ -84,12 +79,7 @@ object AppInfoUtil {
     @JvmStatic
     @JvmOverloads
     fun getVersionName(context: Context = appContext, pkgName: String): String {
-        return try {
-            val info = context.packageManager.getPackageInfo(pkgName, 0)
-            info.versionName ?: UNKNOWN
-        } catch (e: Exception) {
-            UNKNOWN
-        }
+        return AppMetaCache.getVersionName(pkgName) ?: UNKNOWN
     }
 
     /**
@@ -0,0 +1,138 @@
+package com.google.android.accessibility.ext.utils
+
+import android.content.BroadcastReceiver
+import android.content.Context
+import android.content.Intent
+import android.graphics.Bitmap
+import android.graphics.drawable.BitmapDrawable
+import android.graphics.drawable.Drawable
+import android.util.LruCache
+import androidx.core.graphics.drawable.toBitmap
+import com.google.android.accessibility.ext.utils.LibCtxProvider.Companion.appContext
+import com.google.android.accessibility.ext.utils.broadcastutil.BroadcastOwnerType
+import com.google.android.accessibility.ext.utils.broadcastutil.UnifiedBroadcastManager
+import com.google.android.accessibility.ext.utils.broadcastutil.UnifiedBroadcastManager.CHANNEL_PACKAGE
+import com.google.android.accessibility.ext.utils.broadcastutil.UnifiedBroadcastManager.packageFilter
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * 应用信息缓存（应用名 / versionName / 图标）
+ *
+ * getApplicationInfo / getApplicationLabel / getApplicationIcon 都是 Binder 调用，读 label 还可能读盘，
+ * 之前每条通知、每次弹窗都重新取一次。这里按包名缓存，收到 ACTION_PACKAGE_REPLACED / REMOVED 时失效。
+ * 图标转成固定尺寸的 Bitmap 放进按字节数限制的 LRU。
+ */
+object AppMetaCache {
+
+    private const val ICON_SIZE_PX = 96
+    private const val ICON_CACHE_BYTES = 4 * 1024 * 1024
+
+    // 包名 -> 应用名 / versionName；失败不缓存
+    private val labels = ConcurrentHashMap<String, String>()
+    private val versions = ConcurrentHashMap<String, String>()
+
+    private val icons = object : LruCache<String, Bitmap>(ICON_CACHE_BYTES) {
+        override fun sizeOf(key: String, value: Bitmap): Int = value.byteCount
+    }
+
+    @Volatile
+    private var receiverRegistered = false
+
+    private val packageReceiver = object : BroadcastReceiver() {
+        override fun onReceive(context: Context?, intent: Intent?) {
+            val pkg = intent?.data?.schemeSpecificPart ?: return
+            invalidate(pkg)
+        }
+    }
+
+    /**
+     * 应用名，失败返回 null（由调用方决定兜底文案）
+     */
+    @JvmStatic
+    fun getLabel(pkgName: String): String? {
+        labels[pkgName]?.let { return it }
+        ensureReceiver()
+        return try {
+            val pm = appContext.packageManager
+            val ai = pm.getApplicationInfo(pkgName, 0)
+            pm.getApplicationLabel(ai).toString().also { labels[pkgName] = it }
+        } catch (e: Exception) {
+            null
+        }
+    }
+
+    /**
+     * versionName，失败返回 null
+     */
+    @JvmStatic
+    fun getVersionName(pkgName: String): String? {
+        versions[pkgName]?.let { return it }
+        ensureReceiver()
+        return try {
+            appContext.packageManager.getPackageInfo(pkgName, 0).versionName
+                ?.also { versions[pkgName] = it }
+        } catch (e: Exception) {
+            null
+        }
+    }
+
+    /**
+     * 应用图标（缓存为 [ICON_SIZE_PX] 大小的 Bitmap），失败返回 null
+     */
+    @JvmStatic
+    fun getIcon(context: Context, pkgName: String): Drawable? {
+        val bitmap = icons.get(pkgName) ?: run {
+            ensureReceiver()
+            try {
+                context.packageManager.getApplicationIcon(pkgName)
+                    .toBitmap(ICON_SIZE_PX, ICON_SIZE_PX)
+                    .also { icons.put(pkgName, it) }
+            } catch (e: Exception) {
+                null
+            }
+        } ?: return null
+        return BitmapDrawable(context.resources, bitmap)
+    }
+
+    /**
+     * 预热：在工作线程提前加载目标应用的名称和图标
+     */
+    @JvmStatic
+    fun prewarm(pkgNames: Collection<String>) {
+        for (pkg in pkgNames) {
+            if (pkg.isBlank()) continue
+            getLabel(pkg)
+            getIcon(appContext, pkg)
+        }
+    }
+
+    @JvmStatic
+    fun invalidate(pkgName: String) {
+        labels.remove(pkgName)
+        versions.remove(pkgName)
+        icons.remove(pkgName)
+    }
+
+    @JvmStatic
+    fun clear() {
+        labels.clear()
+        versions.clear()
+        icons.evictAll()
+    }
+
+    private fun ensureReceiver() {
+        if (receiverRegistered) return
+        synchronized(this) {
+            if (receiverRegistered) return
+            // 注册失败（如频道被更高优先级占用）不记为已注册，下次读缓存时再试；期间缓存在应用升级后可能不刷新
+            receiverRegistered = UnifiedBroadcastManager.register(
+                channel = CHANNEL_PACKAGE,
+                owner = this,
+                ownerType = BroadcastOwnerType.SERVICE,
+                context = appContext,
+                receiver = packageReceiver,
+                filter = packageFilter
+            )
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.google.android.accessibility.ext.utils
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+
+/**
+ * 按包名分片的时间窗口去重
+ *
+ * 每个包名一个分片，分片里是固定 [slotsPerShard] 个槽位的环形缓冲（key 的 64 位哈希 + 记录时间），
+ * 记住该包最近 N 个 key，超过 [windowMs] 的记录视为过期。
+ *  - 读路径（判断是否重复）无锁，只读 AtomicLongArray
+ *  - 写路径只锁当前包名的分片，不同应用的通知互不影响
+ *
+ * 与原来“只记住全局最后一个 key”相比，两个应用交替发通知也能正确去重，
+ * 也不需要全局的最小处理间隔。
+ */
+class DedupWindow(
+    private val windowMs: Long,
+    private val slotsPerShard: Int = 16
+) {
+
+    private class Shard(slots: Int) {
+        val hashes = AtomicLongArray(slots)
+        // 0 表示空槽 / 正在写
+        val times = AtomicLongArray(slots)
+        var cursor = 0
+    }
+
+    private val shards = ConcurrentHashMap<String, Shard>()
+    private val accepted = AtomicLong()
+    private val suppressed = AtomicLong()
+
+    /** 被判定为重复而拦截的次数 */
+    val suppressedCount: Long get() = suppressed.get()
+
+    /** 放行次数 */
+    val acceptedCount: Long get() = accepted.get()
+
+    /**
+     * 窗口内第一次出现返回 true 并记录；重复返回 false
+     */
+    fun firstSeen(pkgName: String?, key: String, now: Long = System.currentTimeMillis()): Boolean {
+        val shard = shards.getOrPut(pkgName ?: "") { Shard(slotsPerShard) }
+        val hash = hash64(key)
+        // 无锁快速路径：大部分重复在这里直接返回
+        if (contains(shard, hash, now)) {
+            suppressed.incrementAndGet()
+            return false
+        }
+        synchronized(shard) {
+            if (contains(shard, hash, now)) {
+                suppressed.incrementAndGet()
+                return false
+            }
+            val i = shard.cursor
+            shard.cursor = (i + 1) % slotsPerShard
+            // 先清时间再写哈希，读方看到时间为 0 会跳过这个槽
+            shard.times.set(i, 0L)
+            shard.hashes.set(i, hash)
+            shard.times.set(i, if (now == 0L) 1L else now)
+        }
+        accepted.incrementAndGet()
+        return true
+    }
+
+    /**
+     * 只查询不记录
+     */
+    fun isDuplicate(pkgName: String?, key: String, now: Long = System.currentTimeMillis()): Boolean {
+        val shard = shards[pkgName ?: ""] ?: return false
+        return contains(shard, hash64(key), now)
+    }
+
+    fun clear() {
+        shards.clear()
+    }
+
+    private fun contains(shard: Shard, hash: Long, now: Long): Boolean {
+        for (i in 0 until slotsPerShard) {
+            val t1 = shard.times.get(i)
+            if (t1 == 0L || now - t1 >= windowMs) continue
+            val h = shard.hashes.get(i)
+            // 读期间被改写则忽略该槽
+            if (h == hash && shard.times.get(i) == t1) return true
+        }
+        return false
+    }
+
+    companion object {
+        /** FNV-1a 64 位的初始值，也是分段哈希的第一个 seed */
+        private const val FNV_OFFSET = -0x340d631b7bdddcdbL
+        private const val FNV_PRIME = 0x100000001b3L
+
+        /**
+         * FNV-1a 64 位哈希，不分配对象
+         */
+        @JvmStatic
+        fun hash64(s: CharSequence): Long = hash64(FNV_OFFSET, s)
+
+        /**
+         * 在 [seed]（上一段的结果）上继续哈希 [s]，用于多段拼接的 key 不必先拼字符串
+         */
+        @JvmStatic
+        fun hash64(seed: Long, s: CharSequence): Long {
+            var h = seed
+            for (i in 0 until s.length) {
+                h = h xor s[i].code.toLong()
+                h *= FNV_PRIME
+            }
+            return h
+        }
+
+        /**
+         * 在 [seed] 上继续哈希单个字符（分隔符）
+         */
+        @JvmStatic
+        fun hash64(seed: Long, c: Char): Long = (seed xor c.code.toLong()) * FNV_PRIME
+    }
+}
@@ -178,10 +178,6 @@ object FloatToastManager {
 
     /** 获取应用图标 */
     private fun getAppIcon(context: Context, packageName: String): Drawable? {
-        return try {
-            context.packageManager.getApplicationIcon(packageName)
-        } catch (_: Exception) {
-            null
-        }
+        return AppMetaCache.getIcon(context, packageName)
     }
 }
\ No newline at end of file
@@ -0,0 +1,258 @@
+package com.google.android.accessibility.ext.utils
+
+import android.accessibilityservice.AccessibilityService
+import android.accessibilityservice.GestureDescription
+import android.graphics.Path
+import android.os.Build
+import android.os.Looper
+import android.util.Log
+import androidx.annotation.RequiresApi
+import kotlinx.coroutines.suspendCancellableCoroutine
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * 手势合成器：把一串逻辑操作（点击、多点路径、多指、连续拖动）合成尽量少的 GestureDescription
+ *
+ * - 连续的点击 / 路径按时间轴排成同一个手势里的多个笔画，startTime 依次错开，保留原来的节奏（[gapMs]）；
+ *   超过 getMaxStrokeCount / getMaxGestureDuration 时才拆成下一个手势
+ * - [fingers] 是同一时刻按下的多指笔画，算一个逻辑操作
+ * - [drag] 在 API 26+ 用 StrokeDescription.continueStroke 串起来，每段一个手势，手指全程不抬起；低版本退回一笔画完
+ * - 所有手势通过 [GestureScheduler.submitChain] 首尾相接地派发，结果按逻辑操作的下标返回
+ *
+ * 例：6 位 PIN 从 6 次派发（6 次往返 + 6 次 sleep）变成 1 次。
+ */
+@RequiresApi(Build.VERSION_CODES.N)
+class GestureComposer {
+
+    private class Item(
+        /** 同时开始的笔画（点击 / 路径 / 多指）；drag 时为空 */
+        val paths: List<Path>,
+        val durationMs: Long,
+        val gapMs: Long,
+        /** drag 的每一段，按顺序 continueStroke */
+        val segments: List<Path> = emptyList()
+    )
+
+    /**
+     * 合成结果中的一个手势
+     *
+     * @param items 这个手势包含的逻辑操作下标
+     * @param continues 是否是 continueStroke 链的中间段（后面必须紧跟下一个）
+     */
+    class Part(val gesture: GestureDescription, val items: IntArray, val continues: Boolean)
+
+    private val items = ArrayList<Item>()
+
+    /** 逻辑操作数 */
+    val size: Int get() = items.size
+
+    /**
+     * 点击
+     * @param gapMs 与上一个操作结束之间的间隔
+     */
+    @JvmOverloads
+    fun tap(x: Float, y: Float, pressMs: Long = 50L, gapMs: Long = 0L): GestureComposer = apply {
+        items.add(Item(listOf(Path().apply { moveTo(x.coerceAtLeast(0f), y.coerceAtLeast(0f)) }), pressMs.coerceAtLeast(1L), gapMs))
+    }
+
+    /**
+     * 经过多个点的一笔（图案解锁、折线滑动）
+     */
+    @JvmOverloads
+    fun swipe(points: List<JieSuoUtils.Point>, durationMs: Long, gapMs: Long = 0L): GestureComposer = apply {
+        if (points.isEmpty()) return@apply
+        items.add(Item(listOf(polyline(points)), durationMs.coerceAtLeast(1L), gapMs))
+    }
+
+    /**
+     * 自定义路径
+     */
+    @JvmOverloads
+    fun path(path: Path, durationMs: Long, gapMs: Long = 0L): GestureComposer = apply {
+        items.add(Item(listOf(path), durationMs.coerceAtLeast(1L), gapMs))
+    }
+
+    /**
+     * 多指同时操作，每根手指一条折线，超出系统笔画上限的手指会被忽略
+     */
+    @JvmOverloads
+    fun fingers(strokes: List<List<JieSuoUtils.Point>>, durationMs: Long, gapMs: Long = 0L): GestureComposer = apply {
+        val paths = strokes.filter { it.isNotEmpty() }.take(GestureDescription.getMaxStrokeCount()).map { polyline(it) }
+        if (paths.isEmpty()) return@apply
+        items.add(Item(paths, durationMs.coerceAtLeast(1L), gapMs))
+    }
+
+    /**
+     * 连续拖动：相邻两点为一段，每段 [segmentMs]
+     */
+    @JvmOverloads
+    fun drag(points: List<JieSuoUtils.Point>, segmentMs: Long, gapMs: Long = 0L): GestureComposer = apply {
+        if (points.size < 2) {
+            swipe(points, segmentMs, gapMs)
+            return@apply
+        }
+        val seg = segmentMs.coerceAtLeast(1L)
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) {
+            items.add(Item(listOf(polyline(points)), seg * (points.size - 1), gapMs))
+            return@apply
+        }
+        val segments = (1 until points.size).map { i ->
+            Path().apply {
+                moveTo(points[i - 1].x, points[i - 1].y)
+                lineTo(points[i].x, points[i].y)
+            }
+        }
+        items.add(Item(emptyList(), seg, gapMs, segments))
+    }
+
+    fun clear() = items.clear()
+
+    /**
+     * 合成
+     */
+    fun build(): List<Part> {
+        val parts = ArrayList<Part>()
+        val maxStrokes = GestureDescription.getMaxStrokeCount()
+        val maxDuration = GestureDescription.getMaxGestureDuration()
+        var builder: GestureDescription.Builder? = null
+        var strokes = 0
+        var cursor = 0L
+        val current = ArrayList<Int>()
+
+        fun close() {
+            val b = builder ?: return
+            if (strokes > 0) parts.add(Part(b.build(), current.toIntArray(), false))
+            builder = null
+            strokes = 0
+            cursor = 0L
+            current.clear()
+        }
+
+        for ((index, item) in items.withIndex()) {
+            if (item.segments.isNotEmpty()) {
+                close()
+                addDrag(parts, index, item)
+                continue
+            }
+            var start = if (strokes == 0) item.gapMs else cursor + item.gapMs
+            if (strokes > 0 && (strokes + item.paths.size > maxStrokes || start + item.durationMs > maxDuration)) {
+                close()
+                start = item.gapMs
+            }
+            // 单个操作本身超过最长时长时，去掉前置间隔再钳制
+            if (start + item.durationMs > maxDuration) start = 0L
+            val duration = item.durationMs.coerceAtMost(maxDuration)
+            val b = builder ?: GestureDescription.Builder().also { builder = it }
+            for (p in item.paths) {
+                b.addStroke(GestureDescription.StrokeDescription(p, start, duration))
+            }
+            strokes += item.paths.size
+            cursor = start + duration
+            current.add(index)
+        }
+        close()
+        return parts
+    }
+
+    /**
+     * 合成并派发，[onResult] 的数组与逻辑操作一一对应
+     *
+     * @param token 要取消时传入
+     * @return 是否已进入手势队列，见 [GestureScheduler.submitChain]；没有可派发的操作时返回 false
+     */
+    @JvmOverloads
+    fun submit(
+        service: AccessibilityService,
+        priority: GesturePriority = GesturePriority.USER,
+        token: GestureToken? = null,
+        onResult: ((BooleanArray) -> Unit)? = null
+    ): Boolean {
+        val parts = build()
+        val results = BooleanArray(items.size) { true }
+        if (parts.isEmpty()) {
+            onResult?.invoke(BooleanArray(items.size))
+            return false
+        }
+        val remaining = AtomicInteger(parts.size)
+        return GestureScheduler.submitChain(service, parts.map { it.gesture }, priority, token) { i, ok ->
+            if (!ok) {
+                synchronized(results) { for (item in parts[i].items) results[item] = false }
+            }
+            if (remaining.decrementAndGet() == 0) onResult?.invoke(results)
+        }
+    }
+
+    /**
+     * suspend 版
+     */
+    suspend fun dispatch(
+        service: AccessibilityService,
+        priority: GesturePriority = GesturePriority.USER,
+        token: GestureToken? = null
+    ): BooleanArray = suspendCancellableCoroutine { cont ->
+        val once = OneShotContinuation(cont)
+        val t = token ?: GestureToken()
+        submit(service, priority, t) { once.finish(it) }
+        cont.invokeOnCancellation { t.cancel() }
+    }
+
+    /**
+     * 阻塞等待结果，给原来用 SystemClock.sleep 串行输入的后台线程调用。
+     * 回调在主线程，在主线程上等不到结果，所以主线程调用时直接拒绝：不提交，返回全 false
+     * （只提交不等的话，返回值说明不了手势是否执行，调用方按失败重试还会重复输入）；主线程请用 [submit] / [dispatch]
+     */
+    @JvmOverloads
+    fun dispatchBlocking(
+        service: AccessibilityService,
+        priority: GesturePriority = GesturePriority.USER,
+        timeoutMs: Long = totalDurationMs() + 2_000L
+    ): BooleanArray {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            Log.w(TAG, "主线程无法等待手势结果，拒绝派发，请在后台线程调用或改用 submit / dispatch")
+            return BooleanArray(items.size)
+        }
+        val latch = CountDownLatch(1)
+        var results: BooleanArray? = null
+        val token = GestureToken()
+        submit(service, priority, token) {
+            results = it
+            latch.countDown()
+        }
+        if (!latch.await(timeoutMs, TimeUnit.MILLISECONDS)) {
+            token.cancel()
+            return BooleanArray(items.size)
+        }
+        return results ?: BooleanArray(items.size)
+    }
+
+    /** 按原节奏执行完所有操作的总时长（不含派发往返） */
+    fun totalDurationMs(): Long = items.sumOf { item ->
+        item.gapMs + if (item.segments.isEmpty()) item.durationMs else item.durationMs * item.segments.size
+    }
+
+    @RequiresApi(Build.VERSION_CODES.O)
+    private fun addDrag(parts: MutableList<Part>, index: Int, item: Item) {
+        val last = item.segments.size - 1
+        var previous: GestureDescription.StrokeDescription? = null
+        for ((k, seg) in item.segments.withIndex()) {
+            val willContinue = k < last
+            // 只有第一段保留前置间隔，后续段必须立刻接上
+            val start = if (k == 0) item.gapMs else 0L
+            val stroke = previous?.continueStroke(seg, 0L, item.durationMs, willContinue)
+                ?: GestureDescription.StrokeDescription(seg, start, item.durationMs, willContinue)
+            parts.add(Part(GestureDescription.Builder().addStroke(stroke).build(), intArrayOf(index), willContinue))
+            previous = stroke
+        }
+    }
+
+    private fun polyline(points: List<JieSuoUtils.Point>): Path = Path().apply {
+        moveTo(points[0].x.coerceAtLeast(0f), points[0].y.coerceAtLeast(0f))
+        for (i in 1 until points.size) lineTo(points[i].x.coerceAtLeast(0f), points[i].y.coerceAtLeast(0f))
+    }
+
+    companion object {
+        private const val TAG = "GestureComposer"
+    }
+}
@@ -0,0 +1,437 @@
+package com.google.android.accessibility.ext.utils
+
+import android.accessibilityservice.AccessibilityService
+import android.accessibilityservice.GestureDescription
+import android.os.Build
+import android.os.Handler
+import android.os.Looper
+import android.os.SystemClock
+import android.util.Log
+import kotlinx.coroutines.suspendCancellableCoroutine
+
+/**
+ * 手势优先级，数值越小越先执行
+ */
+enum class GesturePriority {
+    /** 解锁（滑动解锁、输密码） */
+    UNLOCK,
+
+    /** 用户触发的点击 */
+    USER,
+
+    /** 后台滚动等可丢弃的手势 */
+    BACKGROUND
+}
+
+/**
+ * 取消令牌：一个令牌可以挂多个手势，[cancel] 后还在排队的全部撤回（回调 false）。
+ * 已经派发给系统的手势无法撤回，会照常执行完。
+ */
+class GestureToken {
+    @Volatile
+    var isCancelled = false
+        private set
+
+    fun cancel() {
+        if (isCancelled) return
+        isCancelled = true
+        GestureScheduler.withdraw(this)
+    }
+}
+
+/**
+ * 全局手势调度器
+ *
+ * 系统同一时间只执行一个手势，新的 dispatchGesture 会把正在执行的取消掉。原来各处（StableGestureClicker、
+ * MyTouchGenerator、KeyguardUnLock.move、clickByGesture、滚动）各自派发，会互相打断；这里统一排队：
+ * - 有界队列，按 [GesturePriority] 分级，同级先进先出；队满时挤掉优先级更低的最旧一条，否则拒绝新的
+ * - 上一个手势 onCompleted / onCancelled 之后立即派发下一个，不再固定 delay；
+ *   回调一直不来时由看门狗（手势总时长 + [WATCHDOG_MARGIN_MS]）兜底
+ * - 所有派发都在主线程，回调也在主线程
+ * - [submitChain] 提交必须首尾相接的一串手势（continueStroke），中间不会插入别的手势
+ * - [stats] 提供吞吐、排队 / 执行耗时、取消率
+ */
+object GestureScheduler {
+
+    private const val TAG = "GestureScheduler"
+    private const val WATCHDOG_MARGIN_MS = 1_000L
+
+    data class Stats(
+        /** 提交数 */
+        val submitted: Long,
+        /** onCompleted 数 */
+        val completed: Long,
+        /** 系统 onCancelled / dispatchGesture 返回 false 的数量 */
+        val cancelled: Long,
+        /** 排队中被令牌撤回或被挤掉的数量 */
+        val withdrawn: Long,
+        /** 队满被拒绝的数量 */
+        val rejected: Long,
+        /** 看门狗超时数 */
+        val timeouts: Long,
+        /** 当前排队数 */
+        val queued: Int,
+        /** 平均 / 最大排队耗时 */
+        val avgWaitMs: Long,
+        val maxWaitMs: Long,
+        /** 平均执行耗时（派发到回调） */
+        val avgRunMs: Long,
+        /** 从第一次提交起每分钟完成数 */
+        val perMinute: Double,
+        /** (cancelled + withdrawn + rejected + timeouts) / submitted */
+        val cancelRate: Double
+    )
+
+    private class Request(
+        val service: AccessibilityService,
+        val gesture: GestureDescription,
+        val priority: GesturePriority,
+        val token: GestureToken,
+        val timeoutMs: Long,
+        val onResult: ((Boolean) -> Unit)?,
+        val enqueuedAt: Long
+    ) {
+        var startedAt = 0L
+        var watchdog: Runnable? = null
+        /** 链上的下一个：当前完成后直接派发，不回队列 */
+        var next: Request? = null
+    }
+
+    /** 排队上限（不含正在执行的） */
+    @Volatile
+    @JvmStatic
+    var capacity = 32
+        set(value) {
+            field = value.coerceAtLeast(1)
+        }
+
+    private val lock = Any()
+    private val queues = Array(GesturePriority.values().size) { ArrayDeque<Request>() }
+    private var queued = 0
+    private var running: Request? = null
+    private val handler by lazy { Handler(Looper.getMainLooper()) }
+
+    private var submitted = 0L
+    private var completed = 0L
+    private var cancelled = 0L
+    private var withdrawn = 0L
+    private var rejected = 0L
+    private var timeouts = 0L
+    private var waitTotalMs = 0L
+    private var waitMaxMs = 0L
+    private var runTotalMs = 0L
+    private var started = 0L
+    private var firstSubmitAt = 0L
+
+    /**
+     * 提交一个手势，[onResult]：true = onCompleted，false = 取消 / 撤回 / 拒绝 / 超时。
+     * 执行后的结果在主线程回调；直接拒绝 / 撤回的在当时的调用线程回调
+     *
+     * @param token 要取消时传入令牌，多个手势共用一个令牌可以作为一组取消
+     * @param timeoutMs 等待回调的上限，<= 0 时按手势总时长 + [WATCHDOG_MARGIN_MS]
+     * @return true 表示已进入队列（是否执行成功看 [onResult]）；false 表示被直接拒绝
+     * （队满、系统版本低于 N 或令牌已取消），此时已回调 false
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun submit(
+        service: AccessibilityService,
+        gesture: GestureDescription,
+        priority: GesturePriority = GesturePriority.USER,
+        token: GestureToken? = null,
+        timeoutMs: Long = 0L,
+        onResult: ((Boolean) -> Unit)? = null
+    ): Boolean {
+        val t = token ?: GestureToken()
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N || t.isCancelled) {
+            deliver(onResult, false)
+            return false
+        }
+        return enqueue(Request(service, gesture, priority, t, timeoutMs, onResult, SystemClock.uptimeMillis()))
+    }
+
+    /**
+     * suspend 版：等手势执行完，协程取消时撤回令牌
+     */
+    suspend fun await(
+        service: AccessibilityService,
+        gesture: GestureDescription,
+        priority: GesturePriority = GesturePriority.USER,
+        token: GestureToken? = null,
+        timeoutMs: Long = 0L
+    ): Boolean = suspendCancellableCoroutine { cont ->
+        val once = OneShotContinuation(cont)
+        val t = token ?: GestureToken()
+        submit(service, gesture, priority, t, timeoutMs) { once.finish(it) }
+        cont.invokeOnCancellation { t.cancel() }
+    }
+
+    /**
+     * 提交一串首尾相接的手势（例如 StrokeDescription.continueStroke 链）：整串按一个排队项处理，
+     * 前一个完成后立即派发下一个，不让其它手势插进来；任何一个失败 / 令牌取消，后面的都回调 false。
+     *
+     * @param onResult 每个手势的结果（按下标）
+     * @return 同 [submit]：true 表示整串已进入队列，false 表示被直接拒绝（已全部回调 false）；[gestures] 为空返回 false
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun submitChain(
+        service: AccessibilityService,
+        gestures: List<GestureDescription>,
+        priority: GesturePriority = GesturePriority.USER,
+        token: GestureToken? = null,
+        onResult: ((index: Int, success: Boolean) -> Unit)? = null
+    ): Boolean {
+        val t = token ?: GestureToken()
+        if (gestures.isEmpty()) return false
+        if (gestures.size == 1) {
+            return submit(service, gestures[0], priority, t) { onResult?.invoke(0, it) }
+        }
+        val now = SystemClock.uptimeMillis()
+        val requests = gestures.mapIndexed { i, g ->
+            Request(service, g, priority, t, 0L, onResult?.let { cb -> { ok: Boolean -> cb(i, ok) } }, now)
+        }
+        for (i in 0 until requests.size - 1) requests[i].next = requests[i + 1]
+        synchronized(lock) { submitted += requests.size - 1 }
+        // 链头走普通排队（含容量、优先级规则）
+        val head = requests[0]
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N || t.isCancelled) {
+            failChain(head)
+            return false
+        }
+        return enqueue(head)
+    }
+
+    /**
+     * 撤回所有排队中的手势（正在执行的不受影响）
+     */
+    @JvmStatic
+    fun cancelAll() {
+        val removed = ArrayList<Request>()
+        synchronized(lock) {
+            for (queue in queues) {
+                removed.addAll(queue)
+                queue.clear()
+            }
+            queued = 0
+            removed.forEach { withdrawn += chainLength(it) }
+        }
+        removed.forEach { failChain(it) }
+    }
+
+    @JvmStatic
+    fun stats(): Stats = synchronized(lock) {
+        val now = SystemClock.uptimeMillis()
+        val elapsedMin = if (firstSubmitAt == 0L) 0.0 else (now - firstSubmitAt).coerceAtLeast(1L) / 60_000.0
+        Stats(
+            submitted = submitted,
+            completed = completed,
+            cancelled = cancelled,
+            withdrawn = withdrawn,
+            rejected = rejected,
+            timeouts = timeouts,
+            queued = queued,
+            avgWaitMs = if (started == 0L) 0L else waitTotalMs / started,
+            maxWaitMs = waitMaxMs,
+            avgRunMs = if (completed + cancelled + timeouts == 0L) 0L else runTotalMs / (completed + cancelled + timeouts),
+            perMinute = if (elapsedMin == 0.0) 0.0 else completed / elapsedMin,
+            cancelRate = if (submitted == 0L) 0.0 else (cancelled + withdrawn + rejected + timeouts).toDouble() / submitted
+        )
+    }
+
+    /** 是否有手势正在执行或排队 */
+    @JvmStatic
+    fun isBusy(): Boolean = synchronized(lock) { running != null || queued > 0 }
+
+    internal fun withdraw(token: GestureToken) {
+        val removed = ArrayList<Request>()
+        synchronized(lock) {
+            for (queue in queues) {
+                val it = queue.iterator()
+                while (it.hasNext()) {
+                    val r = it.next()
+                    if (r.token === token) {
+                        it.remove()
+                        removed.add(r)
+                    }
+                }
+            }
+            queued -= removed.size
+            removed.forEach { withdrawn += chainLength(it) }
+        }
+        removed.forEach { failChain(it) }
+    }
+
+    /**
+     * @return false 表示队满被拒绝（已回调失败）
+     */
+    private fun enqueue(request: Request): Boolean {
+        val priority = request.priority
+        var evicted: Request? = null
+        var accepted = true
+        synchronized(lock) {
+            submitted++
+            if (firstSubmitAt == 0L) firstSubmitAt = request.enqueuedAt
+            if (queued >= capacity) {
+                val e = evictBelow(priority)
+                evicted = e
+                if (e == null) {
+                    rejected += chainLength(request)
+                    accepted = false
+                } else {
+                    withdrawn += chainLength(e)
+                }
+            }
+            if (accepted) {
+                queues[priority.ordinal].addLast(request)
+                queued++
+            }
+        }
+        evicted?.let { failChain(it) }
+        if (!accepted) {
+            Log.w(TAG, "队列已满，拒绝 $priority 手势")
+            failChain(request)
+            return false
+        }
+        pump()
+        return true
+    }
+
+    /**
+     * 队满时挤掉优先级比 [priority] 低的最旧一条（从最低级找起）
+     */
+    private fun evictBelow(priority: GesturePriority): Request? {
+        for (i in queues.indices.reversed()) {
+            if (i <= priority.ordinal) return null
+            val r = queues[i].removeFirstOrNull() ?: continue
+            queued--
+            return r
+        }
+        return null
+    }
+
+    /**
+     * 空闲时取出下一个，切到主线程派发
+     */
+    private fun pump() {
+        val next = synchronized(lock) {
+            if (running != null) return
+            var r: Request? = null
+            for (queue in queues) {
+                r = queue.removeFirstOrNull()
+                if (r != null) break
+            }
+            r ?: return
+            queued--
+            running = r
+            r
+        }
+        if (Looper.myLooper() == Looper.getMainLooper()) dispatch(next) else handler.post { dispatch(next) }
+    }
+
+    private fun dispatch(r: Request) {
+        val now = SystemClock.uptimeMillis()
+        synchronized(lock) {
+            r.startedAt = now
+            val wait = now - r.enqueuedAt
+            waitTotalMs += wait
+            if (wait > waitMaxMs) waitMaxMs = wait
+            started++
+        }
+        val watchdog = Runnable { finish(r, false, timedOut = true) }
+        r.watchdog = watchdog
+        handler.postDelayed(watchdog, if (r.timeoutMs > 0) r.timeoutMs else totalDuration(r.gesture) + WATCHDOG_MARGIN_MS)
+        val dispatched = try {
+            r.service.dispatchGesture(r.gesture, object : AccessibilityService.GestureResultCallback() {
+                override fun onCompleted(gestureDescription: GestureDescription?) {
+                    finish(r, true)
+                }
+
+                override fun onCancelled(gestureDescription: GestureDescription?) {
+                    finish(r, false)
+                }
+            }, null)
+        } catch (e: Throwable) {
+            Log.e(TAG, "dispatchGesture 异常: ${e.message}")
+            false
+        }
+        if (!dispatched) finish(r, false)
+    }
+
+    /**
+     * 只有仍是当前手势时才生效（看门狗与系统回调谁先到算谁）
+     */
+    private fun finish(r: Request, success: Boolean, timedOut: Boolean = false) {
+        synchronized(lock) {
+            if (running !== r) return
+            running = null
+            runTotalMs += SystemClock.uptimeMillis() - r.startedAt
+            when {
+                success -> completed++
+                timedOut -> timeouts++
+                else -> cancelled++
+            }
+        }
+        r.watchdog?.let { handler.removeCallbacks(it) }
+        deliver(r.onResult, success)
+        val next = r.next
+        if (next != null) {
+            r.next = null
+            if (success && !r.token.isCancelled) {
+                // 链上的下一个直接接上（此时在主线程），保证中间没有其它手势
+                val claimed = synchronized(lock) {
+                    if (running == null) {
+                        running = next
+                        true
+                    } else false
+                }
+                if (claimed) {
+                    dispatch(next)
+                    return
+                }
+            }
+            synchronized(lock) { withdrawn += chainLength(next) }
+            failChain(next)
+        }
+        pump()
+    }
+
+    /** 回调 false 给 [head] 及其后整条链 */
+    private fun failChain(head: Request) {
+        var r: Request? = head
+        while (r != null) {
+            val next = r.next
+            r.next = null
+            deliver(r.onResult, false)
+            r = next
+        }
+    }
+
+    private fun chainLength(head: Request): Int {
+        var n = 0
+        var r: Request? = head
+        while (r != null) {
+            n++
+            r = r.next
+        }
+        return n
+    }
+
+    private fun deliver(onResult: ((Boolean) -> Unit)?, success: Boolean) {
+        onResult ?: return
+        try {
+            onResult(success)
+        } catch (e: Throwable) {
+            Log.e(TAG, "手势回调异常: ${e.message}")
+        }
+    }
+
+    private fun totalDuration(gesture: GestureDescription): Long {
+        var end = 0L
+        for (i in 0 until gesture.strokeCount) {
+            val stroke = gesture.getStroke(i)
+            end = maxOf(end, stroke.startTime + stroke.duration)
+        }
+        return end
+    }
+}
@@ -0,0 +1,207 @@
+package com.google.android.accessibility.ext.utils
+
+import kotlin.math.ln
+import kotlin.math.roundToInt
+import kotlin.math.roundToLong
+import kotlin.math.sqrt
+
+/**
+ * 拟人化随机源：可指定种子（测试 / 基准可复现），高斯分布用 Marsaglia 极坐标法并缓存另一半样本
+ *
+ * 非线程安全，由 [HumanPathLibrary] 加锁使用。
+ */
+class HumanRandom(seed: Long? = null) {
+
+    private val random = if (seed == null) java.util.Random() else java.util.Random(seed)
+    private var spare = 0.0
+    private var hasSpare = false
+
+    fun nextFloat(): Float = random.nextFloat()
+
+    /** [-1, 1) 均匀分布 */
+    fun symmetric(): Float = random.nextFloat() * 2f - 1f
+
+    fun nextInt(range: IntRange): Int =
+        if (range.isEmpty()) range.first else range.first + random.nextInt(range.last - range.first + 1)
+
+    fun nextLong(range: LongRange): Long =
+        if (range.isEmpty()) range.first else range.first + (random.nextDouble() * (range.last - range.first + 1)).toLong()
+
+    fun gaussian(mean: Double, std: Double): Double {
+        if (hasSpare) {
+            hasSpare = false
+            return mean + std * spare
+        }
+        var u: Double
+        var v: Double
+        var s: Double
+        do {
+            u = random.nextDouble() * 2.0 - 1.0
+            v = random.nextDouble() * 2.0 - 1.0
+            s = u * u + v * v
+        } while (s >= 1.0 || s == 0.0)
+        val m = sqrt(-2.0 * ln(s) / s)
+        spare = v * m
+        hasSpare = true
+        return mean + std * u * m
+    }
+}
+
+/**
+ * 上划手势模板：某个屏幕尺寸 + 曲线参数下与随机无关的部分全部预先算好，
+ * 每次手势只需要 6 次随机抖动和几次乘加
+ */
+class SwipeTemplate internal constructor(
+    width: Int,
+    height: Int,
+    densityDpi: Int,
+    curveIntensity: Float,
+    horizontalOffsetRatio: Float,
+    jitterRatio: Float
+) {
+    private val w = width.toFloat()
+    private val h = height.toFloat()
+    val curveFactor = curveIntensity.coerceIn(0f, HumanPathGenerator.MAX_CURVE)
+    private val jitterFactor = jitterRatio.coerceIn(0f, HumanPathGenerator.MAX_JITTER)
+
+    // 起终点基准
+    val startX = w / 2f
+    val startY = h * 0.88f
+    val endX = w / 2f + w * horizontalOffsetRatio
+    val endY = h * 0.30f
+
+    // 抖动幅度
+    private val jStartX = w * jitterFactor
+    private val jStartY = h * jitterFactor * 0.5f
+    private val jEndX = w * jitterFactor * 0.5f
+    private val jEndY = h * jitterFactor * 0.2f
+    private val jControl = w * jitterFactor
+    private val jMidX = w * jitterFactor * 0.3f
+    private val jMidY = h * jitterFactor * 0.3f
+
+    // 贝塞尔控制点中与抖动无关的偏移
+    private val cp1xOffset = w * 0.05f * curveFactor
+    private val cp1yOffset = h * 0.02f * curveFactor
+    private val cp2xOffset = w * 0.05f * curveFactor
+    private val cp2yOffset = h * 0.01f * curveFactor
+
+    /** 时长曲线：speed = speedBase * (1 + (clamp(dist / 1000) - 1) * 0.2) */
+    private val speedBase = 2.5f * (densityDpi / 420f).coerceIn(0.7f, 1.4f) / (1f + curveFactor * 0.6f)
+
+    /** 基准距离下的时长（默认上下限） */
+    val baseDurationMs = duration(startY - endY, 80L, 900L)
+
+    /**
+     * 采样一条路径，写入 [out]：
+     * [0..1] 起点，[2..3] 控制点 1，[4..5] 控制点 2，[6..7] 终点，[8..9] 直线模式的中点
+     */
+    fun sample(rnd: HumanRandom, out: FloatArray) {
+        val sx = startX + jStartX * rnd.symmetric()
+        val sy = startY + jStartY * rnd.symmetric()
+        val ex = endX + jEndX * rnd.symmetric()
+        val ey = endY + jEndY * rnd.symmetric()
+        val distance = (sy - ey).coerceAtLeast(1f)
+        out[0] = sx
+        out[1] = sy
+        out[2] = sx + cp1xOffset + jControl * rnd.symmetric()
+        out[3] = sy - distance * 0.33f - cp1yOffset
+        out[4] = ex - cp2xOffset + jControl * rnd.symmetric()
+        out[5] = sy - distance * 0.66f + cp2yOffset
+        out[6] = ex
+        out[7] = ey
+        out[8] = (sx + ex) / 2f + jMidX * rnd.symmetric()
+        out[9] = (sy + ey) / 2f + jMidY * rnd.symmetric()
+    }
+
+    fun duration(distancePx: Float, minMs: Long, maxMs: Long): Long {
+        val dist = distancePx.coerceAtLeast(1f)
+        val distFactor = (dist / 1000f).coerceIn(0.6f, 2.0f)
+        val speed = speedBase * (1.0f + (distFactor - 1f) * 0.2f)
+        return (dist / speed).roundToLong().coerceIn(minMs, maxMs)
+    }
+}
+
+/**
+ * 拟人化路径生成器（纯 JVM，不依赖 Android，可在 JVM 上测试 / 基准）
+ *
+ * 每个显示尺寸一个实例，按曲线参数缓存 [SwipeTemplate]（最多 [MAX_TEMPLATES] 个，最近最少使用的先淘汰）；
+ * 默认参数（0.12 / 0 / 0.02）的模板在构造时就生成。
+ */
+class HumanPathGenerator(
+    val width: Int,
+    val height: Int,
+    val densityDpi: Int
+) {
+    private val templates = object : LinkedHashMap<Long, SwipeTemplate>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<Long, SwipeTemplate>?): Boolean =
+            size > MAX_TEMPLATES
+    }
+    private var lastKey = Long.MIN_VALUE
+    private var last: SwipeTemplate? = null
+
+    init {
+        template(DEFAULT_CURVE, 0f, DEFAULT_JITTER)
+    }
+
+    /**
+     * 取模板：参数先钳制到模板的有效范围并按千分位取整，key 和模板都用取整后的值，
+     * 同一个 key 总是对应同一组参数，不会因为谁先建模板而不同
+     */
+    @Synchronized
+    fun template(curveIntensity: Float, horizontalOffsetRatio: Float, jitterRatio: Float): SwipeTemplate {
+        val c = quantize(curveIntensity, 0f, MAX_CURVE)
+        val o = quantize(horizontalOffsetRatio, -1f, 1f)
+        val j = quantize(jitterRatio, 0f, MAX_JITTER)
+        val key = (c.toLong() shl 42) or ((o + 1000).toLong() shl 21) or j.toLong()
+        if (key == lastKey) last?.let { return it }
+        val t = templates.getOrPut(key) {
+            SwipeTemplate(width, height, densityDpi, c / 1000f, o / 1000f, j / 1000f)
+        }
+        lastKey = key
+        last = t
+        return t
+    }
+
+    /**
+     * 点击落点 + 按压中的微移，写入 [out]（x, y 交替），返回点数
+     */
+    fun sampleTap(
+        rnd: HumanRandom,
+        cx: Float,
+        cy: Float,
+        posStdPx: Double,
+        microStdPx: Double,
+        microMoves: IntRange,
+        out: FloatArray
+    ): Int {
+        val x = (cx + rnd.gaussian(0.0, posStdPx)).toFloat().coerceAtLeast(1f)
+        val y = (cy + rnd.gaussian(0.0, posStdPx)).toFloat().coerceAtLeast(1f)
+        out[0] = x
+        out[1] = y
+        val moves = rnd.nextInt(microMoves).coerceIn(0, out.size / 2 - 1)
+        for (i in 1..moves) {
+            out[i * 2] = x + rnd.gaussian(0.0, microStdPx).toFloat()
+            out[i * 2 + 1] = y + rnd.gaussian(0.0, microStdPx).toFloat()
+        }
+        return moves + 1
+    }
+
+    fun sameDisplay(width: Int, height: Int, densityDpi: Int): Boolean =
+        this.width == width && this.height == height && this.densityDpi == densityDpi
+
+    companion object {
+        const val DEFAULT_CURVE = 0.12f
+        const val DEFAULT_JITTER = 0.02f
+
+        /** 曲线强度 / 抖动比例的上限，超出按上限处理 */
+        const val MAX_CURVE = 0.5f
+        const val MAX_JITTER = 0.1f
+
+        /** 每个显示尺寸最多缓存的模板数 */
+        const val MAX_TEMPLATES = 32
+
+        /** 钳制后按千分位取整；NaN 按下限 */
+        private fun quantize(value: Float, min: Float, max: Float): Int =
+            if (value.isNaN()) (min * 1000f).roundToInt() else (value.coerceIn(min, max) * 1000f).roundToInt()
+    }
+}
@@ -0,0 +1,122 @@
+package com.google.android.accessibility.ext.utils
+
+import android.content.Context
+import android.graphics.Path
+import android.util.DisplayMetrics
+import com.google.android.accessibility.ext.utils.LibCtxProvider.Companion.appContext
+
+/**
+ * 拟人化路径库
+ *
+ * 原来每次手势都要 getScreenSize（WindowManager 查询 + 打日志）、读 displayMetrics、重算曲线；
+ * 现在在 onServiceConnected / onConfigurationChanged 时调用 [refresh]，按当前显示尺寸预先生成
+ * [HumanPathGenerator]（贝塞尔模板 + 时长曲线），每次手势只在缓存模板上加随机抖动。
+ *
+ * [setSeed] 打开确定性模式，同一种子生成同样的路径 / 时长 / 间隔，方便复现问题；
+ * 纯 JVM 的测试与基准直接使用 [HumanPathGenerator] + [HumanRandom]。
+ */
+object HumanPathLibrary {
+
+    private val lock = Any()
+
+    @Volatile
+    private var generator: HumanPathGenerator? = null
+    private var random = HumanRandom()
+    private val swipeBuffer = FloatArray(10)
+    private val tapBuffer = FloatArray(2 * 9)
+
+    /**
+     * 重新读取显示尺寸，尺寸没变时保留已有模板
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun refresh(context: Context = appContext): HumanPathGenerator {
+        val (width, height) = KeyguardUnLock.getScreenSize(context)
+        val dpi = context.resources.displayMetrics.densityDpi.takeIf { it > 0 } ?: DisplayMetrics.DENSITY_DEFAULT
+        generator?.let { if (it.sameDisplay(width, height, dpi)) return it }
+        KeyguardUnLock.sendLog("设备的宽度= $width, 高度= $height")
+        return HumanPathGenerator(width, height, dpi).also { generator = it }
+    }
+
+    /**
+     * 确定性模式：传入种子后随机序列可复现，传 null 恢复真随机
+     */
+    @JvmStatic
+    fun setSeed(seed: Long?) {
+        synchronized(lock) { random = HumanRandom(seed) }
+    }
+
+    @JvmStatic
+    @JvmOverloads
+    fun generator(context: Context = appContext): HumanPathGenerator = generator ?: refresh(context)
+
+    /**
+     * 自然上划路径（取代逐次计算的 createNaturalSwipePathInfo）
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun naturalSwipe(
+        context: Context = appContext,
+        useCurve: Boolean = true,
+        curveIntensity: Float = HumanPathGenerator.DEFAULT_CURVE,
+        horizontalOffsetRatio: Float = 0f,
+        jitterRatio: Float = HumanPathGenerator.DEFAULT_JITTER
+    ): SwipePathInfo {
+        val template = generator(context).template(curveIntensity, horizontalOffsetRatio, jitterRatio)
+        synchronized(lock) {
+            val p = swipeBuffer
+            template.sample(random, p)
+            val path = Path().apply {
+                moveTo(p[0], p[1])
+                if (useCurve && template.curveFactor > 0f) {
+                    cubicTo(p[2], p[3], p[4], p[5], p[6], p[7])
+                } else {
+                    // 直线（保留一点微抖使其不显僵硬）
+                    lineTo(p[8], p[9])
+                    lineTo(p[6], p[7])
+                }
+            }
+            return SwipePathInfo(path, p[0], p[1], p[6], p[7])
+        }
+    }
+
+    /**
+     * 按滑动距离取时长，密度与曲线系数来自缓存模板
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun autoDuration(
+        context: Context = appContext,
+        distancePx: Float,
+        curveIntensity: Float = HumanPathGenerator.DEFAULT_CURVE,
+        minMs: Long = 80L,
+        maxMs: Long = 900L
+    ): Long = generator(context)
+        .template(curveIntensity, 0f, HumanPathGenerator.DEFAULT_JITTER)
+        .duration(distancePx, minMs, maxMs)
+
+    /**
+     * 拟人点击路径：高斯落点 + 按压中的微移（最多 8 个点）
+     */
+    @JvmStatic
+    fun tapPath(cx: Float, cy: Float, posStdPx: Double, microStdPx: Double, microMoves: IntRange): Path {
+        val g = generator()
+        synchronized(lock) {
+            val p = tapBuffer
+            val count = g.sampleTap(random, cx, cy, posStdPx, microStdPx, microMoves, p)
+            return Path().apply {
+                moveTo(p[0], p[1])
+                for (i in 1 until count) lineTo(p[i * 2], p[i * 2 + 1])
+            }
+        }
+    }
+
+    @JvmStatic
+    fun gaussian(mean: Double, std: Double): Double = synchronized(lock) { random.gaussian(mean, std) }
+
+    @JvmStatic
+    fun nextInt(range: IntRange): Int = synchronized(lock) { random.nextInt(range) }
+
+    @JvmStatic
+    fun nextLong(range: LongRange): Long = synchronized(lock) { random.nextLong(range) }
+}
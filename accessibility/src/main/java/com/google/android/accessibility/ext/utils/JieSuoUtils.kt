@@ -585,6 +585,8 @@ object JieSuoUtils {
         // 在合法范围内操作
         var trueCount = 0
         var falseCount = 0
+        // 盲点时所有位合成一次手势派发，结果逐位对应
+        val tapped = if (hasNode) null else tapDigitsByPoints(myDigit)
         for (i in myDigit.indices) {
             val dig = myDigit[i].toString()
             //=
@@ -593,15 +595,7 @@ object JieSuoUtils {
                 val node = findDigitNode(digit = dig)
                 inputSuccess = KeyguardUnLock.xpqclickNode(isMoNi = true, nodeInfo = node)
             }else{
-                val (x, y) = if (false){
-                    getDigitPointInt(dig.toInt(), w, h)
-                }
-                else{
-                    getPointInt(dig.toInt())
-                }
-                //===========================
-                inputSuccess = StableGestureClicker.click(x = x, y = y)
-                //=
+                inputSuccess = tapped!![i]
             }
 
 
@@ -612,7 +606,7 @@ object JieSuoUtils {
                 trueCount++
                 sendLog("自动输入第 ${i + 1} 位应用锁密码, $dig 成功")
             }
-            SystemClock.sleep(200)
+            if (hasNode) SystemClock.sleep(200)
         }
         sendLog("完成输入应用锁密码: 成功次数=$trueCount, 失败次数=$falseCount")
         if (falseCount == 0){
@@ -671,6 +665,8 @@ object JieSuoUtils {
         // 在合法范围内操作
         var trueCount = 0
         var falseCount = 0
+        // 盲点时所有位合成一次手势派发，结果逐位对应
+        val tapped = if (hasNode) null else tapDigitsByPoints(myDigit)
         for (i in myDigit.indices) {
             val dig = myDigit[i].toString()
             //=
@@ -679,15 +675,7 @@ object JieSuoUtils {
                 val node = findDigitNode(digit = dig)
                 inputSuccess = KeyguardUnLock.xpqclickNode(isMoNi = true, nodeInfo = node)
             }else{
-                val (x, y) = if (false){
-                    getDigitPointInt(dig.toInt(), w, h)
-                }
-                else{
-                    getPointInt(dig.toInt())
-                }
-                //===========================
-                inputSuccess = StableGestureClicker.click(x = x, y = y)
-                //=
+                inputSuccess = tapped!![i]
             }
 
 
@@ -698,7 +686,7 @@ object JieSuoUtils {
                 trueCount++
                 sendLog("自动输入第 ${i + 1} 位密码, $dig 成功")
             }
-            SystemClock.sleep(200)
+            if (hasNode) SystemClock.sleep(200)
         }
         sendLog("完成输入密码: 成功次数=$trueCount, 失败次数=$falseCount")
         if (falseCount == 0){
@@ -850,6 +838,60 @@ object JieSuoUtils {
         return isSuc
     }
 
+    private const val DIGIT_PRESS_MS = 60L
+    // 原来每位 sleep(200)，按压 60ms + 间隔 140ms 保持同样的节奏
+    private const val DIGIT_GAP_MS = 140L
+
+    /**
+     * 按 [init] 得到的坐标盲点输入，所有位合成一个多笔画手势（超出笔画上限时自动拆分），
+     * 在调用线程阻塞等待结果
+     * @return 每一位是否点击成功
+     */
+    private fun tapDigitsByPoints(myDigit: String): BooleanArray {
+        val service = accessibilityService ?: return BooleanArray(myDigit.length)
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N) return BooleanArray(myDigit.length)
+        val composer = GestureComposer()
+        val points = myDigit.map { getPointInt(it.toString().toInt()) }
+        for ((x, y) in points) {
+            composer.tap(x.toFloat(), y.toFloat(), pressMs = DIGIT_PRESS_MS, gapMs = if (composer.size == 0) 0L else DIGIT_GAP_MS)
+        }
+        val results = composer.dispatchBlocking(service, GesturePriority.UNLOCK)
+        points.forEachIndexed { i, (x, y) ->
+            if (results[i]) KeyguardUnLock.showClickIndicator(service, x, y)
+        }
+        return results
+    }
+
+    /**
+     * 图案解锁：按编号顺序一笔划过保存的点（编号与 [getLockPointsByNumbers] 一致）
+     *
+     * @param segmentMs 相邻两点之间的划动时长
+     * @return 缺少某个编号的坐标或手势失败时返回 false
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun drawPattern(
+        numbers: List<Int>,
+        groupKey: String = MMKVConst.KEY_SCREEN_LOCK_POINTS,
+        segmentMs: Long = 120L,
+        service: AccessibilityService? = accessibilityService
+    ): Boolean {
+        service ?: return false
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N || numbers.size < 2) return false
+        val pointsMap = getLockPointsByNumbers(numbers, groupKey)
+        val points = ArrayList<Point>(numbers.size)
+        for (n in numbers) {
+            val p = pointsMap[n]
+            if (p == null) {
+                sendLog("图案解锁缺少编号 $n 的坐标")
+                return false
+            }
+            points.add(p)
+        }
+        val composer = GestureComposer().swipe(points, segmentMs * (points.size - 1))
+        return composer.dispatchBlocking(service, GesturePriority.UNLOCK)[0]
+    }
+
     //=================根据1  5  9 三个点 生成算法
     private var startX = 0f
     private var startY = 0f
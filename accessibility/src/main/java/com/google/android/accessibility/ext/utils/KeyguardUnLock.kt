@@ -50,8 +50,6 @@ import kotlinx.coroutines.coroutineScope
 import kotlinx.coroutines.delay
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.suspendCancellableCoroutine
-import kotlinx.coroutines.sync.Mutex
-import kotlinx.coroutines.sync.withLock
 import kotlinx.coroutines.withContext
 import kotlinx.coroutines.withTimeoutOrNull
 import java.util.Locale
@@ -1505,30 +1503,13 @@ isDeviceSecure = 这台设备“有没有任何安全门槛”
         moveCallback: MoveCallback?
     ) {
         if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N) return
-        if (moveCallback == null) {
-            service.dispatchGesture(
-                GestureDescription.Builder()
-                    .addStroke(StrokeDescription(path, startTime, duration)).build(),
-                null,
-                null
-            )
-        } else {
-            service.dispatchGesture(
-                GestureDescription.Builder()
-                    .addStroke(StrokeDescription(path, startTime, duration)).build(),
-                object : GestureResultCallback() {
-                    override fun onCompleted(gestureDescription: GestureDescription) {
-                        super.onCompleted(gestureDescription)
-                        moveCallback.onSuccess()
-                    }
-
-                    override fun onCancelled(gestureDescription: GestureDescription) {
-                        super.onCancelled(gestureDescription)
-                        moveCallback.onError()
-                    }
-                },
-                null
-            )
+        GestureScheduler.submit(
+            service,
+            GestureDescription.Builder()
+                .addStroke(StrokeDescription(path, startTime, duration)).build(),
+            GesturePriority.UNLOCK
+        ) { ok ->
+            if (ok) moveCallback?.onSuccess() else moveCallback?.onError()
         }
     }
 
@@ -1542,24 +1523,7 @@ isDeviceSecure = 这台设备“有没有任何安全门槛”
         curveIntensity: Float = 0.12f,
         minMs: Long = 80L,
         maxMs: Long = 900L
-    ): Long {
-        val dist = max(1f, distancePx)
-
-        val densityDpi = context.resources.displayMetrics.densityDpi.takeIf { it > 0 } ?: DisplayMetrics.DENSITY_DEFAULT
-        val baseDensityRef = 420f
-        val baseSpeedPxPerMs = 2.5f
-        val densityFactor = (densityDpi / baseDensityRef).coerceIn(0.7f, 1.4f)
-        var speedPxPerMs = baseSpeedPxPerMs * densityFactor
-
-        val distFactor = (dist / 1000f).coerceIn(0.6f, 2.0f)
-        speedPxPerMs *= (1.0f + (distFactor - 1f) * 0.2f)
-
-        val curveSlowdown = 1f + (curveIntensity.coerceIn(0f, 0.5f) * 0.6f)
-        speedPxPerMs /= curveSlowdown
-
-        val duration = (dist / speedPxPerMs).roundToLong().coerceIn(minMs, maxMs)
-        return duration
-    }
+    ): Long = HumanPathLibrary.autoDuration(context, distancePx, curveIntensity, minMs, maxMs)
     /**
      * 生成一个更自然的上划手势路径（可选曲线 + 轻微随机化）
      *
@@ -1581,53 +1545,11 @@ isDeviceSecure = 这台设备“有没有任何安全门槛”
         horizontalOffsetRatio: Float = 0.0f,
         jitterRatio: Float = 0.02f
     ): SwipePathInfo {
-        val (screenWidth, screenHeight) = getScreenSize(context) // 你已有的工具
-        KeyguardUnLock.sendLog("设备的宽度= " + screenWidth + ", 高度= " + screenHeight)
-        val startXBase = screenWidth / 2f
-        val startYBase = screenHeight * 0.88f
-        val endXBase = screenWidth / 2f + screenWidth * horizontalOffsetRatio
-        val endYBase = screenHeight * 0.30f
-
-        // 防止极端值
-        val curveFactor = curveIntensity.coerceIn(0f, 0.5f)
-        val jitterFactor = jitterRatio.coerceIn(0f, 0.1f)
-
-        // 小随机，用来模拟手指微抖（每次可能不同）
-        val rand = Random.Default
-        fun jitter(amountRatio: Float) = (rand.nextFloat() * 2f - 1f) * amountRatio
-
-        val startX = startXBase + screenWidth * jitter(jitterFactor)
-        val startY = startYBase + screenHeight * jitter(jitterFactor * 0.5f)
-        val endX = endXBase + screenWidth * jitter(jitterFactor * 0.5f)
-        val endY = endYBase + screenHeight * jitter(jitterFactor * 0.2f)
-
-        val distance = (startY - endY).coerceAtLeast(1f)
-
-        // 控制点位置：基于距离分段，并加入曲线强度与少量水平偏移
-        val cp1x = startX + screenWidth * (0.05f * curveFactor) + screenWidth * jitter(jitterFactor)
-        val cp1y = startY - distance * 0.33f - screenHeight * (0.02f * curveFactor)
-
-        val cp2x = endX - screenWidth * (0.05f * curveFactor) + screenWidth * jitter(jitterFactor)
-        val cp2y = startY - distance * 0.66f + screenHeight * (0.01f * curveFactor)
-
-        KeyguardUnLock.sendLog("模拟人手轻微抖动轨迹: start=($startX,$startY) end=($endX,$endY) cp1=($cp1x,$cp1y) cp2=($cp2x,$cp2y)")
-        val path = Path().apply {
-            moveTo(startX, startY)
-            if (useCurve && curveFactor > 0f) {
-                cubicTo(cp1x, cp1y, cp2x, cp2y, endX, endY)
-            } else {
-                // 直线（保留一点微抖使其不显僵硬）
-                val midX = (startX + endX) / 2f + screenWidth * jitter(jitterFactor * 0.3f)
-                val midY = (startY + endY) / 2f + screenHeight * jitter(jitterFactor * 0.3f)
-                lineTo(midX, midY)
-                lineTo(endX, endY)
-            }
-        }
-        return  SwipePathInfo(path, startX, startY, endX, endY)
-
+        // 屏幕尺寸、贝塞尔控制点在 HumanPathLibrary 里按显示预先算好，这里只加抖动
+        val info = HumanPathLibrary.naturalSwipe(context, useCurve, curveIntensity, horizontalOffsetRatio, jitterRatio)
+        KeyguardUnLock.sendLog("模拟人手轻微抖动轨迹: start=(${info.startX},${info.startY}) end=(${info.endX},${info.endY})")
+        return info
     }
-    // 🟡【新增】互斥锁，防止手势并发重叠执行
-    private val moveMutex = Mutex()
     @JvmOverloads
     @JvmStatic
  /*   suspend fun moveAwait(
@@ -1763,24 +1685,24 @@ isDeviceSecure = 这台设备“有没有任何安全门槛”
         retryCount: Int = 1
     ): Boolean = coroutineScope {
 
-        // 严格串行，避免并发手势
-        moveMutex.withLock {
+        // 串行交给 GestureScheduler（解锁优先级），不再单独加锁
+        run move@{
 
             // ====== 基础校验（只做一次）======
             if (startTime < 0 || duration < 0) {
                 moveCallback?.onError()
-                return@withLock false
+                return@move false
             }
 
             val accService = service
                 ?: run {
                     KeyguardUnLock.sendLog("无障碍服务未开启")
-                    return@withLock false
+                    return@move false
                 }
 
             if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N) {
                 KeyguardUnLock.sendLog("系统版本小于 7.0")
-                return@withLock false
+                return@move false
             }
 
             // ====== 构建路径（只构建一次）======
@@ -1817,55 +1739,26 @@ isDeviceSecure = 这台设备“有没有任何安全门槛”
                 delay(60L)
 
                 val gestureResult = withTimeoutOrNull(timeoutMs) {
-
-                    withContext(Dispatchers.Main) {
-
-                        suspendCancellableCoroutine<Boolean> { cont ->
-
-                            val gesture = GestureDescription.Builder()
-                                .addStroke(
-                                    GestureDescription.StrokeDescription(
-                                        finalPathInfo.path,
-                                        startTime,
-                                        finalDuration
-                                    )
-                                )
-                                .build()
-
-                            val callback =
-                                if (moveCallback == null) null
-                                else object : AccessibilityService.GestureResultCallback() {
-
-                                    override fun onCompleted(gestureDescription: GestureDescription) {
-                                        try { moveCallback.onSuccess() } catch (_: Throwable) {}
-                                        if (cont.isActive) cont.resume(true)
-                                    }
-
-                                    override fun onCancelled(gestureDescription: GestureDescription) {
-                                        try { moveCallback.onError() } catch (_: Throwable) {}
-                                        if (cont.isActive) cont.resume(false)
-                                    }
-                                }
-
-                            try {
-                                showGestureIndicator(accService, finalPathInfo.path, finalDuration)
-                                accService.dispatchGesture(gesture, callback, null)
-
-                                // 没有 callback 的情况，直接认为已发出
-                                if (callback == null && cont.isActive) {
-                                    cont.resume(true)
-                                }
-
-                            } catch (t: Throwable) {
-                                try { moveCallback?.onError() } catch (_: Throwable) {}
-                                if (cont.isActive) cont.resume(false)
-                            }
-                        }
+                    val gesture = GestureDescription.Builder()
+                        .addStroke(
+                            GestureDescription.StrokeDescription(
+                                finalPathInfo.path,
+                                startTime,
+                                finalDuration
+                            )
+                        )
+                        .build()
+                    showGestureIndicator(accService, finalPathInfo.path, finalDuration)
+                    val ok = GestureScheduler.await(accService, gesture, GesturePriority.UNLOCK)
+                    try {
+                        if (ok) moveCallback?.onSuccess() else moveCallback?.onError()
+                    } catch (_: Throwable) {
                     }
+                    ok
                 } ?: false // timeout：只代表“没等到回调”
 
                 if (gestureResult) {
-                    return@withLock true
+                    return@move true
                 }
             }
 
@@ -2548,6 +2441,7 @@ isDeviceSecure = 这台设备“有没有任何安全门槛”
     /**
      * 模拟
      * 点击
+     * @return true 表示点击已进入 GestureScheduler 队列（不代表已执行完），被拒绝或不在主线程时为 false
      */
     @JvmOverloads
     @JvmStatic
@@ -2564,7 +2458,7 @@ isDeviceSecure = 这台设备“有没有任何安全门槛”
             path.moveTo(X.toFloat(), Y.toFloat())
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
                 val builder = GestureDescription.Builder().addStroke(StrokeDescription(path, 0, time))
-                return service.dispatchGesture(builder.build(), null, null)
+                return GestureScheduler.submit(service, builder.build(), GesturePriority.UNLOCK)
             } else {
                 return false
             }
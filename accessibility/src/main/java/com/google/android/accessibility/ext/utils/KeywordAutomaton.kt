@@ -0,0 +1,167 @@
+package com.google.android.accessibility.ext.utils
+
+/**
+ * 多关键词匹配（Aho–Corasick 自动机）
+ *
+ * 一组关键词只构建一次，之后每段文本单次扫描即可判断是否包含任意关键词，
+ * 代价与关键词数量无关，适合跳广告 / 抢红包这类 20~50 个关键词的场景。
+ * 纯 JVM 实现，不依赖 Android。
+ */
+class KeywordAutomaton private constructor(
+    val keywords: List<String>,
+    /** 每个状态的出边字符（升序），用二分查找 */
+    private val edgeChars: Array<CharArray>,
+    private val edgeTargets: Array<IntArray>,
+    private val fail: IntArray,
+    /** 以该状态结尾的关键词中下标最小的一个，没有为 -1 */
+    private val output: IntArray,
+    /** 沿失败链第一个有输出的状态，没有为 -1 */
+    private val outputLink: IntArray
+) {
+
+    val isEmpty: Boolean get() = keywords.isEmpty()
+
+    /**
+     * 是否包含任意关键词，命中即返回
+     */
+    fun containsAny(text: CharSequence?): Boolean {
+        text ?: return false
+        if (isEmpty) return false
+        var state = 0
+        for (i in 0 until text.length) {
+            state = step(state, text[i])
+            if (output[state] >= 0 || outputLink[state] >= 0) return true
+        }
+        return false
+    }
+
+    /**
+     * 命中的关键词下标（多个命中时取在 [keywords] 中最靠前的，与 list.find { text.contains(it) } 一致），
+     * 没有命中返回 -1
+     */
+    fun firstKeywordIndex(text: CharSequence?): Int {
+        text ?: return -1
+        if (isEmpty) return -1
+        var best = -1
+        var state = 0
+        for (i in 0 until text.length) {
+            state = step(state, text[i])
+            var s = if (output[state] >= 0) state else outputLink[state]
+            while (s >= 0) {
+                val k = output[s]
+                if (best < 0 || k < best) {
+                    best = k
+                    if (best == 0) return 0
+                }
+                s = outputLink[s]
+            }
+        }
+        return best
+    }
+
+    /**
+     * 命中的关键词，没有返回 null
+     */
+    fun firstKeyword(text: CharSequence?): String? =
+        firstKeywordIndex(text).let { if (it >= 0) keywords[it] else null }
+
+    private fun step(from: Int, c: Char): Int {
+        var state = from
+        while (true) {
+            val next = transition(state, c)
+            if (next >= 0) return next
+            if (state == 0) return 0
+            state = fail[state]
+        }
+    }
+
+    private fun transition(state: Int, c: Char): Int {
+        val chars = edgeChars[state]
+        val i = chars.binarySearch(c)
+        return if (i >= 0) edgeTargets[state][i] else -1
+    }
+
+    companion object {
+
+        private val cache = object : LinkedHashMap<List<String>, KeywordAutomaton>(16, 0.75f, true) {
+            override fun removeEldestEntry(eldest: MutableMap.MutableEntry<List<String>, KeywordAutomaton>?) =
+                size > 32
+        }
+
+        @Volatile
+        private var last: Pair<List<String>, KeywordAutomaton>? = null
+
+        /**
+         * 取关键词集合对应的自动机：同一个 list 实例直接命中，内容相同的新 list 走 LRU 缓存
+         * （list 实例命中不比较内容，不要修改传进来的可变 list）
+         */
+        @JvmStatic
+        fun of(keywords: List<String>): KeywordAutomaton {
+            last?.let { if (it.first === keywords) return it.second }
+            val built = synchronized(cache) {
+                cache.getOrPut(keywords.toList()) { build(keywords) }
+            }
+            last = keywords to built
+            return built
+        }
+
+        /**
+         * 直接构建（不缓存），空字符串关键词会被忽略
+         */
+        @JvmStatic
+        fun build(keywords: List<String>): KeywordAutomaton {
+            val words = keywords.toList()
+            // 构建期用 HashMap 表示 trie，之后压缩成数组
+            val goto = ArrayList<HashMap<Char, Int>>()
+            val outputs = ArrayList<Int>()
+            goto.add(HashMap())
+            outputs.add(-1)
+            for ((index, word) in words.withIndex()) {
+                if (word.isEmpty()) continue
+                var state = 0
+                for (c in word) {
+                    state = goto[state].getOrPut(c) {
+                        goto.add(HashMap())
+                        outputs.add(-1)
+                        goto.size - 1
+                    }
+                }
+                if (outputs[state] < 0) outputs[state] = index
+            }
+
+            val size = goto.size
+            val fail = IntArray(size)
+            val output = IntArray(size) { outputs[it] }
+            val outputLink = IntArray(size) { -1 }
+            // BFS 计算失败链
+            val queue = IntArray(size)
+            var head = 0
+            var tail = 0
+            for (child in goto[0].values) {
+                fail[child] = 0
+                queue[tail++] = child
+            }
+            while (head < tail) {
+                val state = queue[head++]
+                for ((c, child) in goto[state]) {
+                    var f = fail[state]
+                    while (f != 0 && goto[f][c] == null) f = fail[f]
+                    val target = goto[f][c]
+                    fail[child] = if (target != null && target != child) target else 0
+                    val fs = fail[child]
+                    outputLink[child] = if (output[fs] >= 0) fs else outputLink[fs]
+                    queue[tail++] = child
+                }
+            }
+
+            val edgeChars = Array(size) { s ->
+                goto[s].keys.toCharArray().also { it.sort() }
+            }
+            val edgeTargets = Array(size) { s ->
+                val chars = edgeChars[s]
+                IntArray(chars.size) { goto[s][chars[it]]!! }
+            }
+            return KeywordAutomaton(words, edgeChars, edgeTargets, fail, output, outputLink)
+        }
+    }
+}
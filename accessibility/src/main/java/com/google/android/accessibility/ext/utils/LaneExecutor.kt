@@ -0,0 +1,204 @@
+package com.google.android.accessibility.ext.utils
+
+import android.os.Process
+import android.os.SystemClock
+import android.util.Log
+import java.util.concurrent.Executor
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * 有界、带优先级的单线程任务通道（lane）
+ *
+ * 与 Executors.newSingleThreadExecutor 的区别：
+ *  - 队列有上限，满了按 [OverflowPolicy] 丢弃，不会无限积压；不能丢的 lane 用 [OverflowPolicy.GROW]
+ *  - 带 key 提交时，队列里还没执行的同 key 任务会被新任务替换（合并），位置不变
+ *  - 任务被合并掉 / 被丢弃时调用它的 onDrop，释放本该在任务 finally 里释放的资源（事件副本、节点）
+ *  - 线程按 [threadPriority]（android.os.Process 的优先级常量）运行
+ *  - 记录队列深度、排队延迟、执行耗时，见 [stats]
+ *
+ * 同一 lane 内任务仍然串行执行，保持原来单线程执行器的顺序语义。
+ */
+class LaneExecutor(
+    val name: String,
+    val capacity: Int,
+    val overflow: OverflowPolicy = OverflowPolicy.DROP_OLDEST,
+    private val threadPriority: Int = Process.THREAD_PRIORITY_DEFAULT
+) : Executor {
+
+    enum class OverflowPolicy {
+        /** 丢弃队头最旧的任务，新任务入队 */
+        DROP_OLDEST,
+
+        /** 丢弃新提交的任务 */
+        DROP_NEWEST,
+
+        /** 不丢弃，超过 capacity 后继续排队（capacity 只用于告警），给不能丢的通知 / 验证码使用 */
+        GROW
+    }
+
+    data class Stats(
+        val name: String,
+        val queueDepth: Int,
+        val maxQueueDepth: Int,
+        val submitted: Long,
+        val executed: Long,
+        val dropped: Long,
+        val merged: Long,
+        val avgWaitMs: Double,
+        val maxWaitMs: Double,
+        val avgRunMs: Double
+    )
+
+    private class Task(val key: Any?, var runnable: Runnable, var onDrop: Runnable?, val enqueuedAt: Long)
+
+    private val lock = Object()
+    private val queue = ArrayDeque<Task>()
+    private val pendingByKey = HashMap<Any, Task>()
+
+    @Volatile
+    private var worker: Thread? = null
+    private var maxDepth = 0
+
+    private val submitted = AtomicLong()
+    private val executed = AtomicLong()
+    private val dropped = AtomicLong()
+    private val merged = AtomicLong()
+    private val totalWaitNs = AtomicLong()
+    private val maxWaitNs = AtomicLong()
+    private val totalRunNs = AtomicLong()
+
+    override fun execute(command: Runnable) {
+        execute(null, command)
+    }
+
+    /**
+     * 提交任务；[key] 不为 null 时与队列中同 key 的未执行任务合并
+     *
+     * @return false 表示任务因队列已满被丢弃（DROP_NEWEST）
+     */
+    fun execute(key: Any?, command: Runnable): Boolean = execute(key, null, command)
+
+    /**
+     * 提交任务，[onDrop] 在任务确定不会执行时（被同 key 新任务合并、队满被挤掉或被拒绝）调用且只调用一次，
+     * 在提交线程上执行，不持有锁
+     *
+     * @return false 表示任务因队列已满被丢弃（DROP_NEWEST）
+     */
+    fun execute(key: Any?, onDrop: Runnable?, command: Runnable): Boolean {
+        submitted.incrementAndGet()
+        var discarded: Runnable? = null
+        var accepted = true
+        synchronized(lock) {
+            val existing = key?.let { pendingByKey[it] }
+            if (existing != null) {
+                discarded = existing.onDrop
+                existing.runnable = command
+                existing.onDrop = onDrop
+                merged.incrementAndGet()
+            } else {
+                if (queue.size >= capacity) {
+                    when (overflow) {
+                        OverflowPolicy.DROP_NEWEST -> {
+                            dropped.incrementAndGet()
+                            discarded = onDrop
+                            accepted = false
+                        }
+                        OverflowPolicy.DROP_OLDEST -> {
+                            val oldest = queue.removeFirst()
+                            oldest.key?.let { pendingByKey.remove(it) }
+                            dropped.incrementAndGet()
+                            discarded = oldest.onDrop
+                        }
+                        OverflowPolicy.GROW -> {
+                            if (queue.size == capacity) Log.w(TAG, "lane-$name 积压超过 $capacity，继续排队")
+                        }
+                    }
+                }
+                if (accepted) {
+                    val task = Task(key, command, onDrop, SystemClock.elapsedRealtimeNanos())
+                    queue.addLast(task)
+                    if (key != null) pendingByKey[key] = task
+                    if (queue.size > maxDepth) maxDepth = queue.size
+                    ensureWorker()
+                    lock.notify()
+                }
+            }
+        }
+        discarded?.let { runDrop(it) }
+        return accepted
+    }
+
+    private fun runDrop(onDrop: Runnable) {
+        try {
+            onDrop.run()
+        } catch (t: Throwable) {
+            Log.e(TAG, "lane-$name onDrop 异常", t)
+        }
+    }
+
+    private fun ensureWorker() {
+        if (worker != null) return
+        worker = Thread({ loop() }, "lane-$name").apply {
+            isDaemon = true
+            start()
+        }
+    }
+
+    private fun loop() {
+        runCatching { Process.setThreadPriority(threadPriority) }
+        while (true) {
+            val task = synchronized(lock) {
+                while (queue.isEmpty()) {
+                    try {
+                        lock.wait()
+                    } catch (_: InterruptedException) {
+                    }
+                }
+                queue.removeFirst().also { t -> t.key?.let { pendingByKey.remove(it) } }
+            }
+            val start = SystemClock.elapsedRealtimeNanos()
+            val wait = start - task.enqueuedAt
+            totalWaitNs.addAndGet(wait)
+            while (true) {
+                val max = maxWaitNs.get()
+                if (wait <= max || maxWaitNs.compareAndSet(max, wait)) break
+            }
+            try {
+                task.runnable.run()
+            } catch (t: Throwable) {
+                Log.e(TAG, "lane-$name 任务异常", t)
+            }
+            totalRunNs.addAndGet(SystemClock.elapsedRealtimeNanos() - start)
+            executed.incrementAndGet()
+        }
+    }
+
+    val queueDepth: Int
+        get() = synchronized(lock) { queue.size }
+
+    fun stats(): Stats {
+        val depth: Int
+        val peak: Int
+        synchronized(lock) {
+            depth = queue.size
+            peak = maxDepth
+        }
+        val done = executed.get()
+        return Stats(
+            name = name,
+            queueDepth = depth,
+            maxQueueDepth = peak,
+            submitted = submitted.get(),
+            executed = done,
+            dropped = dropped.get(),
+            merged = merged.get(),
+            avgWaitMs = if (done == 0L) 0.0 else totalWaitNs.get() / 1e6 / done,
+            maxWaitMs = maxWaitNs.get() / 1e6,
+            avgRunMs = if (done == 0L) 0.0 else totalRunNs.get() / 1e6 / done
+        )
+    }
+
+    companion object {
+        private const val TAG = "LaneExecutor"
+    }
+}
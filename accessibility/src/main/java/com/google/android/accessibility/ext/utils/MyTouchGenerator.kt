@@ -2,13 +2,9 @@ package com.google.android.accessibility.ext.utils
 
 import android.accessibilityservice.AccessibilityService
 import android.accessibilityservice.GestureDescription
-import android.graphics.Path
 import android.os.Build
 import androidx.annotation.RequiresApi
 import kotlinx.coroutines.*
-import kotlin.coroutines.resume
-import kotlin.math.*
-import kotlin.random.Random
 import java.lang.ref.WeakReference
 
 object MyTouchGenerator {
@@ -51,30 +47,12 @@ object MyTouchGenerator {
         service: AccessibilityService,
         cx: Float, cy: Float, cfg: Config
     ) {
-        val x = (cx + gaussian(0.0, cfg.posStdPx)).toFloat().coerceAtLeast(1f)
-        val y = (cy + gaussian(0.0, cfg.posStdPx)).toFloat().coerceAtLeast(1f)
-
-        val path = Path().apply {
-            moveTo(x, y)
-            repeat(cfg.microMoves.random()) {
-                lineTo(x + gaussian(0.0, 1.5).toFloat(), y + gaussian(0.0, 1.5).toFloat())
-            }
-        }
-        val stroke = GestureDescription.StrokeDescription(path, 0L, cfg.pressMs.random())
+        // 落点与微移由 HumanPathLibrary 生成（可设种子复现）
+        val path = HumanPathLibrary.tapPath(cx, cy, cfg.posStdPx, 1.5, cfg.microMoves)
+        val stroke = GestureDescription.StrokeDescription(path, 0L, HumanPathLibrary.nextLong(cfg.pressMs))
         val gesture = GestureDescription.Builder().addStroke(stroke).build()
 
-        suspendCancellableCoroutine { cont ->
-            service.dispatchGesture(gesture, object : AccessibilityService.GestureResultCallback() {
-                override fun onCompleted(g: GestureDescription) { cont.resume(Unit) }
-                override fun onCancelled(g: GestureDescription) { cont.resume(Unit) }
-            }, null)
-        }
-    }
-
-    private fun gaussian(mean: Double, std: Double): Double {
-        val u1 = Random.nextDouble().coerceAtLeast(1e-9)
-        val u2 = Random.nextDouble()
-        return mean + std * sqrt(-2.0 * ln(u1)) * cos(2 * PI * u2)
+        GestureScheduler.await(service, gesture, GesturePriority.USER)
     }
 
     /**
@@ -84,5 +62,5 @@ object MyTouchGenerator {
     @JvmStatic
     @JvmOverloads
     fun randomDelayMs(base: Long = 1050, jitter: Long = 650): Long =
-        base + Random.nextLong(jitter + 1)
+        base + HumanPathLibrary.nextLong(0L..jitter)
 }
\ No newline at end of file
@@ -0,0 +1,304 @@
+package com.google.android.accessibility.ext.utils
+
+import android.os.Handler
+import android.os.Looper
+import android.os.SystemClock
+import android.view.accessibility.AccessibilityEvent
+import android.view.accessibility.AccessibilityNodeInfo
+import com.google.android.accessibility.ext.utils.NotificationUtilXpq.recycleCompat
+import com.google.android.accessibility.selecttospeak.SelectToSpeakServiceAbstract
+import kotlinx.coroutines.suspendCancellableCoroutine
+import kotlin.math.min
+
+/**
+ * 一次滚动（或一次等待）的结果
+ */
+class ScrollStep(
+    /** performAction 是否成功（纯等待时恒为 true） */
+    val scrolled: Boolean,
+    /** 是否由匹配的事件结束；false 表示超时兜底或根本没滚动 */
+    val byEvent: Boolean,
+    /** 结束时的事件类型，超时 / 未滚动为 0 */
+    val eventType: Int,
+    /** TYPE_VIEW_SCROLLED 带回的可见区间与总数，取不到为 -1 */
+    val fromIndex: Int,
+    val toIndex: Int,
+    val itemCount: Int,
+    /** 从开始等待到结束的耗时 */
+    val elapsedMs: Long
+) {
+    val hasIndex: Boolean get() = toIndex >= 0
+
+    /** 事件表明最后一项已经可见 */
+    val atEnd: Boolean get() = hasIndex && itemCount > 0 && toIndex >= itemCount - 1
+
+    /**
+     * 与上一次相比可见区间是否移动；任一方没有下标时返回 null，由调用方退回读节点比较
+     */
+    fun movedFrom(previous: ScrollStep?): Boolean? {
+        if (!hasIndex || previous == null || !previous.hasIndex) return null
+        return fromIndex != previous.fromIndex || toIndex != previous.toIndex || itemCount != previous.itemCount
+    }
+
+    override fun toString(): String =
+        "ScrollStep(scrolled=$scrolled, byEvent=$byEvent, type=$eventType, $fromIndex..$toIndex/$itemCount, ${elapsedMs}ms)"
+}
+
+/**
+ * 一次等待的句柄，[cancel] 后不再回调
+ */
+class ScrollWait internal constructor(
+    internal val windowId: Int,
+    internal val packageName: String?,
+    internal val className: String?,
+    /** 列表节点的副本，用来和事件源比较；取不到时只按窗口 + 类名匹配 */
+    internal val node: AccessibilityNodeInfo?,
+    internal val startedAt: Long,
+    /** 滚动等待：内容变化只缩短截止时间，优先等带下标的 TYPE_VIEW_SCROLLED */
+    internal val expectScroll: Boolean,
+    internal val callback: (ScrollStep) -> Unit
+) {
+    internal var timeout: Runnable? = null
+    internal var contentSeen = false
+    internal var done = false
+
+    fun cancel() = ScrollDriver.cancel(this)
+}
+
+/**
+ * 事件驱动的列表滚动
+ *
+ * 原来每次 ACTION_SCROLL_FORWARD 之后固定 postDelayed / delay（300 / 600 / 1000 ms），再重新读最后一个子节点比较；
+ * 这里在 performAction 之前登记等待，由服务线程上的 [onEvent] 在收到同一窗口、同一列表节点的事件时结束这一步
+ * （先比窗口和类名，命中后再比事件源节点，嵌套 / 横向的同类列表不会提前结束）：
+ * - TYPE_VIEW_SCROLLED 立即结束，带回 fromIndex / toIndex / itemCount，调用方直接比较下标，不必再读节点
+ * - 只收到 TYPE_WINDOW_CONTENT_CHANGED 时把截止时间缩短到 [CONTENT_GRACE_MS]，期间等不到滚动事件就按内容变化结束
+ * - 什么都没收到时按超时兜底；超时时长按每个包观察到的稳定耗时自适应（EMA），上限是调用方给的 maxWaitMs
+ *
+ * 回调都在主线程。
+ */
+object ScrollDriver {
+
+    private const val MIN_WAIT_MS = 80L
+    // 纯等待（节点还没刷新）不参与 EMA，超时下限单独放宽，避免被快速滚动的估计压到几十毫秒
+    private const val SETTLE_MIN_WAIT_MS = 300L
+    private const val WAIT_MARGIN_MS = 60L
+    private const val WAIT_FACTOR = 2.0
+    private const val CONTENT_GRACE_MS = 40L
+    private const val EMA_ALPHA = 0.3
+    private const val TIMEOUT_BACKOFF = 1.5
+    private const val MAX_SETTLE_MS = 5_000.0
+    private const val EVENT_MASK =
+        AccessibilityEvent.TYPE_VIEW_SCROLLED or AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED
+
+    private val handler = Handler(Looper.getMainLooper())
+    private val lock = Any()
+    private val waits = ArrayList<ScrollWait>(2)
+
+    /** 每个包的稳定耗时 EMA（ms） */
+    private val settleMs = HashMap<String, Double>()
+
+    @Volatile
+    private var active = false
+
+    /**
+     * 向前滚动一屏，收到匹配事件或超时后回调
+     *
+     * @param maxWaitMs 最长等待时间，没有观察数据时就用它
+     */
+    @JvmStatic
+    fun scrollForward(node: AccessibilityNodeInfo, maxWaitMs: Long, callback: (ScrollStep) -> Unit): ScrollWait {
+        val wait = register(node, maxWaitMs, true, callback)
+        val ok = try {
+            node.performAction(AccessibilityNodeInfo.ACTION_SCROLL_FORWARD)
+        } catch (_: Throwable) {
+            false
+        }
+        if (!ok) complete(wait, ScrollStep(false, false, 0, -1, -1, -1, SystemClock.uptimeMillis() - wait.startedAt), false)
+        return wait
+    }
+
+    /**
+     * 不做动作，只等这个列表的下一个滚动 / 内容变化事件（用于滚动后节点还没刷新时的重试）
+     */
+    @JvmStatic
+    fun waitSettle(node: AccessibilityNodeInfo, maxWaitMs: Long, callback: (ScrollStep) -> Unit): ScrollWait =
+        register(node, maxWaitMs, false, callback)
+
+    /**
+     * suspend 版 [scrollForward]；失败时按原 scrollForward 的做法等一会儿再试一次
+     */
+    suspend fun awaitScrollForward(node: AccessibilityNodeInfo, maxWaitMs: Long, retryOnFail: Boolean = true): ScrollStep {
+        val step = await { scrollForward(node, maxWaitMs, it) }
+        if (step.scrolled || !retryOnFail) return step
+        await { waitSettle(node, maxWaitMs, it) }
+        return await { scrollForward(node, maxWaitMs, it) }
+    }
+
+    /**
+     * suspend 版 [waitSettle]
+     */
+    suspend fun awaitSettle(node: AccessibilityNodeInfo, maxWaitMs: Long): ScrollStep =
+        await { waitSettle(node, maxWaitMs, it) }
+
+    /**
+     * 当前对某个包会用的超时时长
+     */
+    @JvmStatic
+    fun waitFor(packageName: String?, maxWaitMs: Long): Long {
+        val ema = synchronized(lock) { packageName?.let { settleMs[it] } } ?: return maxWaitMs
+        return (ema * WAIT_FACTOR + WAIT_MARGIN_MS).toLong().coerceIn(min(MIN_WAIT_MS, maxWaitMs), maxWaitMs)
+    }
+
+    /**
+     * 在服务线程调用；没有等待者时只读一个 volatile
+     */
+    internal fun onEvent(event: AccessibilityEvent) {
+        if (!active) return
+        val type = event.eventType
+        if (type and EVENT_MASK == 0) return
+        val windowId = event.windowId
+        val packageName = event.packageName?.toString()
+        val className = event.className?.toString()
+        val eventTime = event.eventTime
+
+        var matched: ArrayList<ScrollWait>? = null
+        synchronized(lock) {
+            for (w in waits) {
+                if (eventTime < w.startedAt) continue
+                if (w.windowId >= 0 && windowId >= 0) {
+                    if (w.windowId != windowId) continue
+                } else if (w.packageName != null && w.packageName != packageName) {
+                    continue
+                }
+                if (w.className != null && w.className != className) continue
+                if (matched == null) matched = ArrayList(2)
+                matched!!.add(w)
+            }
+        }
+        val candidates = matched ?: return
+        // 同窗口同类名的也可能是嵌套 / 横向的另一个列表，再用事件源比较节点；取不到事件源时保持按类名匹配
+        val source = try {
+            event.source
+        } catch (_: Throwable) {
+            null
+        }
+        val targets = if (source == null) candidates else try {
+            candidates.filter { it.node == null || it.node == source }
+        } finally {
+            recycleCompat(source)
+        }
+        if (targets.isEmpty()) return
+        val now = SystemClock.uptimeMillis()
+        for (w in targets) {
+            if (type == AccessibilityEvent.TYPE_VIEW_SCROLLED || !w.expectScroll) {
+                val scrolled = type == AccessibilityEvent.TYPE_VIEW_SCROLLED
+                complete(
+                    w,
+                    ScrollStep(
+                        scrolled = true,
+                        byEvent = true,
+                        eventType = type,
+                        fromIndex = if (scrolled) event.fromIndex else -1,
+                        toIndex = if (scrolled) event.toIndex else -1,
+                        itemCount = if (scrolled) event.itemCount else -1,
+                        elapsedMs = now - w.startedAt
+                    ),
+                    true
+                )
+            } else {
+                contentChanged(w)
+            }
+        }
+    }
+
+    internal fun cancel(wait: ScrollWait) {
+        synchronized(lock) {
+            if (wait.done) return
+            wait.done = true
+            waits.remove(wait)
+            active = waits.isNotEmpty()
+        }
+        wait.timeout?.let { handler.removeCallbacks(it) }
+    }
+
+    private suspend fun await(start: ((ScrollStep) -> Unit) -> ScrollWait): ScrollStep =
+        suspendCancellableCoroutine { cont ->
+            val once = OneShotContinuation(cont)
+            val wait = start { once.finish(it) }
+            cont.invokeOnCancellation { wait.cancel() }
+        }
+
+    private fun register(
+        node: AccessibilityNodeInfo,
+        maxWaitMs: Long,
+        expectScroll: Boolean,
+        callback: (ScrollStep) -> Unit
+    ): ScrollWait {
+        val packageName = node.packageName?.toString()
+        val wait = ScrollWait(
+            windowId = node.windowId,
+            packageName = packageName,
+            className = node.className?.toString(),
+            // 调用方可能在等待期间回收原节点，存一份副本；副本不回收，避免和服务线程上的比较竞争
+            node = SelectToSpeakServiceAbstract.copyNodeCompat(node),
+            startedAt = SystemClock.uptimeMillis(),
+            expectScroll = expectScroll,
+            callback = callback
+        )
+        synchronized(lock) {
+            waits.add(wait)
+            active = true
+        }
+        val timeout = waitFor(packageName, maxWaitMs).let {
+            if (expectScroll) it else it.coerceAtLeast(min(SETTLE_MIN_WAIT_MS, maxWaitMs))
+        }
+        schedule(wait, timeout) {
+            complete(wait, ScrollStep(true, false, 0, -1, -1, -1, SystemClock.uptimeMillis() - wait.startedAt), false)
+        }
+        return wait
+    }
+
+    private fun contentChanged(wait: ScrollWait) {
+        synchronized(lock) {
+            if (wait.done || wait.contentSeen) return
+            wait.contentSeen = true
+        }
+        wait.timeout?.let { handler.removeCallbacks(it) }
+        schedule(wait, CONTENT_GRACE_MS) {
+            val step = ScrollStep(
+                true, true, AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED, -1, -1, -1,
+                SystemClock.uptimeMillis() - wait.startedAt
+            )
+            complete(wait, step, true)
+        }
+    }
+
+    private fun schedule(wait: ScrollWait, delayMs: Long, block: () -> Unit) {
+        val r = Runnable(block)
+        wait.timeout = r
+        handler.postDelayed(r, delayMs)
+    }
+
+    private fun complete(wait: ScrollWait, step: ScrollStep, observed: Boolean) {
+        synchronized(lock) {
+            if (wait.done) return
+            wait.done = true
+            waits.remove(wait)
+            active = waits.isNotEmpty()
+            // 只有滚动等待的耗时计入估计，纯等待的起点不是动作
+            wait.packageName?.takeIf { wait.expectScroll }?.let { pkg ->
+                if (observed) {
+                    val prev = settleMs[pkg]
+                    settleMs[pkg] = if (prev == null) step.elapsedMs.toDouble()
+                    else prev + EMA_ALPHA * (step.elapsedMs - prev)
+                } else if (step.scrolled) {
+                    // 超时：说明估计偏小，放宽下一次的等待
+                    settleMs[pkg]?.let { settleMs[pkg] = (it * TIMEOUT_BACKOFF).coerceAtMost(MAX_SETTLE_MS) }
+                }
+            }
+        }
+        wait.timeout?.let { handler.removeCallbacks(it) }
+        wait.callback(step)
+    }
+}
@@ -28,6 +28,8 @@ class ScrollUntilEndTask {
 
     private val handler = Handler(Looper.getMainLooper())
     private var finished = false
+    private var pending: ScrollWait? = null
+    private var lastStep: ScrollStep? = null
 
     /**
      * 主动取消任务（如 window 切换 / 新任务启动）
@@ -43,7 +45,7 @@ class ScrollUntilEndTask {
      *
      * @param list 列表节点
      * @param maxScrollTimes 最大滑动次数上限
-     * @param delayMs 每次滑动后等待 UI 稳定的时间
+     * @param delayMs 每次滑动后等待 UI 稳定的最长时间（收到该列表的滚动事件会提前结束，见 [ScrollDriver]）
      * @param stableThreshold 连续多少次“尾部不变”才算真正到底
      * @param onEachScroll 每次滑动后的回调
      * @param onFinish 最终完成回调（true=到底 / false=被中断或到达上限）
@@ -64,7 +66,6 @@ class ScrollUntilEndTask {
 
         var scrollCount = 0
         var stableCount = 0
-        var lastFingerprint: ListFingerprint? = null
 
         fun step() {
             if (finished) return
@@ -78,15 +79,12 @@ class ScrollUntilEndTask {
             scrollOnceAndCheckChanged(list, delayMs) { changed ->
                 if (finished) return@scrollOnceAndCheckChanged
 
-                val current = buildListFingerprint(list)
-
-                if (!changed && current == lastFingerprint) {
+                if (!changed) {
                     stableCount++
                 } else {
                     stableCount = 0
                 }
 
-                lastFingerprint = current
                 scrollCount++
                 onEachScroll?.invoke(scrollCount)
 
@@ -120,6 +118,8 @@ class ScrollUntilEndTask {
      */
     private fun finishInternal() {
         finished = true
+        pending?.cancel()
+        pending = null
         handler.removeCallbacksAndMessages(null)
     }
 
@@ -173,28 +173,33 @@ class ScrollUntilEndTask {
 
     /**
      * 单次滑动 + 判断内容是否变化
+     *
+     * 滚动事件带回可见区间时直接比较 fromIndex / toIndex / itemCount；
+     * 只有拿不到下标（内容变化结束 / 超时）时才退回读最后一个子节点的指纹
      */
     private fun scrollOnceAndCheckChanged(
         list: AccessibilityNodeInfo,
         delayMs: Long,
         callback: (changed: Boolean) -> Unit
     ) {
-        val before = buildListFingerprint(list)
-
-        val scrolled = list.performAction(
-            AccessibilityNodeInfo.ACTION_SCROLL_FORWARD
-        )
+        // 上一步已经有下标时，这一步大概率也有，先不读节点
+        val before = if (lastStep?.hasIndex == true) null else buildListFingerprint(list)
+
+        pending = ScrollDriver.scrollForward(list, delayMs) { step ->
+            pending = null
+            if (finished) return@scrollForward
+            val previous = lastStep
+            lastStep = step
+
+            if (!step.scrolled) {
+                callback(false)
+                return@scrollForward
+            }
 
-        if (!scrolled) {
-            callback(false)
-            return
+            val changed = step.movedFrom(previous)
+                // 真正滚动过一定会有 TYPE_VIEW_SCROLLED，超时且没有基准指纹时按未变化处理
+                ?: if (before == null) step.byEvent else before != buildListFingerprint(list)
+            callback(changed)
         }
-
-        // ✅ 使用同一个 handler，支持 cancel
-        handler.postDelayed({
-            if (finished) return@postDelayed
-            val after = buildListFingerprint(list)
-            callback(before != after)
-        }, delayMs)
     }
 }
@@ -7,16 +7,7 @@ import android.os.Build
 import com.google.android.accessibility.ext.utils.KeyguardUnLock.sendLog
 import com.google.android.accessibility.ext.utils.KeyguardUnLock.showClickIndicator
 import com.google.android.accessibility.selecttospeak.accessibilityService
-import kotlinx.coroutines.CoroutineScope
-import kotlinx.coroutines.Dispatchers
-import kotlinx.coroutines.SupervisorJob
-import kotlinx.coroutines.delay
-import kotlinx.coroutines.launch
-import kotlinx.coroutines.suspendCancellableCoroutine
-import kotlinx.coroutines.sync.Mutex
-import kotlinx.coroutines.sync.withLock
 import kotlinx.coroutines.withTimeoutOrNull
-import kotlin.coroutines.resume
 
 /**
  * Company    :
@@ -37,8 +28,6 @@ object StableGestureClicker {
     /** Java 侧用的默认实例 */
     @JvmField
     val DEFAULT_CONFIG = Config()
-    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.Default)
-    private val mutex = Mutex()
 
     /**
      * 串行、稳定的真实点击
@@ -55,32 +44,24 @@ object StableGestureClicker {
         if (x <= 0 || y <= 0) return false
         //if (service.rootInActiveWindow == null) return false
 
-        scope.launch {
-            mutex.withLock {
-                try {
-                    dispatch(service, x, y, duration)
-                    delay(120) // 给系统一点喘息时间（非常重要）
-                    showClickIndicator(service, x, y)
-                } catch (_: Throwable) {
-                }
-            }
+        val gesture = buildGesture(x, y, duration) ?: return false
+        // 上一个手势完成后由调度器立即派发下一个，取代原来的 Mutex + delay(120)；队满被拒绝时返回 false
+        return GestureScheduler.submit(service, gesture, GesturePriority.USER) { ok ->
+            if (ok) showClickIndicator(service, x, y)
         }
-
-        return true
     }
 
-    private fun dispatch(
-        service: AccessibilityService,
+    private fun buildGesture(
         x: Int,
         y: Int,
         duration: Long,
         offset: Int = 5 // 最大偏移像素（±offset）
-    ) {
-        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N) return
+    ): GestureDescription? {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N) return null
 
         // 生成随机偏移
-        val dx = (-offset..offset).random()
-        val dy = (-offset..offset).random()
+        val dx = HumanPathLibrary.nextInt(-offset..offset)
+        val dy = HumanPathLibrary.nextInt(-offset..offset)
         sendLog("点击位置偏移: ($x, $y, $duration)")
         val finalX = (x + dx).coerceAtLeast(0)
         val finalY = (y + dy).coerceAtLeast(0)
@@ -89,7 +70,7 @@ object StableGestureClicker {
             moveTo(finalX.toFloat(), finalY.toFloat())
         }
 
-        val gesture = GestureDescription.Builder()
+        return GestureDescription.Builder()
             .addStroke(
                 GestureDescription.StrokeDescription(
                     path,
@@ -98,11 +79,6 @@ object StableGestureClicker {
                 )
             )
             .build()
-
-        try {
-            service.dispatchGesture(gesture, null, null)
-        } catch (_: Throwable) {
-        }
     }
 
 
@@ -124,63 +100,22 @@ object StableGestureClicker {
         //if (service.rootInActiveWindow == null) return false
         if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N) return false
 
-        return mutex.withLock {
-            withTimeoutOrNull(timeoutMs) {
-                suspendCancellableCoroutine<Boolean> { cont ->
-
-                    val path = Path().apply {
-                        moveTo(x.toFloat(), y.toFloat())
-                    }
-
-                    val gesture = GestureDescription.Builder()
-                        .addStroke(
-                            GestureDescription.StrokeDescription(
-                                path, 0, duration
-                            )
-                        )
-                        .build()
-
-                    try {
-                        val dispatched = service.dispatchGesture(
-                            gesture,
-                            object : AccessibilityService.GestureResultCallback() {
-
-                                override fun onCompleted(
-                                    gestureDescription: GestureDescription?
-                                ) {
-                                    if (cont.isActive) {
-                                        cont.resume(true)
-                                    }
-                                }
-
-                                override fun onCancelled(
-                                    gestureDescription: GestureDescription?
-                                ) {
-                                    if (cont.isActive) {
-                                        cont.resume(false)
-                                    }
-                                }
-                            },
-                            null
-                        )
-
-                        if (!dispatched && cont.isActive) {
-                            cont.resume(false)
-                        }
-
-                    } catch (_: Throwable) {
-                        if (cont.isActive) {
-                            cont.resume(false)
-                        }
-                    }
-
-                    cont.invokeOnCancellation {
-                        // 手势一旦 dispatch，系统不支持强制取消
-                        // 这里只做资源收尾即可
-                    }
-                }
-            } ?: false
+        val path = Path().apply {
+            moveTo(x.toFloat(), y.toFloat())
         }
+
+        val gesture = GestureDescription.Builder()
+            .addStroke(
+                GestureDescription.StrokeDescription(
+                    path, 0, duration
+                )
+            )
+            .build()
+
+        // 超时只代表没等到回调，排队中的会被撤回
+        return withTimeoutOrNull(timeoutMs) {
+            GestureScheduler.await(service, gesture, GesturePriority.USER)
+        } ?: false
     }
 
     private fun isSystemUi(service: AccessibilityService): Boolean {
@@ -459,7 +459,7 @@ public  class Utilshezhi {
 
 
 
-    //王者荣耀输入x, y坐标模拟点击事件
+    //王者荣耀输入x, y坐标模拟点击事件；返回 true 表示点击已进入 GestureScheduler 队列，被拒绝时返回 false
     @TargetApi(Build.VERSION_CODES.N)
     public static boolean performXY(AccessibilityService service, float x, float y){
         Path path = new Path();
@@ -467,18 +467,7 @@ public  class Utilshezhi {
         GestureDescription.Builder builder = new GestureDescription.Builder();
         builder.addStroke(new GestureDescription.StrokeDescription(path, 0, 20));
         GestureDescription gestureDescription = builder.build();
-        return service.dispatchGesture(gestureDescription, new AccessibilityService.GestureResultCallback() {
-            @Override
-            public void onCompleted(GestureDescription gestureDescription) {
-                super.onCompleted(gestureDescription);
-                //Log.i(ConstantsSend.TAG, "onCompleted: completed");
-            }
-            @Override
-            public void onCancelled(GestureDescription gestureDescription) {
-                super.onCancelled(gestureDescription);
-                //Log.i(ConstantsSend.TAG, "onCancelled: cancelled");
-            }
-        }, null);
+        return GestureScheduler.submit(service, gestureDescription, GesturePriority.USER);
     }
 
     
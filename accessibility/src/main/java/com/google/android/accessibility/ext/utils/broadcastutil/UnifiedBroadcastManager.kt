@@ -35,6 +35,14 @@ object UnifiedBroadcastManager {
         addAction(XPQ_SCREEN_TEST)  // 调试用
     }
 
+    const val CHANNEL_PACKAGE = "PACKAGE_CHANGED" //应用安装/升级/卸载 Channel
+    @JvmField
+    val packageFilter = IntentFilter().apply {
+        addAction(Intent.ACTION_PACKAGE_REPLACED)  // 升级
+        addAction(Intent.ACTION_PACKAGE_REMOVED)   // 卸载
+        addDataScheme("package")
+    }
+
 
     /**
      * 注册广播（支持抢占）
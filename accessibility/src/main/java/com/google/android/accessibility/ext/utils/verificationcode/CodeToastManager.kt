@@ -15,6 +15,7 @@ import android.widget.ImageView
 import android.widget.LinearLayout
 import android.widget.TextView
 import android.view.WindowManager.LayoutParams
+import com.google.android.accessibility.ext.utils.AppMetaCache
 import com.google.android.accessibility.ext.utils.LibCtxProvider.Companion.appContext
 import com.google.android.accessibility.selecttospeak.accessibilityService
 
@@ -189,10 +190,6 @@ object CodeToastManager {
 
     /** 获取应用图标 */
     private fun getAppIcon(context: Context, packageName: String): Drawable? {
-        return try {
-            context.packageManager.getApplicationIcon(packageName)
-        } catch (_: Exception) {
-            null
-        }
+        return AppMetaCache.getIcon(context, packageName)
     }
 }
\ No newline at end of file
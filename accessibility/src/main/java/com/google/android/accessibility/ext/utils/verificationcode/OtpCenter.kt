@@ -6,8 +6,15 @@ import android.util.Log
 import com.google.android.accessibility.ext.utils.LibCtxProvider.Companion.appContext
 import com.google.android.accessibility.ext.utils.NotificationUtilXpq.XPQ_OTP
 import com.google.android.accessibility.ext.utils.NotificationUtilXpq.YANZHENGMA_CHANNEL_ID
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.channels.Channel
 import kotlinx.coroutines.flow.MutableSharedFlow
 import kotlinx.coroutines.flow.SharedFlow
+import kotlinx.coroutines.launch
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
 
 /**
 同一个验证码
@@ -20,16 +27,38 @@ import kotlinx.coroutines.flow.SharedFlow
 object OtpCenter {
 
     private const val DUP_WINDOW = 5000L
+    private const val BACKLOG_CAPACITY = 256
 
-    private val recent =
-        LinkedHashMap<String, Long>()
+    // 固定容量的去重存储，插入 / 过期 O(1)，多个线程同时 report 也安全
+    private val recent = OtpDedupStore(256, DUP_WINDOW)
 
     private val _events =
         MutableSharedFlow<OtpEvent>(
             replay = 0,
-            extraBufferCapacity = 10
+            extraBufferCapacity = 32
         )
 
+    // 收集方跟不上、缓冲满时的积压队列，由 pump 协程挂起式 emit，保证验证码不丢且顺序不变
+    private val backlog = Channel<OtpEvent>(BACKLOG_CAPACITY)
+    private val backlogSize = AtomicInteger()
+    private val lost = AtomicLong()
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.Default)
+
+    init {
+        scope.launch {
+            for (event in backlog) {
+                _events.emit(event)
+                backlogSize.decrementAndGet()
+            }
+        }
+    }
+
+    /** 积压队列也满时丢掉的验证码数（正常应为 0） */
+    val lostCount: Long get() = lost.get()
+
+    /** 被去重拦截的次数 */
+    val suppressedCount: Long get() = recent.suppressedCount
+
     val events: SharedFlow<OtpEvent>
         get() = _events
 
@@ -44,24 +73,13 @@ object OtpCenter {
             if (!TextUtils.equals(channelId, XPQ_OTP))return
         }
         Log.e("通知是否相等", "source: "+source )
-        val key = "${packageName ?: "unknown"}:$code"
-
         val now = System.currentTimeMillis()
 
-        val old = recent[key]
-
-        if (
-            old != null &&
-            now - old < DUP_WINDOW
-        ) {
+        if (!recent.firstSeen(packageName, code, now)) {
             return
         }
 
-        recent[key] = now
-
-        cleanup(now)
-
-        _events.tryEmit(
+        emit(
             OtpEvent(
                 code = code,
                 packageName = packageName,
@@ -71,22 +89,14 @@ object OtpCenter {
         )
     }
 
-    private fun cleanup(now: Long) {
-
-        val iterator =
-            recent.entries.iterator()
-
-        while (iterator.hasNext()) {
-
-            val item =
-                iterator.next()
-
-            if (
-                now - item.value >
-                DUP_WINDOW
-            ) {
-                iterator.remove()
-            }
+    private fun emit(event: OtpEvent) {
+        // 已有积压时排在后面，避免新码越过旧码
+        if (backlogSize.get() == 0 && _events.tryEmit(event)) return
+        backlogSize.incrementAndGet()
+        if (backlog.trySend(event).isFailure) {
+            backlogSize.decrementAndGet()
+            lost.incrementAndGet()
+            Log.e("OtpCenter", "验证码积压已满，丢弃: ${event.packageName}")
         }
     }
 }
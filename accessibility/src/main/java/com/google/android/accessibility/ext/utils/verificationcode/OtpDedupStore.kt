@@ -0,0 +1,151 @@
+package com.google.android.accessibility.ext.utils.verificationcode
+
+import com.google.android.accessibility.ext.utils.DedupWindow
+
+/**
+ * 验证码去重存储：固定容量、按时间有序、插入 / 过期都是 O(1)，不分配对象
+ *
+ * 结构：
+ *  - 环形缓冲 ring：按插入顺序存 (哈希, 时间)，队头最旧，过期只需从队头弹出
+ *  - 开放寻址表 table：哈希 -> ring 下标，线性探测，删除用向后移位（不留墓碑）
+ *
+ * 容量满时淘汰最旧的一条。所有操作在一个锁里完成，每次只做常数量的工作，
+ * 多个线程（通知 lane、无障碍 lane）同时上报也安全。纯 JVM 实现。
+ */
+class OtpDedupStore(
+    capacity: Int = 256,
+    private val windowMs: Long = 5000L
+) {
+
+    private val ringSize = capacity.coerceAtLeast(1)
+    private val ringHash = LongArray(ringSize)
+    private val ringTime = LongArray(ringSize)
+    private var head = 0
+    private var count = 0
+
+    // 表长取 >= 2 * capacity 的 2 的幂，装载因子不超过 0.5
+    private val tableMask: Int
+    private val tableHash: LongArray
+    private val tableSlot: IntArray
+
+    init {
+        var size = 2
+        while (size < ringSize * 2) size = size shl 1
+        tableMask = size - 1
+        tableHash = LongArray(size)
+        tableSlot = IntArray(size)
+    }
+
+    private val lock = Any()
+
+    @Volatile
+    private var suppressed = 0L
+
+    /** 被拦截的重复次数 */
+    val suppressedCount: Long get() = suppressed
+
+    val size: Int get() = synchronized(lock) { count }
+
+    /**
+     * [windowMs] 内第一次出现返回 true 并记录，重复返回 false
+     */
+    fun firstSeen(packageName: String?, code: String, now: Long = System.currentTimeMillis()): Boolean {
+        val hash = keyHash(packageName, code)
+        synchronized(lock) {
+            expire(now)
+            val t = find(hash)
+            if (t >= 0) {
+                suppressed++
+                return false
+            }
+            if (count == ringSize) removeHead()
+            val slot = (head + count) % ringSize
+            ringHash[slot] = hash
+            ringTime[slot] = now
+            count++
+            insert(hash, slot)
+            return true
+        }
+    }
+
+    fun clear() {
+        synchronized(lock) {
+            tableHash.fill(0L)
+            head = 0
+            count = 0
+        }
+    }
+
+    private fun expire(now: Long) {
+        while (count > 0 && now - ringTime[head] >= windowMs) removeHead()
+    }
+
+    private fun removeHead() {
+        delete(ringHash[head], head)
+        head = (head + 1) % ringSize
+        count--
+    }
+
+    private fun find(hash: Long): Int {
+        var i = mix(hash) and tableMask
+        while (true) {
+            val h = tableHash[i]
+            if (h == 0L) return -1
+            if (h == hash) return i
+            i = (i + 1) and tableMask
+        }
+    }
+
+    private fun insert(hash: Long, slot: Int) {
+        var i = mix(hash) and tableMask
+        while (tableHash[i] != 0L) i = (i + 1) and tableMask
+        tableHash[i] = hash
+        tableSlot[i] = slot
+    }
+
+    /**
+     * 删除 (hash, slot) 对应的表项，并把后续同一探测链上的元素前移
+     */
+    private fun delete(hash: Long, slot: Int) {
+        var i = mix(hash) and tableMask
+        while (true) {
+            val h = tableHash[i]
+            if (h == 0L) return
+            if (h == hash && tableSlot[i] == slot) break
+            i = (i + 1) and tableMask
+        }
+        var hole = i
+        var j = (i + 1) and tableMask
+        while (tableHash[j] != 0L) {
+            val home = mix(tableHash[j]) and tableMask
+            // home 不在 (hole, j] 区间内时，把 j 移到空洞
+            val shouldMove = if (hole <= j) (home <= hole || home > j) else (home <= hole && home > j)
+            if (shouldMove) {
+                tableHash[hole] = tableHash[j]
+                tableSlot[hole] = tableSlot[j]
+                hole = j
+            }
+            j = (j + 1) and tableMask
+        }
+        tableHash[hole] = 0L
+    }
+
+    companion object {
+
+        /**
+         * 包名 + ":" + 验证码 的 64 位 FNV-1a 哈希，不拼接字符串；0 保留为空槽
+         */
+        @JvmStatic
+        fun keyHash(packageName: String?, code: String): Long {
+            var h = DedupWindow.hash64(packageName ?: "unknown")
+            h = DedupWindow.hash64(h, ':')
+            h = DedupWindow.hash64(h, code)
+            return if (h == 0L) 1L else h
+        }
+
+        private fun mix(h: Long): Int {
+            val x = h xor (h ushr 33)
+            return (x xor (x ushr 17)).toInt()
+        }
+    }
+}
@@ -1,35 +1,28 @@
 package com.google.android.accessibility.ext.utils.verificationcode
 
-import java.util.regex.Pattern
-
 /**
  提取验证码
  * Description:This is OtpParser
  */
 object OtpParser {
     // 验证码关键词检测
-    val verificationKeywords = listOf(
-        "验证码", "授权码", "随机码", "动态密码", "校验码", "内有效", "完成验证"
-    )
+    val verificationKeywords = OtpLocale.ZH_CN.keywords
+
+    // 原实现使用的两个正则，保留给外部参考 / 基准对比，parse 已改为单次扫描不再使用
     val patterns = arrayOf(
         "(?<=码(|是|为|：|:|是：|是:|为：|为:))(\\d{4,6})",
         "((?<=\\D)(\\d{4,6})(?=\\D))"
     )
 
+    /**
+     * 提取验证码，规则见 [OtpRuleEngine]
+     *
+     * @param packageName 来源包名，用来挑选只对某些 App 生效的规则
+     */
     @JvmStatic
-    fun parse(content: String): Pair<Boolean, String?> {
-
-        if (!verificationKeywords.any { content.contains(it) }) {
-            return Pair(false, null)
-        }
-        val cleanContent = content.replace(" ", "")
-        for (pattern in patterns) {
-            val matcher = Pattern.compile(pattern).matcher(cleanContent)
-            if (matcher.find()) {
-                val verificationCode = matcher.group(0)
-                return Pair(true, verificationCode)
-            }
-        }
-        return Pair(false, null)
+    @JvmOverloads
+    fun parse(content: String, packageName: String? = null): Pair<Boolean, String?> {
+        val match = OtpRuleEngine.match(content, packageName, OtpRule.TYPE_OTP) ?: return Pair(false, null)
+        return Pair(true, match.code)
     }
-}
\ No newline at end of file
+}
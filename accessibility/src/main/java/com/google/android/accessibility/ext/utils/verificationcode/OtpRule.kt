@@ -0,0 +1,158 @@
+package com.google.android.accessibility.ext.utils.verificationcode
+
+import org.json.JSONArray
+import org.json.JSONObject
+
+/**
+ * 一条验证码 / 取件码提取规则，可以从 JSON 加载，交给 [OtpRuleEngine] 编译后使用
+ *
+ * JSON 格式（除 id 外都可省略）：
+ * ```
+ * {
+ *   "id": "cmb_otp",
+ *   "type": "otp",                      // otp 验证码 / package 取件码，也可以自定义
+ *   "label": "验证码",
+ *   "labels": {"丰巢取件码": ["丰巢"]},   // 正文含某些词时改用对应的 label，按顺序取第一个
+ *   "keywords": ["验证码", "动态密码"],   // 门槛关键词，一个都不含时跳过这条规则
+ *   "anchors": ["码是", "码："],          // position 为 auto / anchor 时，验证码紧跟在锚点之后
+ *   "position": "auto",                 // auto 锚点优先再取独立数字串 / anchor 只认锚点 / run 按 lengths 取数字串
+ *   "minLength": 4, "maxLength": 6,
+ *   "lengths": [8, 6],                  // position 为 run 时，依次尝试的长度
+ *   "alphanumeric": false, "stripSpaces": true, "ignoreCase": false,
+ *   "packages": ["com.android.mms", "com.tencent.*"],  // 只对这些包生效，空表示全部，* 结尾为前缀
+ *   "senders": ["招商银行"],             // 只对这些短信签名（【】里的内容）生效，空表示全部
+ *   "priority": 10                      // 大的先试，相同按声明顺序
+ * }
+ * ```
+ */
+class OtpRule(
+    val id: String,
+    val type: String = TYPE_OTP,
+    val label: String = "验证码",
+    val labels: Map<String, List<String>> = emptyMap(),
+    val keywords: List<String> = emptyList(),
+    val anchors: List<String> = emptyList(),
+    val position: String = POSITION_AUTO,
+    val minLength: Int = 4,
+    val maxLength: Int = 6,
+    val lengths: List<Int> = emptyList(),
+    val alphanumeric: Boolean = false,
+    val stripSpaces: Boolean = true,
+    val ignoreCase: Boolean = false,
+    val packages: List<String> = emptyList(),
+    val senders: List<String> = emptyList(),
+    val priority: Int = 0
+) {
+
+    /**
+     * 是否作用于该包名
+     */
+    fun appliesToPackage(packageName: String?): Boolean {
+        if (packages.isEmpty()) return true
+        packageName ?: return false
+        return packages.any { p ->
+            if (p.endsWith("*")) packageName.startsWith(p.substring(0, p.length - 1)) else p == packageName
+        }
+    }
+
+    /**
+     * 是否作用于该短信签名
+     */
+    fun appliesToSender(sender: String?): Boolean {
+        if (senders.isEmpty()) return true
+        sender ?: return false
+        return senders.contains(sender)
+    }
+
+    /**
+     * 正文对应的 label
+     */
+    fun labelOf(content: CharSequence): String {
+        for ((name, words) in labels) {
+            if (words.any { content.contains(it) }) return name
+        }
+        return label
+    }
+
+    override fun toString(): String = "OtpRule(id=$id, type=$type, position=$position, priority=$priority)"
+
+    companion object {
+        const val TYPE_OTP = "otp"
+        const val TYPE_PACKAGE = "package"
+
+        /** 锚点后的验证码优先，没有再取第一个前后都不是数字的数字串 */
+        const val POSITION_AUTO = "auto"
+        /** 只认锚点后的验证码 */
+        const val POSITION_ANCHOR = "anchor"
+        /** 按 lengths 依次取第一段够长的连续数字的前 n 位（不要求前后边界） */
+        const val POSITION_RUN = "run"
+
+        /**
+         * 由 [OtpLocale] 生成规则
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun fromLocale(id: String, locale: OtpLocale, priority: Int = 0): OtpRule = OtpRule(
+            id = id,
+            keywords = locale.keywords,
+            anchors = locale.anchors,
+            position = if (locale.looseFallback) POSITION_AUTO else POSITION_ANCHOR,
+            minLength = locale.minLength,
+            maxLength = locale.maxLength,
+            alphanumeric = locale.alphanumeric,
+            stripSpaces = locale.stripSpaces,
+            ignoreCase = locale.ignoreCase,
+            priority = priority
+        )
+
+        /**
+         * 解析规则列表，支持 {"rules": [...]} 或直接一个数组；格式错误抛 JSONException
+         */
+        @JvmStatic
+        fun listFromJson(json: String): List<OtpRule> {
+            val text = json.trim()
+            val array = if (text.startsWith("[")) JSONArray(text) else JSONObject(text).getJSONArray("rules")
+            return List(array.length()) { fromJson(array.getJSONObject(it)) }
+        }
+
+        @JvmStatic
+        fun fromJson(obj: JSONObject): OtpRule {
+            val labels = LinkedHashMap<String, List<String>>()
+            obj.optJSONObject("labels")?.let { map ->
+                val names = map.keys()
+                while (names.hasNext()) {
+                    val name = names.next()
+                    labels[name] = strings(map.optJSONArray(name))
+                }
+            }
+            return OtpRule(
+                id = obj.getString("id"),
+                type = obj.optString("type", TYPE_OTP),
+                label = obj.optString("label", "验证码"),
+                labels = labels,
+                keywords = strings(obj.optJSONArray("keywords")),
+                anchors = strings(obj.optJSONArray("anchors")),
+                position = obj.optString("position", POSITION_AUTO),
+                minLength = obj.optInt("minLength", 4),
+                maxLength = obj.optInt("maxLength", 6),
+                lengths = ints(obj.optJSONArray("lengths")),
+                alphanumeric = obj.optBoolean("alphanumeric", false),
+                stripSpaces = obj.optBoolean("stripSpaces", true),
+                ignoreCase = obj.optBoolean("ignoreCase", false),
+                packages = strings(obj.optJSONArray("packages")),
+                senders = strings(obj.optJSONArray("senders")),
+                priority = obj.optInt("priority", 0)
+            )
+        }
+
+        private fun strings(array: JSONArray?): List<String> {
+            array ?: return emptyList()
+            return List(array.length()) { array.optString(it) }.filter { it.isNotEmpty() }
+        }
+
+        private fun ints(array: JSONArray?): List<Int> {
+            array ?: return emptyList()
+            return List(array.length()) { array.optInt(it) }.filter { it > 0 }
+        }
+    }
+}
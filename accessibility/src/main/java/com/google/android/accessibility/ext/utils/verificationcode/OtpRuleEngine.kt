@@ -0,0 +1,281 @@
+package com.google.android.accessibility.ext.utils.verificationcode
+
+import android.content.Context
+import android.util.Log
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * 验证码 / 取件码统一提取引擎
+ *
+ * 规则（[OtpRule]）加载后只编译一次；每条消息按 类型 + 包名 + 短信签名 从缓存里取出适用的规则，
+ * 按优先级依次尝试，第一个命中的生效，不用每条消息把所有规则都跑一遍。
+ * 结果 [OtpMatch] 带上命中的规则和耗时，[stats] 里有每条规则的尝试 / 命中次数和累计耗时，方便调规则。
+ *
+ * 默认规则与原来的 OtpParser / NotificationUtilXpq.extractPackageCode 行为一致，
+ * [loadJson] 加载的规则默认追加在默认规则之上。
+ * 取件码规则独立于验证码规则：新规则里没有 [OtpRule.TYPE_PACKAGE] 类型的规则时，保留默认的取件码规则，
+ * 只换验证码规则不会让 extractPackageCode 失效。
+ */
+object OtpRuleEngine {
+
+    private const val TAG = "OtpRuleEngine"
+    private const val SELECTION_CACHE_SIZE = 512
+
+    @JvmField
+    val DEFAULT_RULES: List<OtpRule> = listOf(
+        OtpRule.fromLocale("zh_otp", OtpLocale.ZH_CN),
+        OtpRule(
+            id = "package_code",
+            type = OtpRule.TYPE_PACKAGE,
+            label = "快递取件码",
+            labels = linkedMapOf(
+                "菜鸟取件码" to listOf("菜鸟智能柜", "菜鳥智能櫃"),
+                "丰巢取件码" to listOf("丰巢", "豐巢")
+            ),
+            keywords = listOf("取件码", "取件碼"),
+            position = OtpRule.POSITION_RUN,
+            lengths = listOf(8, 6)
+        )
+    )
+
+    /**
+     * 命中结果
+     *
+     * @param costNanos 本次 [match] 的总耗时（含选规则和没命中的规则）
+     */
+    data class OtpMatch(
+        val code: String,
+        val type: String,
+        val label: String,
+        val ruleId: String,
+        val costNanos: Long
+    )
+
+    data class RuleStats(
+        val ruleId: String,
+        val attempts: Long,
+        val hits: Long,
+        val totalNanos: Long
+    ) {
+        val averageNanos: Long get() = if (attempts == 0L) 0L else totalNanos / attempts
+    }
+
+    private class CompiledRule(val rule: OtpRule, val order: Int) {
+        private val keywords = rule.keywords.filter { it.isNotEmpty() }.toTypedArray()
+        private val scanner: OtpScanner? = if (rule.position == OtpRule.POSITION_RUN) null else OtpScanner(
+            OtpLocale(
+                keywords = rule.keywords,
+                anchors = rule.anchors,
+                stripSpaces = rule.stripSpaces,
+                ignoreCase = rule.ignoreCase,
+                minLength = rule.minLength,
+                maxLength = rule.maxLength,
+                alphanumeric = rule.alphanumeric,
+                looseFallback = rule.position != OtpRule.POSITION_ANCHOR
+            )
+        )
+        private val lengths = (rule.lengths.ifEmpty { listOf(rule.maxLength) }).toIntArray()
+
+        val attempts = AtomicLong()
+        val hits = AtomicLong()
+        val nanos = AtomicLong()
+
+        fun extract(content: CharSequence): String? =
+            if (scanner != null) scanner.extract(content) else firstRun(content, lengths)
+
+        fun passesGate(content: CharSequence): Boolean {
+            if (keywords.isEmpty()) return true
+            for (keyword in keywords) {
+                if (content.contains(keyword, rule.ignoreCase)) return true
+            }
+            return false
+        }
+    }
+
+    private class Selection(
+        val type: String?,
+        val packageName: String?,
+        val sender: String?,
+        val rules: Array<CompiledRule>
+    )
+
+    private class RuleSet(rules: List<OtpRule>) {
+        val rules: List<CompiledRule> = rules.mapIndexed { index, rule -> CompiledRule(rule, index) }
+        val senderScoped = rules.any { it.senders.isNotEmpty() }
+        val selection = ConcurrentHashMap<String, Array<CompiledRule>>()
+
+        // 连续的消息大多来自同一个来源，先比较上一次的选择，省掉拼 key 和查表
+        @Volatile
+        var last: Selection? = null
+
+        fun select(type: String?, packageName: String?, sender: String?): Array<CompiledRule> {
+            last?.let {
+                if (it.type == type && it.packageName == packageName && it.sender == sender) return it.rules
+            }
+            val key = "$type\u0001$packageName\u0001$sender"
+            val selected = selection[key] ?: rules
+                .filter { (type == null || it.rule.type == type) && it.rule.appliesToPackage(packageName) && it.rule.appliesToSender(sender) }
+                .sortedWith(compareByDescending<CompiledRule> { it.rule.priority }.thenBy { it.order })
+                .toTypedArray()
+                .also {
+                    // 包名 / 签名组合有限，超出说明来源异常多，直接清空重建
+                    if (selection.size >= SELECTION_CACHE_SIZE) selection.clear()
+                    selection[key] = it
+                }
+            last = Selection(type, packageName, sender, selected)
+            return selected
+        }
+    }
+
+    @Volatile
+    private var ruleSet = RuleSet(DEFAULT_RULES)
+
+    val rules: List<OtpRule> get() = ruleSet.rules.map { it.rule }
+
+    /**
+     * 替换全部规则（缓存和统计一起重置）
+     *
+     * [rules] 里没有 [OtpRule.TYPE_PACKAGE] 规则时，默认的取件码规则接在后面继续生效；要替换取件码规则就显式给出
+     */
+    @JvmStatic
+    fun setRules(rules: List<OtpRule>) {
+        ruleSet = RuleSet(withBuiltInPackageRules(rules))
+    }
+
+    /**
+     * 恢复默认规则
+     */
+    @JvmStatic
+    fun reset() {
+        setRules(DEFAULT_RULES)
+    }
+
+    /**
+     * 从 JSON 加载规则，格式见 [OtpRule]；解析失败返回 false 并保留原规则
+     *
+     * @param keepDefaults true 时与 [DEFAULT_RULES] 合并（优先级相同时 JSON 规则先试），
+     * false 时只用 JSON 里的规则（JSON 里没有取件码规则时仍保留默认取件码规则，见 [setRules]）
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun loadJson(json: String, keepDefaults: Boolean = true): Boolean {
+        val loaded = try {
+            OtpRule.listFromJson(json)
+        } catch (e: Exception) {
+            Log.e(TAG, "规则解析失败: ${e.message}")
+            return false
+        }
+        // 同优先级按列表顺序，自定义规则放在默认规则前面
+        setRules(if (keepDefaults) loaded + DEFAULT_RULES else loaded)
+        return true
+    }
+
+    /**
+     * 从 assets 加载规则
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun loadAsset(context: Context, fileName: String, keepDefaults: Boolean = true): Boolean {
+        val json = try {
+            context.assets.open(fileName).bufferedReader().use { it.readText() }
+        } catch (e: Exception) {
+            Log.e(TAG, "规则文件读取失败: $fileName ${e.message}")
+            return false
+        }
+        return loadJson(json, keepDefaults)
+    }
+
+    /**
+     * 提取验证码 / 取件码
+     *
+     * @param packageName 来源包名，用来挑选规则，null 只用不限包名的规则
+     * @param type 规则类型，null 表示所有类型
+     * @param gate 是否要求命中规则的关键词
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun match(
+        content: CharSequence?,
+        packageName: String? = null,
+        type: String? = OtpRule.TYPE_OTP,
+        gate: Boolean = true
+    ): OtpMatch? {
+        if (content.isNullOrEmpty()) return null
+        val start = System.nanoTime()
+        val set = ruleSet
+        val sender = if (set.senderScoped) senderOf(content) else null
+        for (compiled in set.select(type, packageName, sender)) {
+            val ruleStart = System.nanoTime()
+            compiled.attempts.incrementAndGet()
+            // 先提取再过门槛：大多数消息没有数字串，不用查关键词
+            val code = compiled.extract(content)
+            val matched = code != null && (!gate || compiled.passesGate(content))
+            val end = System.nanoTime()
+            compiled.nanos.addAndGet(end - ruleStart)
+            if (matched) {
+                compiled.hits.incrementAndGet()
+                val rule = compiled.rule
+                return OtpMatch(code!!, rule.type, rule.labelOf(content), rule.id, end - start)
+            }
+        }
+        return null
+    }
+
+    /**
+     * 每条规则的尝试 / 命中次数和累计耗时
+     */
+    @JvmStatic
+    fun stats(): List<RuleStats> = ruleSet.rules.map {
+        RuleStats(it.rule.id, it.attempts.get(), it.hits.get(), it.nanos.get())
+    }
+
+    @JvmStatic
+    fun resetStats() {
+        ruleSet.rules.forEach {
+            it.attempts.set(0)
+            it.hits.set(0)
+            it.nanos.set(0)
+        }
+    }
+
+    private fun withBuiltInPackageRules(rules: List<OtpRule>): List<OtpRule> {
+        if (rules.any { it.type == OtpRule.TYPE_PACKAGE }) return rules
+        return rules + DEFAULT_RULES.filter { it.type == OtpRule.TYPE_PACKAGE }
+    }
+
+    /**
+     * 短信签名：开头或结尾【】里的内容，没有返回 null
+     */
+    @JvmStatic
+    fun senderOf(content: CharSequence): String? {
+        val text = content.trim()
+        if (text.startsWith("【")) {
+            val end = text.indexOf('】')
+            if (end > 1) return text.substring(1, end)
+        }
+        if (text.endsWith("】")) {
+            val begin = text.lastIndexOf('【')
+            if (begin >= 0 && begin < text.length - 2) return text.substring(begin + 1, text.length - 1)
+        }
+        return null
+    }
+
+    /**
+     * 依次按 [lengths] 找第一段长度足够的连续数字，取其前 n 位（与正则 [0-9]{n} 的第一个匹配一致）
+     */
+    private fun firstRun(content: CharSequence, lengths: IntArray): String? {
+        for (len in lengths) {
+            var runStart = -1
+            for (i in 0 until content.length) {
+                if (content[i] in '0'..'9') {
+                    if (runStart < 0) runStart = i
+                    if (i - runStart + 1 == len) return content.subSequence(runStart, runStart + len).toString()
+                } else {
+                    runStart = -1
+                }
+            }
+        }
+        return null
+    }
+}
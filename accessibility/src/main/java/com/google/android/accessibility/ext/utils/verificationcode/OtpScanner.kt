@@ -0,0 +1,212 @@
+package com.google.android.accessibility.ext.utils.verificationcode
+
+/**
+ * 验证码提取的语言配置
+ *
+ * @param keywords 门槛关键词，正文不含任何一个时直接跳过
+ * @param anchors 锚点（含分隔符），验证码紧跟在锚点之后时优先采用，如 “码是”、“code is ”
+ * @param stripSpaces 扫描时是否忽略空格（中文短信常见 “验证码 1 2 3 4”）
+ * @param ignoreCase 关键词 / 锚点是否忽略大小写
+ * @param minLength 验证码最短长度
+ * @param maxLength 验证码最长长度
+ * @param alphanumeric 锚点后是否接受字母数字混合的验证码（至少含一位数字）
+ * @param looseFallback 锚点后没有验证码时，是否退回到第一个前后都不是数字的数字串
+ */
+class OtpLocale(
+    val keywords: List<String>,
+    val anchors: List<String>,
+    val stripSpaces: Boolean = true,
+    val ignoreCase: Boolean = false,
+    val minLength: Int = 4,
+    val maxLength: Int = 6,
+    val alphanumeric: Boolean = false,
+    val looseFallback: Boolean = true
+) {
+    companion object {
+
+        /**
+         * 中文，与原 OtpParser 的两个正则行为一致：
+         * (?<=码(|是|为|：|:|是：|是:|为：|为:))(\d{4,6}) 和 (?<=\D)(\d{4,6})(?=\D)
+         */
+        @JvmField
+        val ZH_CN = OtpLocale(
+            keywords = listOf("验证码", "授权码", "随机码", "动态密码", "校验码", "内有效", "完成验证"),
+            anchors = listOf("码", "码是", "码为", "码：", "码:", "码是：", "码是:", "码为：", "码为:")
+        )
+
+        /**
+         * 英文，支持 “Your code is AB12CD” 这类字母数字混合验证码
+         */
+        @JvmField
+        val EN = OtpLocale(
+            keywords = listOf("verification code", "security code", "passcode", "otp", "one-time", "code"),
+            anchors = listOf(
+                "code ", "code: ", "code:", "code is ", "code is: ",
+                "otp ", "otp: ", "otp:", "otp is ", "passcode ", "passcode: ", "passcode is "
+            ),
+            stripSpaces = false,
+            ignoreCase = true,
+            minLength = 4,
+            maxLength = 8,
+            alphanumeric = true
+        )
+    }
+}
+
+/**
+ * 单次扫描的验证码提取器
+ *
+ * 一趟遍历同时完成：锚点识别（只在数字串开头回看几个字符）、4~6 位数字串边界判断，
+ * 不做 replace / substring / 正则，命中时才生成一次结果字符串。线程安全（无可变成员）。
+ */
+class OtpScanner(val locale: OtpLocale) {
+
+    private val keywords: Array<String> = locale.keywords.filter { it.isNotEmpty() }.toTypedArray()
+    private val anchors: Array<String> = locale.anchors
+        .map { a ->
+            val cleaned = if (locale.stripSpaces) a.replace(" ", "") else a
+            if (locale.ignoreCase) cleaned.lowercase() else cleaned
+        }
+        .filter { it.isNotEmpty() }
+        .toTypedArray()
+    // 锚点的最后一个字符，回看时先用它快速排除
+    private val anchorLastChars = anchors.map { it.last() }.distinct().joinToString("")
+
+    /**
+     * 先提取，命中后再过关键词门槛（结果与先过门槛一致，但大多数不含验证码的文本不用查关键词）；
+     * 没有返回 null
+     */
+    fun parse(content: CharSequence?): String? {
+        content ?: return null
+        val code = extract(content) ?: return null
+        return if (containsKeyword(content)) code else null
+    }
+
+    /**
+     * 是否包含任意门槛关键词；关键词只有几个，String.indexOf 比自动机更快
+     */
+    fun containsKeyword(content: CharSequence): Boolean {
+        for (keyword in keywords) {
+            if (content.contains(keyword, locale.ignoreCase)) return true
+        }
+        return false
+    }
+
+    /**
+     * 不过关键词门槛，直接提取：锚点后的验证码优先，否则取第一个前后都不是数字的 4~6 位数字串
+     */
+    fun extract(content: CharSequence): String? {
+        val min = locale.minLength
+        val max = locale.maxLength
+        val strip = locale.stripSpaces
+        val alphanumeric = locale.alphanumeric
+        // 当前位置之前是否出现过（非空格）字符
+        var seenAny = false
+
+        // 数字串
+        var digitStart = -1
+        var digitLen = 0
+        var digitAnchored = false
+        var digitPreceded = false
+        // 字母数字串（alphanumeric 模式）
+        var alnumStart = -1
+        var alnumLen = 0
+        var alnumDigits = 0
+        var alnumAnchored = false
+
+        var looseStart = -1
+        var looseLen = 0
+
+        val n = content.length
+        var i = 0
+        while (i <= n) {
+            val c = if (i < n) content[i] else '\u0000'
+            if (strip && c == ' ') {
+                i++
+                continue
+            }
+            val isDigit = c in '0'..'9'
+            val isAlnum = alphanumeric && (isDigit || c in 'a'..'z' || c in 'A'..'Z')
+
+            if (isDigit) {
+                if (digitStart < 0) {
+                    digitStart = i
+                    digitLen = 0
+                    digitAnchored = seenAny && anchoredAt(content, i)
+                    digitPreceded = seenAny
+                }
+                digitLen++
+            } else if (digitStart >= 0) {
+                // 数字串结束
+                if (digitAnchored && digitLen >= min) {
+                    return collect(content, digitStart, minOf(digitLen, max), strip)
+                }
+                if (looseStart < 0 && locale.looseFallback && digitPreceded && i < n && digitLen in min..max) {
+                    looseStart = digitStart
+                    looseLen = digitLen
+                }
+                digitStart = -1
+            }
+
+            if (isAlnum) {
+                if (alnumStart < 0) {
+                    alnumStart = i
+                    alnumLen = 0
+                    alnumDigits = 0
+                    alnumAnchored = seenAny && (if (isDigit) digitAnchored else anchoredAt(content, i))
+                }
+                alnumLen++
+                if (isDigit) alnumDigits++
+            } else if (alnumStart >= 0) {
+                if (alnumAnchored && alnumDigits > 0 && alnumLen in min..max) {
+                    return collect(content, alnumStart, alnumLen, strip)
+                }
+                alnumStart = -1
+            }
+
+            seenAny = true
+            i++
+        }
+        return if (looseStart >= 0) collect(content, looseStart, looseLen, strip) else null
+    }
+
+    /**
+     * [end] 之前的字符（按配置忽略空格 / 大小写）是否以某个锚点结尾
+     */
+    private fun anchoredAt(content: CharSequence, end: Int): Boolean {
+        var last = end - 1
+        if (locale.stripSpaces) {
+            while (last >= 0 && content[last] == ' ') last--
+        }
+        if (last < 0) return false
+        val lastChar = if (locale.ignoreCase) content[last].lowercaseChar() else content[last]
+        if (anchorLastChars.indexOf(lastChar) < 0) return false
+        for (anchor in anchors) {
+            var p = end - 1
+            var k = anchor.length - 1
+            while (k >= 0) {
+                if (locale.stripSpaces) {
+                    while (p >= 0 && content[p] == ' ') p--
+                }
+                if (p < 0) break
+                val c = if (locale.ignoreCase) content[p].lowercaseChar() else content[p]
+                if (c != anchor[k]) break
+                p--
+                k--
+            }
+            if (k < 0) return true
+        }
+        return false
+    }
+
+    private fun collect(content: CharSequence, start: Int, count: Int, strip: Boolean): String {
+        val sb = StringBuilder(count)
+        var i = start
+        while (sb.length < count && i < content.length) {
+            val c = content[i]
+            if (!(strip && c == ' ')) sb.append(c)
+            i++
+        }
+        return sb.toString()
+    }
+}
@@ -0,0 +1,105 @@
+package com.google.android.accessibility.notification
+
+import android.service.notification.StatusBarNotification
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentSkipListSet
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * 活动通知的内存索引
+ *
+ * 由 onNotificationPosted / onNotificationRemoved 增量维护，按 postTime 从新到旧排序（跳表），
+ * 取代每次收到通知都 getActiveNotifications() + 排序的全量扫描（50+ 常驻通知时每次都是一大包 Binder 数据）。
+ *
+ * 只有以下情况才需要全量重建（[needsRescan] 为 true）：
+ *  - 刚连接（onListenerConnected）或断开后还没重建
+ *  - 移除了一个索引里不存在的 key，说明漏掉了回调
+ *  - 增量更新次数达到 [verifyInterval]，做一次兜底校准
+ */
+class ActiveNotificationIndex(
+    /** 每多少次增量更新后强制校准一次，<= 0 不校准 */
+    private val verifyInterval: Int = 500
+) {
+
+    private class Entry(val key: String, val sbn: StatusBarNotification, val seq: Long)
+
+    // postTime 降序，相同 postTime 按插入顺序
+    private val ordered = ConcurrentSkipListSet<Entry>(
+        compareByDescending<Entry> { it.sbn.postTime }.thenByDescending { it.seq }
+    )
+    private val byKey = ConcurrentHashMap<String, Entry>()
+    private val seq = AtomicLong()
+    private val mutationsSinceRebuild = AtomicInteger()
+
+    @Volatile
+    private var primed = false
+
+    @Volatile
+    private var desync = false
+
+    private val rescans = AtomicLong()
+
+    val needsRescan: Boolean
+        get() = !primed || desync ||
+                (verifyInterval > 0 && mutationsSinceRebuild.get() >= verifyInterval)
+
+    val size: Int get() = byKey.size
+
+    /** 全量重建次数 */
+    val rescanCount: Long get() = rescans.get()
+
+    fun onPosted(sbn: StatusBarNotification) {
+        val key = sbn.key ?: return
+        synchronized(this) {
+            byKey.remove(key)?.let { ordered.remove(it) }
+            val entry = Entry(key, sbn, seq.incrementAndGet())
+            byKey[key] = entry
+            ordered.add(entry)
+        }
+        mutationsSinceRebuild.incrementAndGet()
+    }
+
+    fun onRemoved(sbn: StatusBarNotification) {
+        val key = sbn.key ?: return
+        val removed = synchronized(this) {
+            byKey.remove(key)?.also { ordered.remove(it) }
+        }
+        if (removed == null && primed) desync = true
+        mutationsSinceRebuild.incrementAndGet()
+    }
+
+    /**
+     * 用一次 getActiveNotifications 的结果重建
+     */
+    fun rebuild(active: Array<StatusBarNotification>?) {
+        synchronized(this) {
+            ordered.clear()
+            byKey.clear()
+            active?.forEach { sbn ->
+                val key = sbn.key ?: return@forEach
+                val entry = Entry(key, sbn, seq.incrementAndGet())
+                byKey.put(key, entry)?.let { ordered.remove(it) }
+                ordered.add(entry)
+            }
+            mutationsSinceRebuild.set(0)
+            desync = false
+            primed = active != null
+        }
+        rescans.incrementAndGet()
+    }
+
+    /**
+     * 标记失效（监听断开等），下次读取时全量重建
+     */
+    fun invalidate() {
+        primed = false
+    }
+
+    /**
+     * 按 postTime 从新到旧的快照
+     */
+    fun sortedByTime(): List<StatusBarNotification> = ordered.map { it.sbn }
+
+    operator fun get(key: String): StatusBarNotification? = byKey[key]?.sbn
+}
@@ -1,36 +1,231 @@
 package com.google.android.accessibility.notification
 
 import android.app.PendingIntent
-import java.util.concurrent.atomic.AtomicReference
+import android.os.SystemClock
+import android.service.notification.StatusBarNotification
 /**
  * Company    :
  * Author     : Lucas     联系WX:780203920
  * Date       : 2025/10/26  3:58
  * Description:This is LatestPendingIntentStore
+ *
+ * 按通知 key 保存多条 PendingIntent，连续来几条通知时前一条不会被覆盖。
+ * - 全局按保存顺序排，超过 [capacity] 淘汰最旧的
+ * - 每个包单独一条按保存顺序的链表，支持 “某个包最新的一条”
+ * - 按 key 查找 / 删除、取最新一条都是 O(1)（HashMap + 侵入式双向链表，一把锁）
+ * - 通知被移除时由 NotificationListenerServiceAbstract 调用 [remove] 清掉，所以 key 统一用 sbn.key
+ * - 保存超过 [ttlMs] 的记录视为过期，读取时不再返回，避免很久以后才解锁时跳转到早已无关的通知
  */
 object LatestPendingIntentStore {
-    // 保存 Pair<key, PendingIntent> 或 null
-    private val ref = AtomicReference<Pair<String, PendingIntent>?>(null)
 
-    /** 覆盖并保存最新的一条 */
+    private class Entry(val key: String, val packageName: String, val pi: PendingIntent, val savedAt: Long) {
+        var prev: Entry? = null
+        var next: Entry? = null
+        var prevInPackage: Entry? = null
+        var nextInPackage: Entry? = null
+    }
+
+    private class PackageList {
+        var head: Entry? = null
+        var tail: Entry? = null
+    }
+
+    @Volatile
+    var capacity = 64
+        set(value) {
+            field = value.coerceAtLeast(1)
+            synchronized(lock) { trim() }
+        }
+
+    /** 记录有效期，<= 0 表示不过期 */
+    @Volatile
+    var ttlMs = 5 * 60 * 1000L
+
+    private val lock = Any()
+    private val byKey = HashMap<String, Entry>()
+    private val byPackage = HashMap<String, PackageList>()
+    // 全局链表：head 最旧，tail 最新
+    private var head: Entry? = null
+    private var tail: Entry? = null
+
+    val size: Int get() = synchronized(lock) { expire(); byKey.size }
+
+    /**
+     * 覆盖并保存最新的一条（包名从 sbn.key 里取）
+     *
+     * [key] 应为 sbn.key；传入 buildNotificationUniqueKey 生成的 key 时去掉后面追加的 pkg|id|tag|postTime|when，
+     * 否则通知移除时的 [remove] 对不上
+     */
     fun saveLatest(key: String, pi: PendingIntent?) {
+        val normalized = normalizeKey(key)
+        save(normalized, packageOfKey(normalized), pi)
+    }
+
+    /** 按 sbn.key 保存 */
+    fun saveLatest(sbn: StatusBarNotification, pi: PendingIntent?) {
+        save(sbn.key, sbn.packageName, pi)
+    }
+
+    /**
+     * 保存一条，同 key 的旧记录被替换并移到最新
+     */
+    fun save(key: String, packageName: String?, pi: PendingIntent?) {
         if (pi == null) return
-        ref.set(key to pi)
+        synchronized(lock) {
+            byKey.remove(key)?.let { unlink(it) }
+            val entry = Entry(key, packageName ?: "", pi, SystemClock.elapsedRealtime())
+            byKey[key] = entry
+            link(entry)
+            trim()
+            expire()
+        }
     }
 
     /** 读取但不删除（仅调试用） */
-    fun peek(): Pair<String, PendingIntent>? = ref.get()
+    fun peek(): Pair<String, PendingIntent>? = synchronized(lock) { expire(); tail?.let { it.key to it.pi } }
 
     /**
-     * 原子地获取并清除最新的一条 — 如果已保存则返回并置空
+     * 原子地取出并删除最新的一条；其余排队的保留，下次调用继续取
      * 调用方在成功 send() 后无需再手动 remove
      */
-    fun getAndClearLatest(): Pair<String, PendingIntent>? {
-        return ref.getAndSet(null)
+    fun getAndClearLatest(): Pair<String, PendingIntent>? = synchronized(lock) {
+        expire()
+        val entry = tail ?: return null
+        byKey.remove(entry.key)
+        unlink(entry)
+        entry.key to entry.pi
+    }
+
+    fun get(key: String): PendingIntent? = synchronized(lock) { expire(); byKey[key]?.pi }
+
+    /**
+     * 某个包最新的一条，不删除
+     */
+    fun latestFor(packageName: String): Pair<String, PendingIntent>? = synchronized(lock) {
+        expire()
+        byPackage[packageName]?.tail?.let { it.key to it.pi }
+    }
+
+    /**
+     * 取出并删除某个包最新的一条
+     */
+    fun takeLatestFor(packageName: String): Pair<String, PendingIntent>? = synchronized(lock) {
+        expire()
+        val entry = byPackage[packageName]?.tail ?: return null
+        byKey.remove(entry.key)
+        unlink(entry)
+        entry.key to entry.pi
+    }
+
+    /**
+     * 删除某条（通知被移除时调用），返回是否存在
+     */
+    fun remove(key: String?): Boolean {
+        key ?: return false
+        synchronized(lock) {
+            val entry = byKey.remove(key) ?: return false
+            unlink(entry)
+            return true
+        }
+    }
+
+    /**
+     * 删除某个包的全部记录
+     */
+    fun removePackage(packageName: String) {
+        synchronized(lock) {
+            var entry = byPackage[packageName]?.head
+            while (entry != null) {
+                val next = entry.nextInPackage
+                byKey.remove(entry.key)
+                unlink(entry)
+                entry = next
+            }
+        }
     }
 
     /** 手动清除（如果需要） */
     fun clear() {
-        ref.set(null)
+        synchronized(lock) {
+            byKey.clear()
+            byPackage.clear()
+            head = null
+            tail = null
+        }
+    }
+
+    private fun trim() {
+        while (byKey.size > capacity) {
+            val oldest = head ?: return
+            byKey.remove(oldest.key)
+            unlink(oldest)
+        }
+    }
+
+    /**
+     * 全局链表按保存时间排序，从最旧的一端删掉过期记录
+     */
+    private fun expire() {
+        val ttl = ttlMs
+        if (ttl <= 0) return
+        val deadline = SystemClock.elapsedRealtime() - ttl
+        while (true) {
+            val oldest = head ?: return
+            if (oldest.savedAt > deadline) return
+            byKey.remove(oldest.key)
+            unlink(oldest)
+        }
+    }
+
+    private fun link(entry: Entry) {
+        entry.prev = tail
+        tail?.next = entry
+        tail = entry
+        if (head == null) head = entry
+
+        val list = byPackage.getOrPut(entry.packageName) { PackageList() }
+        entry.prevInPackage = list.tail
+        list.tail?.nextInPackage = entry
+        list.tail = entry
+        if (list.head == null) list.head = entry
+    }
+
+    private fun unlink(entry: Entry) {
+        if (entry.prev != null) entry.prev!!.next = entry.next else head = entry.next
+        if (entry.next != null) entry.next!!.prev = entry.prev else tail = entry.prev
+        entry.prev = null
+        entry.next = null
+
+        val list = byPackage[entry.packageName] ?: return
+        if (entry.prevInPackage != null) entry.prevInPackage!!.nextInPackage = entry.nextInPackage else list.head = entry.nextInPackage
+        if (entry.nextInPackage != null) entry.nextInPackage!!.prevInPackage = entry.prevInPackage else list.tail = entry.prevInPackage
+        entry.prevInPackage = null
+        entry.nextInPackage = null
+        if (list.head == null) byPackage.remove(entry.packageName)
+    }
+
+    /**
+     * buildNotificationUniqueKey 的格式为 sbn.key|pkg|id|tag|postTime|when，sbn.key 为 userId|pkg|id|tag|uid；
+     * tag 在前后各出现一次，含 t 个 '|' 时总段数为 10 + 2t，去掉后半的 5 + t 段即还原 sbn.key
+     */
+    private fun normalizeKey(key: String): String {
+        val parts = key.split('|')
+        val extra = parts.size - 10
+        if (extra < 0 || extra % 2 != 0) return key
+        if (parts[parts.size - 1].toLongOrNull() == null || parts[parts.size - 2].toLongOrNull() == null) return key
+        val sbnParts = 5 + extra / 2
+        // 后半的 pkg 与 sbn.key 里的 pkg 一致才认为是 unique key
+        if (parts[1] != parts[sbnParts]) return key
+        return parts.subList(0, sbnParts).joinToString("|")
+    }
+
+    /**
+     * sbn.key 的格式为 userId|pkg|id|tag|uid，取第二段作为包名
+     */
+    private fun packageOfKey(key: String): String {
+        val start = key.indexOf('|')
+        if (start < 0) return ""
+        val end = key.indexOf('|', start + 1)
+        return if (end < 0) key.substring(start + 1) else key.substring(start + 1, end)
     }
 }
@@ -0,0 +1,182 @@
+package com.google.android.accessibility.notification
+
+import android.os.Build
+import android.os.Handler
+import android.os.Looper
+import android.service.notification.NotificationListenerService
+import android.service.notification.StatusBarNotification
+import android.util.Log
+import com.google.android.accessibility.ext.utils.DedupWindow
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * 清理动作
+ */
+enum class ClearAction {
+    /** 保留 */
+    KEEP,
+
+    /** 删除；常驻 / 不可清除的通知再顺带 snooze */
+    CANCEL,
+
+    /** 只对常驻 / 不可清除的通知 snooze（普通通知保留） */
+    SNOOZE
+}
+
+/**
+ * 清理规则：返回 [ClearAction.KEEP] 以外的动作即生效，多条规则按添加顺序取第一个
+ */
+fun interface ClearRule {
+    fun decide(sbn: StatusBarNotification, title: String, content: String, pkgName: String): ClearAction
+}
+
+/**
+ * 批量清理通知
+ *
+ * 一次处理（遍历活动通知）中只收集 key，[endPass] 时用一次 cancelNotifications(keys[]) 提交，
+ * 取代每条通知一次 cancelNotification 的 Binder 调用。[windowMs] > 0 时再把这段时间内的多次处理合并成一次提交。
+ * 同一个 key 在 [RESUBMIT_WINDOW_MS] 内不重复提交（系统移除通知有延迟，每次 post 都会再遍历到它）。
+ * 不在处理过程中（没有 [beginPass]）时加入的 key 立即提交。
+ */
+class NotificationClearBatch(
+    private val service: NotificationListenerService,
+    private val windowMs: Long = 0L
+) {
+
+    data class Stats(
+        /** 规则要求删除 / snooze 的次数（含重复） */
+        val requested: Long,
+        /** 提交删除的 key 数 */
+        val cancelled: Long,
+        /** 提交 snooze 的 key 数 */
+        val snoozed: Long,
+        /** 失败的 key 数 */
+        val failed: Long,
+        /** 批量提交次数 */
+        val batches: Long,
+        /** 实际 Binder 调用次数（批量失败回退逐条时会变多） */
+        val binderCalls: Long
+    )
+
+    private val lock = Any()
+    private val cancelKeys = LinkedHashSet<String>()
+    private val snoozeKeys = LinkedHashSet<String>()
+    private var depth = 0
+    private var flushScheduled = false
+    private val submitted = DedupWindow(RESUBMIT_WINDOW_MS)
+    private val handler = Handler(Looper.getMainLooper())
+
+    private val requested = AtomicLong()
+    private val cancelled = AtomicLong()
+    private val snoozed = AtomicLong()
+    private val failed = AtomicLong()
+    private val batches = AtomicLong()
+    private val binderCalls = AtomicLong()
+
+    fun beginPass() {
+        synchronized(lock) { depth++ }
+    }
+
+    /**
+     * 结束一次处理：[windowMs] <= 0 时立即提交，否则延迟到窗口结束在 notification lane 上提交
+     */
+    fun endPass() {
+        val flushNow = synchronized(lock) {
+            if (depth > 0) depth--
+            if (depth > 0) return
+            if (windowMs <= 0) true else {
+                if (!flushScheduled) {
+                    flushScheduled = true
+                    handler.postDelayed({
+                        AppExecutors.notification.execute(FLUSH_KEY) { flush() }
+                    }, windowMs)
+                }
+                false
+            }
+        }
+        if (flushNow) flush()
+    }
+
+    /**
+     * 按动作加入批次
+     */
+    fun submit(sbn: StatusBarNotification, action: ClearAction) {
+        val key = sbn.key ?: return
+        if (action == ClearAction.KEEP) return
+        requested.incrementAndGet()
+        val stubborn = isStubborn(sbn)
+        if (action == ClearAction.SNOOZE && !stubborn) return
+        if (!submitted.firstSeen(sbn.packageName, action.name + key)) return
+        val flushNow = synchronized(lock) {
+            if (action == ClearAction.CANCEL) cancelKeys.add(key)
+            if (stubborn) snoozeKeys.add(key)
+            depth == 0 && !flushScheduled
+        }
+        if (flushNow) flush()
+    }
+
+    /**
+     * 提交已收集的 key，返回提交的数量
+     */
+    fun flush(): Int {
+        val cancels: Array<String>
+        val snoozes: Array<String>
+        synchronized(lock) {
+            flushScheduled = false
+            cancels = cancelKeys.toTypedArray()
+            snoozes = snoozeKeys.toTypedArray()
+            cancelKeys.clear()
+            snoozeKeys.clear()
+        }
+        if (cancels.isEmpty() && snoozes.isEmpty()) return 0
+        batches.incrementAndGet()
+        if (cancels.isNotEmpty()) cancelAll(cancels)
+        // snooze 没有批量接口，逐条（只有常驻通知才会走到这里，数量很少）
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            for (key in snoozes) {
+                binderCalls.incrementAndGet()
+                try {
+                    service.snoozeNotification(key, SNOOZE_MS)
+                    snoozed.incrementAndGet()
+                } catch (e: Exception) {
+                    failed.incrementAndGet()
+                }
+            }
+        }
+        return cancels.size + snoozes.size
+    }
+
+    fun stats(): Stats = Stats(
+        requested.get(), cancelled.get(), snoozed.get(), failed.get(), batches.get(), binderCalls.get()
+    )
+
+    private fun cancelAll(keys: Array<String>) {
+        binderCalls.incrementAndGet()
+        try {
+            service.cancelNotifications(keys)
+            cancelled.addAndGet(keys.size.toLong())
+            return
+        } catch (e: Exception) {
+            Log.e(TAG, "cancelNotifications 失败，逐条重试: ${e.message}")
+        }
+        for (key in keys) {
+            binderCalls.incrementAndGet()
+            try {
+                service.cancelNotification(key)
+                cancelled.incrementAndGet()
+            } catch (e: Exception) {
+                failed.incrementAndGet()
+            }
+        }
+    }
+
+    private fun isStubborn(sbn: StatusBarNotification): Boolean =
+        Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && (sbn.isOngoing || !sbn.isClearable)
+
+    companion object {
+        private const val TAG = "NotificationClearBatch"
+        private const val FLUSH_KEY = "notification_clear_flush"
+        private const val RESUBMIT_WINDOW_MS = 2_000L
+        private const val SNOOZE_MS = 12 * 60 * 60 * 1000L
+    }
+}
@@ -0,0 +1,68 @@
+package com.google.android.accessibility.notification
+
+import android.os.Handler
+import android.os.Looper
+import com.google.android.accessibility.ext.utils.LibCtxProvider.Companion.appContext
+import java.io.File
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * 通知历史（最近 7 天），取代在 App 里用 SharedPreferences 逐条保存
+ *
+ * 由 NotificationListenerServiceAbstract 在 notification lane 上调用 [record]（需子类打开 enableNotificationHistory），
+ * 攒批写入分段文件；不满一批的在 [FLUSH_DELAY_MS] 后补写。存储细节见 [NotificationHistoryStore]。
+ * 查询会读文件，不要在主线程调用。
+ */
+object NotificationHistory {
+
+    private const val DIR_NAME = "notification_history"
+    private const val FLUSH_DELAY_MS = 2_000L
+    private const val FLUSH_KEY = "notification_history_flush"
+
+    private val handler = Handler(Looper.getMainLooper())
+    private val flushScheduled = AtomicBoolean(false)
+
+    val store: NotificationHistoryStore by lazy {
+        NotificationHistoryStore(File(appContext.filesDir, DIR_NAME))
+    }
+
+    @JvmStatic
+    fun record(info: NotificationInfo) {
+        if (store.append(info.toHistoryRecord())) return
+        if (flushScheduled.compareAndSet(false, true)) {
+            handler.postDelayed({
+                AppExecutors.notification.execute(FLUSH_KEY) {
+                    flushScheduled.set(false)
+                    store.flush()
+                }
+            }, FLUSH_DELAY_MS)
+        }
+    }
+
+    @JvmStatic
+    fun flush(): Int = store.flush()
+
+    /** 某个包最近的 [limit] 条 */
+    @JvmStatic
+    fun latest(packageName: String, limit: Int): List<HistoryRecord> = store.latest(packageName, limit)
+
+    /** 时间范围内的记录 */
+    @JvmStatic
+    @JvmOverloads
+    fun range(fromTime: Long, toTime: Long, packageName: String? = null, limit: Int = Int.MAX_VALUE): List<HistoryRecord> =
+        store.range(fromTime, toTime, packageName, limit)
+
+    /** 标题 / 正文全文搜索 */
+    @JvmStatic
+    @JvmOverloads
+    fun search(
+        text: String,
+        fromTime: Long = Long.MIN_VALUE,
+        toTime: Long = Long.MAX_VALUE,
+        packageName: String? = null,
+        limit: Int = 100
+    ): List<HistoryRecord> = store.search(text, fromTime, toTime, packageName, limit)
+
+    @JvmStatic
+    fun clear() = store.clear()
+}
@@ -0,0 +1,470 @@
+package com.google.android.accessibility.notification
+
+import java.io.ByteArrayOutputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileOutputStream
+import java.io.OutputStream
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.util.TreeMap
+import java.util.zip.CRC32
+
+/**
+ * 通知历史的一条记录（只保留回放 / 统计需要的字段）
+ */
+data class HistoryRecord(
+    val key: String,
+    val pkgName: String,
+    val appName: String,
+    val postTime: Long,
+    val title: String,
+    val content: String,
+    val channelId: String?,
+    val category: String?
+)
+
+fun NotificationInfo.toHistoryRecord(): HistoryRecord =
+    HistoryRecord(key, pkgName, appName, postTime, title, content, channelId, category)
+
+/**
+ * 只追加的分段文件通知历史
+ *
+ * - 写：[append] 先放进内存批次，攒够 [batchSize] 条或调用 [flush] 时一次写入当前分段文件；
+ *   分段超过 [maxSegmentBytes] 或打开超过 [segmentSpanMs] 后换新分段，超过 [retentionMs] 的整段删除
+ * - 读：分段文件 mmap 只读映射，按 包名 和 时间桶（[bucketMs]）建内存索引，查询只解码命中的记录；
+ *   全文搜索直接在映射的 UTF-8 字节上比较，命中才生成对象
+ *
+ * 记录格式：int 长度 | int CRC32 | long postTime | key | pkgName | appName | title | content | channelId | category，
+ * 字符串为 unsigned short 字节数 + UTF-8。启动时校验 CRC，遇到写了一半的记录就停止读取该分段。
+ *
+ * 纯 JVM 实现，所有操作在一把锁内完成；Android 侧的调度见 [NotificationHistory]。
+ */
+class NotificationHistoryStore(
+    val dir: File,
+    private val retentionMs: Long = 7 * DAY_MS,
+    private val maxSegmentBytes: Long = 4L * 1024 * 1024,
+    private val segmentSpanMs: Long = DAY_MS,
+    private val bucketMs: Long = 60 * 60 * 1000L,
+    private val batchSize: Int = 32,
+    private val clock: () -> Long = { System.currentTimeMillis() }
+) {
+
+    data class Stats(
+        val segments: Int,
+        val bytes: Long,
+        val records: Int,
+        val pending: Int
+    )
+
+    private class Segment(val seq: Int, val file: File) {
+        var size = 0L
+        var lastTime = Long.MIN_VALUE
+        var records = 0
+        private var mapped: ByteBuffer? = null
+        private var mappedSize = 0L
+
+        /** 只读映射，文件变长后重新映射 */
+        fun buffer(): ByteBuffer {
+            val current = mapped
+            if (current != null && mappedSize >= size) return current
+            val buf = RandomAccessFile(file, "r").use { it.channel.map(FileChannel.MapMode.READ_ONLY, 0, size) }
+            mapped = buf
+            mappedSize = size
+            return buf
+        }
+    }
+
+    /** 追加顺序的 long 列表，存 (分段序号 << 32 | 偏移) */
+    private class RefList {
+        var values = LongArray(16)
+        var size = 0
+
+        fun add(v: Long) {
+            if (size == values.size) values = values.copyOf(size * 2)
+            values[size++] = v
+        }
+
+        fun removeSegments(dead: Set<Int>) {
+            var w = 0
+            for (r in 0 until size) {
+                if ((values[r] ushr 32).toInt() !in dead) values[w++] = values[r]
+            }
+            size = w
+        }
+    }
+
+    private val lock = Any()
+    private val segments = TreeMap<Int, Segment>()
+    private val byPackage = HashMap<String, RefList>()
+    private val byBucket = TreeMap<Long, RefList>()
+    private val pending = ArrayList<HistoryRecord>()
+    private var current: Segment? = null
+    private var currentOpenedAt = 0L
+    private var opened = false
+
+    /** 以追加方式打开分段文件；单元测试里换成中途失败的流，模拟磁盘写满 */
+    internal var openAppend: (File) -> OutputStream = { FileOutputStream(it, true) }
+
+    /**
+     * 加入写批次，攒够 [batchSize] 条时直接写盘；返回是否已写盘
+     */
+    fun append(record: HistoryRecord): Boolean {
+        synchronized(lock) {
+            pending.add(record)
+            if (pending.size < batchSize) return false
+            flushLocked()
+            return true
+        }
+    }
+
+    /**
+     * 把批次写入分段文件，返回写入条数
+     */
+    fun flush(): Int = synchronized(lock) { flushLocked() }
+
+    /**
+     * 某个包最近写入的 [limit] 条，按 postTime 从新到旧
+     */
+    fun latest(packageName: String, limit: Int): List<HistoryRecord> {
+        if (limit <= 0) return emptyList()
+        synchronized(lock) {
+            ensureOpen()
+            val result = ArrayList<HistoryRecord>()
+            for (i in pending.indices.reversed()) {
+                if (result.size >= limit) break
+                if (pending[i].pkgName == packageName) result.add(pending[i])
+            }
+            val refs = byPackage[packageName]
+            if (refs != null) {
+                var i = refs.size - 1
+                while (i >= 0 && result.size < limit) {
+                    readRef(refs.values[i])?.let { result.add(it) }
+                    i--
+                }
+            }
+            result.sortByDescending { it.postTime }
+            return result
+        }
+    }
+
+    /**
+     * postTime 在 [fromTime, toTime] 内的记录（可限定包名），取最新的 [limit] 条，按 postTime 从新到旧
+     */
+    @JvmOverloads
+    fun range(
+        fromTime: Long,
+        toTime: Long,
+        packageName: String? = null,
+        limit: Int = Int.MAX_VALUE
+    ): List<HistoryRecord> = query(fromTime, toTime, packageName, limit, null)
+
+    /**
+     * 标题 / 正文包含 [text] 的记录（ASCII 忽略大小写），取最新的 [limit] 条，按 postTime 从新到旧
+     */
+    @JvmOverloads
+    fun search(
+        text: String,
+        fromTime: Long = Long.MIN_VALUE,
+        toTime: Long = Long.MAX_VALUE,
+        packageName: String? = null,
+        limit: Int = 100
+    ): List<HistoryRecord> {
+        if (text.isEmpty()) return range(fromTime, toTime, packageName, limit)
+        return query(fromTime, toTime, packageName, limit, text)
+    }
+
+    fun stats(): Stats = synchronized(lock) {
+        ensureOpen()
+        Stats(segments.size, segments.values.sumOf { it.size }, segments.values.sumOf { it.records }, pending.size)
+    }
+
+    /**
+     * 删除全部历史（包括未写盘的批次）
+     */
+    fun clear() {
+        synchronized(lock) {
+            pending.clear()
+            segments.values.forEach { it.file.delete() }
+            segments.clear()
+            byPackage.clear()
+            byBucket.clear()
+            current = null
+            opened = true
+        }
+    }
+
+    private fun query(
+        fromTime: Long,
+        toTime: Long,
+        packageName: String?,
+        limit: Int,
+        text: String?
+    ): List<HistoryRecord> {
+        if (limit <= 0 || fromTime > toTime) return emptyList()
+        val needle = text?.let { foldAscii(it.toByteArray(Charsets.UTF_8)) }
+        synchronized(lock) {
+            ensureOpen()
+            val result = ArrayList<HistoryRecord>()
+            for (record in pending) {
+                if (record.postTime !in fromTime..toTime) continue
+                if (packageName != null && record.pkgName != packageName) continue
+                if (needle != null && !textMatches(record, needle)) continue
+                result.add(record)
+            }
+            // 时间桶互不重叠：从最新的桶往旧的扫，桶里已经凑够 limit 条后更旧的桶不可能进入结果
+            var fromBuckets = 0
+            val buckets = byBucket.subMap(bucketOf(fromTime), true, bucketOf(toTime), true).descendingMap()
+            for (refs in buckets.values) {
+                if (fromBuckets >= limit) break
+                for (i in refs.size - 1 downTo 0) {
+                    val ref = refs.values[i]
+                    val segment = segments[(ref ushr 32).toInt()] ?: continue
+                    val buf = segment.buffer()
+                    val offset = ref.toInt()
+                    val postTime = buf.getLong(offset + 8)
+                    if (postTime !in fromTime..toTime) continue
+                    if (packageName != null && readPackage(buf, offset) != packageName) continue
+                    if (needle != null && !textMatches(buf, offset, needle)) continue
+                    result.add(readRecord(buf, offset))
+                    fromBuckets++
+                }
+            }
+            result.sortByDescending { it.postTime }
+            return if (result.size > limit) ArrayList(result.subList(0, limit)) else result
+        }
+    }
+
+    private fun flushLocked(): Int {
+        if (pending.isEmpty()) return 0
+        ensureOpen()
+        val now = clock()
+        var segment = current
+        if (segment == null || segment.size >= maxSegmentBytes || now - currentOpenedAt >= segmentSpanMs) {
+            segment = roll(now)
+        }
+        val bytes = ByteArrayOutputStream(pending.size * 256)
+        val offsets = IntArray(pending.size)
+        for ((i, record) in pending.withIndex()) {
+            offsets[i] = (segment.size + bytes.size()).toInt()
+            encode(record, bytes)
+        }
+        try {
+            openAppend(segment.file).use { it.write(bytes.toByteArray()) }
+        } catch (e: Exception) {
+            // 写失败（磁盘满等）丢弃这一批，不影响通知处理；截掉可能写了一半的记录，截不掉就换新分段，
+            // 否则后面追加的记录偏移与 segment.size / 索引对不上
+            pending.clear()
+            if (!truncate(segment)) current = null
+            return 0
+        }
+        segment.size += bytes.size()
+        for ((i, record) in pending.withIndex()) {
+            index(segment, offsets[i], record.pkgName, record.postTime)
+        }
+        val written = pending.size
+        pending.clear()
+        return written
+    }
+
+    private fun truncate(segment: Segment): Boolean = try {
+        RandomAccessFile(segment.file, "rw").use { it.setLength(segment.size) }
+        true
+    } catch (e: Exception) {
+        false
+    }
+
+    private fun ensureOpen() {
+        if (opened) return
+        opened = true
+        dir.mkdirs()
+        val files = dir.listFiles { f -> f.isFile && f.name.endsWith(SEGMENT_SUFFIX) } ?: emptyArray()
+        // 按分段序号顺序建索引，保证索引里是写入顺序
+        val ordered = files.mapNotNull { f -> f.name.removeSuffix(SEGMENT_SUFFIX).toIntOrNull()?.let { it to f } }
+            .sortedBy { it.first }
+        for ((seq, file) in ordered) {
+            val segment = Segment(seq, file)
+            segment.size = file.length()
+            segments[seq] = segment
+            scan(segment)
+        }
+        purge(clock())
+    }
+
+    /**
+     * 启动时扫描分段重建索引；写了一半或校验失败的尾部不计入
+     */
+    private fun scan(segment: Segment) {
+        if (segment.size == 0L) return
+        val buf = segment.buffer()
+        val limit = segment.size.toInt()
+        var pos = 0
+        val crc = CRC32()
+        while (pos + 8 <= limit) {
+            val length = buf.getInt(pos)
+            if (length < 12 || pos + 4 + length > limit) break
+            val body = ByteArray(length - 4)
+            buf.duplicate().apply { position(pos + 8) }.get(body)
+            crc.reset()
+            crc.update(body)
+            if (crc.value.toInt() != buf.getInt(pos + 4)) break
+            index(segment, pos, readPackage(buf, pos), buf.getLong(pos + 8))
+            pos += 4 + length
+        }
+        segment.size = pos.toLong()
+    }
+
+    private fun roll(now: Long): Segment {
+        val seq = if (segments.isEmpty()) 1 else segments.lastKey() + 1
+        val segment = Segment(seq, File(dir, seq.toString().padStart(8, '0') + SEGMENT_SUFFIX))
+        segments[seq] = segment
+        current = segment
+        currentOpenedAt = now
+        purge(now)
+        return segment
+    }
+
+    /**
+     * 删除整段都超过保留期的分段，并从索引里去掉它们的记录
+     */
+    private fun purge(now: Long) {
+        val dead = HashSet<Int>()
+        for (segment in segments.values) {
+            if (segment === current) continue
+            if (segment.records == 0 || now - segment.lastTime > retentionMs) dead.add(segment.seq)
+        }
+        if (dead.isEmpty()) return
+        for (seq in dead) segments.remove(seq)?.file?.delete()
+        byPackage.values.forEach { it.removeSegments(dead) }
+        byPackage.values.removeAll { it.size == 0 }
+        byBucket.values.forEach { it.removeSegments(dead) }
+        byBucket.values.removeAll { it.size == 0 }
+    }
+
+    private fun index(segment: Segment, offset: Int, pkgName: String, postTime: Long) {
+        val ref = (segment.seq.toLong() shl 32) or (offset.toLong() and 0xFFFFFFFFL)
+        byPackage.getOrPut(pkgName) { RefList() }.add(ref)
+        byBucket.getOrPut(bucketOf(postTime)) { RefList() }.add(ref)
+        segment.records++
+        if (postTime > segment.lastTime) segment.lastTime = postTime
+    }
+
+    private fun bucketOf(time: Long): Long = Math.floorDiv(time, bucketMs)
+
+    private fun readRef(ref: Long): HistoryRecord? {
+        val segment = segments[(ref ushr 32).toInt()] ?: return null
+        return readRecord(segment.buffer(), ref.toInt())
+    }
+
+    private fun encode(record: HistoryRecord, out: ByteArrayOutputStream) {
+        val body = ByteArrayOutputStream(256)
+        DataOutputStream(body).apply {
+            writeLong(record.postTime)
+            writeString(record.key, MAX_FIELD_CHARS)
+            writeString(record.pkgName, MAX_FIELD_CHARS)
+            writeString(record.appName, MAX_FIELD_CHARS)
+            writeString(record.title, MAX_FIELD_CHARS)
+            writeString(record.content, MAX_CONTENT_CHARS)
+            writeString(record.channelId ?: "", MAX_FIELD_CHARS)
+            writeString(record.category ?: "", MAX_FIELD_CHARS)
+            flush()
+        }
+        val bytes = body.toByteArray()
+        val crc = CRC32().apply { update(bytes) }
+        DataOutputStream(out).apply {
+            writeInt(bytes.size + 4)
+            writeInt(crc.value.toInt())
+            write(bytes)
+            flush()
+        }
+    }
+
+    private fun DataOutputStream.writeString(value: String, maxChars: Int) {
+        val bytes = clip(value, maxChars).toByteArray(Charsets.UTF_8)
+        writeShort(bytes.size)
+        write(bytes)
+    }
+
+    private fun readRecord(buf: ByteBuffer, offset: Int): HistoryRecord {
+        var p = offset + 16
+        val strings = arrayOfNulls<String>(7)
+        for (i in 0 until 7) {
+            val len = buf.getShort(p).toInt() and 0xFFFF
+            val bytes = ByteArray(len)
+            buf.duplicate().apply { position(p + 2) }.get(bytes)
+            strings[i] = String(bytes, Charsets.UTF_8)
+            p += 2 + len
+        }
+        return HistoryRecord(
+            key = strings[0]!!,
+            pkgName = strings[1]!!,
+            appName = strings[2]!!,
+            postTime = buf.getLong(offset + 8),
+            title = strings[3]!!,
+            content = strings[4]!!,
+            channelId = strings[5]!!.ifEmpty { null },
+            category = strings[6]!!.ifEmpty { null }
+        )
+    }
+
+    private fun readPackage(buf: ByteBuffer, offset: Int): String {
+        val keyPos = offset + 16
+        val pkgPos = keyPos + 2 + (buf.getShort(keyPos).toInt() and 0xFFFF)
+        val len = buf.getShort(pkgPos).toInt() and 0xFFFF
+        val bytes = ByteArray(len)
+        buf.duplicate().apply { position(pkgPos + 2) }.get(bytes)
+        return String(bytes, Charsets.UTF_8)
+    }
+
+    /**
+     * 未写盘的记录按写盘后的内容比较（同样截断、同样只折叠 ASCII），保证写盘前后搜索结果一致
+     */
+    private fun textMatches(record: HistoryRecord, needle: ByteArray): Boolean {
+        val title = clip(record.title, MAX_FIELD_CHARS).toByteArray(Charsets.UTF_8)
+        if (contains(ByteBuffer.wrap(title), 0, title.size, needle)) return true
+        val content = clip(record.content, MAX_CONTENT_CHARS).toByteArray(Charsets.UTF_8)
+        return contains(ByteBuffer.wrap(content), 0, content.size, needle)
+    }
+
+    /**
+     * 在记录的 title / content 字节里查找 [needle]（已做 ASCII 小写折叠）
+     */
+    private fun textMatches(buf: ByteBuffer, offset: Int, needle: ByteArray): Boolean {
+        var p = offset + 16
+        // 跳过 key / pkgName / appName
+        repeat(3) { p += 2 + (buf.getShort(p).toInt() and 0xFFFF) }
+        repeat(2) {
+            val len = buf.getShort(p).toInt() and 0xFFFF
+            if (contains(buf, p + 2, len, needle)) return true
+            p += 2 + len
+        }
+        return false
+    }
+
+    private fun contains(buf: ByteBuffer, start: Int, len: Int, needle: ByteArray): Boolean {
+        val last = start + len - needle.size
+        var i = start
+        while (i <= last) {
+            var k = 0
+            while (k < needle.size && foldAscii(buf.get(i + k)) == needle[k]) k++
+            if (k == needle.size) return true
+            i++
+        }
+        return false
+    }
+
+    companion object {
+        const val DAY_MS = 24 * 60 * 60 * 1000L
+        private const val SEGMENT_SUFFIX = ".seg"
+        private const val MAX_FIELD_CHARS = 512
+        private const val MAX_CONTENT_CHARS = 4096
+
+        private fun clip(value: String, maxChars: Int): String =
+            if (value.length > maxChars) value.substring(0, maxChars) else value
+
+        private fun foldAscii(b: Byte): Byte = if (b in 'A'.code.toByte()..'Z'.code.toByte()) (b + 32).toByte() else b
+
+        private fun foldAscii(bytes: ByteArray): ByteArray = ByteArray(bytes.size) { foldAscii(bytes[it]) }
+    }
+}
@@ -0,0 +1,171 @@
+package com.google.android.accessibility.notification
+
+import android.app.Notification
+import android.app.PendingIntent
+import android.os.Build
+import android.os.Bundle
+import android.service.notification.StatusBarNotification
+import android.text.TextUtils
+import android.util.LruCache
+import androidx.core.app.NotificationCompat
+import com.android.accessibility.ext.R
+import com.google.android.accessibility.ext.utils.LibCtxProvider.Companion.appContext
+import com.google.android.accessibility.ext.utils.NotificationUtilXpq.getAllSortedMessagingStyleByTime
+import com.google.android.accessibility.notification.NotificationListenerServiceAbstract.Companion.buildNotificationUniqueKey
+import com.google.android.accessibility.notification.NotificationListenerServiceAbstract.Companion.getAppName
+import com.google.android.accessibility.notification.NotificationListenerServiceAbstract.Companion.isTitleAndContentEmpty
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * 通知内容解析结果（与 RankingMap 无关的部分）
+ */
+class NotificationContent(
+    val appName: String,
+    val title: String,
+    val content: String,
+    val bigText: String,
+    val pi: PendingIntent?,
+    val category: String?,
+    val channelId: String?,
+    val messageStyleList: List<MessageStyleInfo>
+)
+
+/**
+ * 通知解析结果的 LRU 缓存
+ *
+ * 同一条通知会在一个参数 / 两个参数的 onNotificationPosted、活动通知循环、onNotificationRemoved
+ * 以及无障碍的 TYPE_NOTIFICATION_STATE_CHANGED 里被反复解析（MessagingStyle 提取、消息排序、应用名），
+ * 这里按 key 缓存解析结果，通知栏服务和无障碍服务共用一份。
+ */
+object NotificationInfoCache {
+
+    private const val MAX_ENTRIES = 256
+
+    // Notification.MessagingStyle.Message 打包进 EXTRA_MESSAGES 时的时间字段
+    private const val MESSAGE_KEY_TIMESTAMP = "time"
+
+    private val cache = LruCache<String, NotificationContent>(MAX_ENTRIES)
+    private val hits = AtomicLong()
+    private val misses = AtomicLong()
+
+    val hitCount: Long get() = hits.get()
+    val missCount: Long get() = misses.get()
+
+    /**
+     * 通知栏服务使用：key 为 buildNotificationUniqueKey（含 postTime / when，通知更新后自然失效）
+     */
+    @JvmStatic
+    fun get(sbn: StatusBarNotification, n: Notification): NotificationContent =
+        get(buildNotificationUniqueKey(sbn), sbn.packageName, n)
+
+    /**
+     * 无障碍服务使用：事件里没有 sbn，用 包名 + when + 标题 / 正文 / 大文本 + contentIntent + 消息数与最新一条消息时间 作为 key
+     *
+     * 聊天类应用常在 when、标题、正文都不变的情况下重发通知，只换 contentIntent、大文本或 MessagingStyle 消息，
+     * 这些都要进 key，否则会拿到旧的 pi / messageStyleList；消息列表有上限时条数可能不变，所以再加上最新一条的时间
+     */
+    @JvmStatic
+    fun get(pkgName: String, n: Notification): NotificationContent {
+        val ex = n.extras
+        @Suppress("DEPRECATION")
+        val messages = try { ex?.getParcelableArray(Notification.EXTRA_MESSAGES) } catch (_: Throwable) { null }
+        val key = buildString {
+            append("a11y|").append(pkgName)
+            append("|").append(n.`when`)
+            append("|").append(ex?.getCharSequence(Notification.EXTRA_TITLE)?.toString().hashCode())
+            append("|").append(ex?.getCharSequence(Notification.EXTRA_TEXT)?.toString().hashCode())
+            append("|").append(ex?.getCharSequence(Notification.EXTRA_BIG_TEXT)?.toString().hashCode())
+            append("|").append(n.contentIntent?.hashCode() ?: 0)
+            append("|").append(messages?.size ?: 0)
+            append("|").append((messages?.lastOrNull() as? Bundle)?.getLong(MESSAGE_KEY_TIMESTAMP) ?: 0L)
+        }
+        return get(key, pkgName, n)
+    }
+
+    private fun get(key: String, pkgName: String, n: Notification): NotificationContent {
+        cache.get(key)?.let {
+            hits.incrementAndGet()
+            return it
+        }
+        misses.incrementAndGet()
+        return parse(pkgName, n).also { cache.put(key, it) }
+    }
+
+    /**
+     * 通知移除后丢弃对应缓存
+     */
+    @JvmStatic
+    fun invalidate(sbn: StatusBarNotification) {
+        cache.remove(buildNotificationUniqueKey(sbn))
+    }
+
+    @JvmStatic
+    fun clear() {
+        cache.evictAll()
+    }
+
+    /**
+     * 从 Notification 解析标题、正文、MessagingStyle 消息列表等
+     */
+    @JvmStatic
+    fun parse(pkgName: String, n: Notification): NotificationContent {
+        val ex = n.extras
+        fun getStringOrFallback(key: String, fallback: String): String {
+            return ex?.getCharSequence(key)?.toString()?.takeIf { it.isNotBlank() }
+                ?: ex?.getString(key, fallback)
+                ?: fallback
+        }
+        val titleNull = appContext.getString(R.string.notificationtitlenull)
+        val contentNull = appContext.getString(R.string.notificationcontentnull)
+        // 获取标题
+        var title = getStringOrFallback(Notification.EXTRA_TITLE, titleNull)
+        // 获取大文本
+        val bigText = getStringOrFallback(Notification.EXTRA_BIG_TEXT, contentNull)
+        // 获取文本，如果 EXTRA_TEXT 为空，则尝试获取 EXTRA_BIG_TEXT
+        var text = getStringOrFallback(Notification.EXTRA_TEXT, bigText)
+
+        // 尝试判断 解析 MessagingStyle（如果是聊天类型的通知）
+        var messagingStyle: NotificationCompat.MessagingStyle? = null
+        try {
+            messagingStyle = NotificationCompat.MessagingStyle.extractMessagingStyleFromNotification(n)
+        } catch (_: Exception) { }
+        // 获取对话标题（例如联系人名称或群聊名称）
+        val conversationTitle = messagingStyle?.conversationTitle?.toString()
+            ?.takeIf { it.isNotBlank() }
+            ?: titleNull
+
+        // 获取所有按时间排序messagingStyle的消息列表 （降序）
+        val sortedmessageList = getAllSortedMessagingStyleByTime(messagingStyle?.messages ?: emptyList())
+        val msgmaplist = sortedmessageList.map {
+            MessageStyleInfo(
+                timestamp = it.timestamp,
+                title = conversationTitle,
+                sender = it.person?.name?.toString()?.takeIf { it.isNotBlank() } ?: "Unknown",
+                text = it.text?.toString()?.takeIf { it.isNotBlank() } ?: contentNull
+            )
+        }
+
+        if (isTitleAndContentEmpty(title, text)) {
+            //获取最新一条消息
+            msgmaplist.firstOrNull()?.let {
+                title = it.title
+                text = if (TextUtils.equals(contentNull, it.text)) {
+                    it.text
+                } else {
+                    it.sender + ":" + it.text
+                }
+            }
+        }
+
+        return NotificationContent(
+            appName = getAppName(pkgName),
+            title = title,
+            content = text,
+            bigText = bigText,
+            pi = n.contentIntent,
+            category = n.category,
+            channelId = if (Build.VERSION.SDK_INT >= 26) n.channelId else null,
+            messageStyleList = msgmaplist
+        )
+    }
+}
@@ -11,6 +11,7 @@ import android.content.pm.PackageManager
 import android.os.Build
 import android.os.Handler
 import android.os.Looper
+import android.os.Process
 import android.service.notification.NotificationListenerService
 import android.service.notification.StatusBarNotification
 import android.telecom.TelecomManager
@@ -22,14 +23,15 @@ import androidx.core.app.NotificationCompat
 import androidx.lifecycle.MutableLiveData
 import com.android.accessibility.ext.R
 import com.google.android.accessibility.ext.utils.AliveUtils
+import com.google.android.accessibility.ext.utils.AppMetaCache
+import com.google.android.accessibility.ext.utils.DedupWindow
+import com.google.android.accessibility.ext.utils.LaneExecutor
 
 import com.google.android.accessibility.ext.utils.LibCtxProvider.Companion.appContext
 import com.google.android.accessibility.ext.utils.MMKVConst
 import com.google.android.accessibility.ext.utils.MMKVUtil
 import com.google.android.accessibility.ext.utils.NetworkHelperFullSmart
 
-import com.google.android.accessibility.ext.utils.NotificationUtilXpq.getAllSortedByTime
-import com.google.android.accessibility.ext.utils.NotificationUtilXpq.getAllSortedMessagingStyleByTime
 
 import com.google.android.accessibility.ext.utils.NotificationUtilXpq.getNotificationData
 import com.google.android.accessibility.ext.utils.NotificationUtilXpq.safeGetActiveNotifications
@@ -88,6 +90,29 @@ object AppExecutors {
     val executors4: ExecutorService =
         Executors.newSingleThreadExecutor(daemonThreadFactory("notif-exec-4"))
 
+    // ===== 按用途划分的有界 lane（库内部已全部迁移到这里，上面 4 个执行器保留给外部调用方） =====
+
+    // 验证码解析与上报：优先级最高，不能被内容变化事件拖慢；只放 OtpCenter 相关工作，不丢任务
+    val otp = LaneExecutor("otp", 64, LaneExecutor.OverflowPolicy.GROW, Process.THREAD_PRIORITY_FOREGROUND)
+
+    // 通知到达 / 移除、活动通知扫描，以及回调给使用方的通知处理；不丢任务
+    val notification = LaneExecutor("notification", 128, LaneExecutor.OverflowPolicy.GROW)
+
+    // TYPE_WINDOW_STATE_CHANGED / TYPE_WINDOWS_CHANGED
+    val windowState = LaneExecutor("window-state", 32, LaneExecutor.OverflowPolicy.DROP_OLDEST)
+
+    // TYPE_WINDOW_CONTENT_CHANGED / TYPE_VIEW_SCROLLED，同一窗口排队中的任务会被合并（被合并 / 丢弃的任务走 onDrop 释放）
+    val content = LaneExecutor("content", 64, LaneExecutor.OverflowPolicy.DROP_OLDEST, Process.THREAD_PRIORITY_BACKGROUND)
+
+    // asyncHandleAccessibilityEvent 原始事件回调
+    val raw = LaneExecutor("raw", 256, LaneExecutor.OverflowPolicy.DROP_OLDEST, Process.THREAD_PRIORITY_BACKGROUND)
+
+    /**
+     * 所有 lane 的队列深度与延迟统计
+     */
+    fun laneStats(): List<LaneExecutor.Stats> =
+        listOf(otp, notification, windowState, content, raw).map { it.stats() }
+
 }
 
 abstract class NotificationListenerServiceAbstract : NotificationListenerService(),
@@ -96,7 +121,7 @@ abstract class NotificationListenerServiceAbstract : NotificationListenerService
 
 
     // 由 AppExecutors 提供（全局单例），不要在 Service.onDestroy() 调用 shutdown。
-    // 使用时直接调用 AppExecutors.executors.execute { ... } 或 AppExecutors.executors2.execute { ... }
+    // 通知相关任务走 AppExecutors.notification，验证码走 AppExecutors.otp
 
     abstract fun targetPackageName(): String
     @WorkerThread
@@ -111,33 +136,32 @@ abstract class NotificationListenerServiceAbstract : NotificationListenerService
     open var title:String=""
     @Volatile
     open var content:String=""
-    @Volatile
-    private var lastPostTime: Long = 0L
 
-    private val postWhenLock = Any()
-    @Volatile
-    private var lastPostWhenKey: String? = null
-    @Volatile
-    private var lastHandleTime: Long = 0L
-
-
-
-    private val handleLock = Any()
-    @Volatile private var lastHandleTime2: Long = 0L
-    @Volatile private var lastHandledUniqueKey: String = ""
+    // shouldHandle / should2Handle 的去重窗口（按包名分片，读路径无锁）
+    private val postDedup = DedupWindow(EXPIRY_MS)
+    private val handleDedup = DedupWindow(HANDLE_DEDUP_WINDOW_MS)
     // 是否启用 shouldHandle 过滤器 子类可覆盖
     open val enableShouldHandleFilter: Boolean = true
+    // 是否把通知写入 NotificationHistory（落盘），默认关闭 子类可覆盖
+    open val enableNotificationHistory: Boolean = false
+    // 清理通知的额外规则，内置规则不处理时按顺序判断
+    val clearRules = CopyOnWriteArrayList<ClearRule>()
+    // 批量清理：一次遍历中只收集 key，遍历结束一次 cancelNotifications 提交
+    val clearBatch by lazy { NotificationClearBatch(this) }
 
     companion object {
         // 过期保护：超过这个时间即便 key 相同也会重新处理（单位毫秒）
         private const val EXPIRY_MS: Long = 1_000L // 1 秒，可改为 60_000L (1 分钟) 等
 
-        private const val MIN_HANDLE_INTERVAL = 500L   // 500毫秒间隔
+        private const val HANDLE_DEDUP_WINDOW_MS = 60_000L   // should2Handle：同一通知 1 分钟内只处理一次
         var instance: NotificationListenerServiceAbstract? = null
             private set
         //val listeners: MutableList<NotificationInterface> = Collections.synchronizedList(arrayListOf<NotificationInterface>())
         val listeners = CopyOnWriteArrayList<NotificationInterface>()
 
+        // 活动通知索引：由 posted / removed 回调增量维护，只在连接或失步时全量扫描
+        val activeIndex = ActiveNotificationIndex()
+
         fun isTitleAndContentEmpty(title: String, content: String): Boolean {
             val bool = TextUtils.equals(title, appContext.getString(R.string.notificationtitlenull)) &&
                     TextUtils.equals(content, appContext.getString(R.string.notificationcontentnull))
@@ -146,13 +170,8 @@ abstract class NotificationListenerServiceAbstract : NotificationListenerService
         }
         //根据包名来获取应用名称
         fun getAppName(pkgName: String): String {
-            val packageManager = appContext.packageManager
-            return try {
-                val applicationInfo = packageManager.getApplicationInfo(pkgName, 0)
-                packageManager.getApplicationLabel(applicationInfo).toString()
-            } catch (e: Exception) {
-                "UnKnown"
-            }
+            // 走应用信息缓存，避免每条通知都 getApplicationInfo + getApplicationLabel
+            return AppMetaCache.getLabel(pkgName) ?: "UnKnown"
         }
         fun isPhoneApp(context: Context = appContext,pkg: String): Boolean {
             val telecomManager = context.getSystemService(Context.TELECOM_SERVICE) as TelecomManager
@@ -196,17 +215,16 @@ abstract class NotificationListenerServiceAbstract : NotificationListenerService
         sbn ?: return
         runCatching { listeners.forEach { it.onNotificationRemoved(sbn) } }
         super.onNotificationRemoved(sbn)
+        activeIndex.onRemoved(sbn)
+        // 通知没了，它的 PendingIntent 也不再发送
+        LatestPendingIntentStore.remove(sbn.key)
 
         // 注意：将需要的数据 (如 NotificationInfo) 在提交前拷贝出来，避免后台线程访问到已销毁的 Service 资源。
-        AppExecutors.executors.execute {
+        AppExecutors.notification.execute {
             val notification = sbn.notification ?: return@execute
             val n_Info = buildNotificationInfo(sbn,notification, null)
             asyncHandleNotificationRemoved(sbn,notification,n_Info.title,n_Info.content,n_Info)
-            // 若你希望当通知被移除时也清理仓库（避免失效的 pendingIntent 被触发）
-            val current = LatestPendingIntentStore.peek()
-            if (current?.first == n_Info.key) {
-                LatestPendingIntentStore.clear()
-            }
+            NotificationInfoCache.invalidate(sbn)
         }
 
 
@@ -219,9 +237,11 @@ abstract class NotificationListenerServiceAbstract : NotificationListenerService
         sbn ?: return
         runCatching { listeners.forEach { it.onNotificationPosted(sbn) } }
         super.onNotificationPosted(sbn)
+        // 两个参数的回调会经 super 走到这里，索引只在这里更新一次
+        activeIndex.onPosted(sbn)
 
 
-        AppExecutors.executors.execute {
+        AppExecutors.notification.execute {
             val notification = sbn.notification ?: return@execute
             //避免短时间内连续两次调用
             if (enableShouldHandleFilter && !shouldHandle(sbn)) return@execute
@@ -229,7 +249,7 @@ abstract class NotificationListenerServiceAbstract : NotificationListenerService
             val n_info = buildNotificationInfo(sbn,notification, null)
 
             if (isTitleAndContentEmpty(n_info.title, n_info.content)){
-                sbns = getAllSortedByTime(safeGetActiveNotifications())
+                sbns = activeNotificationsSortedByTime()
                 val target = findFirstNonEmptyNotification(sbns, limit = 3)
                 target?.let {
                     val tn = it.notification ?: return@execute
@@ -242,30 +262,35 @@ abstract class NotificationListenerServiceAbstract : NotificationListenerService
             }
             //2 循环遍历 所有活动的通知
             if (sbns.isEmpty()) {
-                sbns = getAllSortedByTime(safeGetActiveNotifications())
+                sbns = activeNotificationsSortedByTime()
             }
-            if (true){
-                //不带索引
-                for (sbn in sbns) {
-                    sbn ?: continue
-                    val notification = sbn.notification
-                    notification ?: continue
-                    val n_info = buildNotificationInfo(sbn,notification, null)
-                    asyncHandleNotificationPostedFor(sbn,notification,n_info.title,n_info.content,n_info)
-                    clearNotification(sbn,n_info.title,n_info.content,n_info.pkgName)
-                }
-            }else{
-                //带索引
-                for ((index, sbn) in sbns.withIndex()) {
-                    sbn ?: continue
-                    val notification = sbn.notification
-                    notification ?: continue
-                    // 现在可以使用 index 变量获取当前索引
-                    //Log.d("LoopIndex", "当前是第 ${index + 1} 个元素")
-                    val n_info = buildNotificationInfo(sbn,notification, null)
-                    asyncHandleNotificationPostedFor(sbn,notification,n_info.title,n_info.content,n_info)
-                    clearNotification(sbn,n_info.title,n_info.content,n_info.pkgName)
+            clearBatch.beginPass()
+            try {
+                if (true){
+                    //不带索引
+                    for (sbn in sbns) {
+                        sbn ?: continue
+                        val notification = sbn.notification
+                        notification ?: continue
+                        val n_info = buildNotificationInfo(sbn,notification, null)
+                        asyncHandleNotificationPostedFor(sbn,notification,n_info.title,n_info.content,n_info)
+                        clearNotification(sbn,n_info.title,n_info.content,n_info.pkgName)
+                    }
+                }else{
+                    //带索引
+                    for ((index, sbn) in sbns.withIndex()) {
+                        sbn ?: continue
+                        val notification = sbn.notification
+                        notification ?: continue
+                        // 现在可以使用 index 变量获取当前索引
+                        //Log.d("LoopIndex", "当前是第 ${index + 1} 个元素")
+                        val n_info = buildNotificationInfo(sbn,notification, null)
+                        asyncHandleNotificationPostedFor(sbn,notification,n_info.title,n_info.content,n_info)
+                        clearNotification(sbn,n_info.title,n_info.content,n_info.pkgName)
+                    }
                 }
+            } finally {
+                clearBatch.endPass()
             }
 
         }
@@ -283,37 +308,41 @@ abstract class NotificationListenerServiceAbstract : NotificationListenerService
         runCatching { listeners.forEach { it.onNotificationPosted(sbn, rankingMap) } }
         super.onNotificationPosted(sbn, rankingMap)
 
-        AppExecutors.executors2.execute {
+        AppExecutors.otp.execute {
             val notification = sbn.notification ?: return@execute
             //避免短时间内连续两次调用
             if (enableShouldHandleFilter && !should2Handle(sbn)) return@execute
-            var sbns:List<StatusBarNotification> = emptyList()
             val n_info = buildNotificationInfo(sbn,notification, rankingMap)
 
-            if (isTitleAndContentEmpty(n_info.title, n_info.content)){
-                sbns = getAllSortedByTime(safeGetActiveNotifications())
-                val target = findFirstNonEmptyNotification(sbns, limit = 3)
-                target?.let {
-                    val tn = it.notification ?: return@execute
-                    val tinfo = buildNotificationInfo(it, tn, null)
-                    asyncHandleNotificationPosted(it,rankingMap, tn, tinfo.title, tinfo.content, tinfo)
-                }
-
-            } else{
-                asyncHandleNotificationPosted(sbn,rankingMap,notification,n_info.title,n_info.content,n_info)
+            // 验证码先在 otp lane 上报，回调交给 notification lane，避免被其它任务拖慢
+            val (found, code) = OtpParser.parse(n_info.content, sbn.packageName)
+            if (code != null) {
+                OtpCenter.report(
+                    code = code,
+                    notification = notification,
+                    channelId = n_info.channelId,
+                    packageName = sbn.packageName,
+                    source = OtpSource.NOTIFICATION
+                )
             }
-            //
-
-            val (found, code) = OtpParser.parse(n_info.content)
-            code ?: return@execute
 
-            OtpCenter.report(
-                code = code,
-                notification = notification,
-                channelId = n_info.channelId,
-                packageName = sbn.packageName,
-                source = OtpSource.NOTIFICATION
-            )
+            AppExecutors.notification.execute {
+                if (enableNotificationHistory) NotificationHistory.record(n_info)
+                var sbns:List<StatusBarNotification> = emptyList()
+
+                if (isTitleAndContentEmpty(n_info.title, n_info.content)){
+                    sbns = activeNotificationsSortedByTime()
+                    val target = findFirstNonEmptyNotification(sbns, limit = 3)
+                    target?.let {
+                        val tn = it.notification ?: return@execute
+                        val tinfo = buildNotificationInfo(it, tn, null)
+                        asyncHandleNotificationPosted(it,rankingMap, tn, tinfo.title, tinfo.content, tinfo)
+                    }
+
+                } else{
+                    asyncHandleNotificationPosted(sbn,rankingMap,notification,n_info.title,n_info.content,n_info)
+                }
+            }
 
 
         }
@@ -335,41 +364,50 @@ abstract class NotificationListenerServiceAbstract : NotificationListenerService
         // ✅ 第一步：主线程 + 安全取通知
         Handler(Looper.getMainLooper()).postDelayed({
 
+            // 连接后全量扫描一次，重建活动通知索引
             val sbns: List<StatusBarNotification> = try {
-                safeGetActiveNotifications()?.let {
-                    getAllSortedByTime(it)
-                } ?: emptyList()
+                activeIndex.rebuild(safeGetActiveNotifications(this))
+                activeIndex.sortedByTime()
             } catch (e: SecurityException) {
                 emptyList()
             }
 
+            // 预热目标应用和本应用的名称 / 图标
+            val warmPkgs = listOf(targetPackageName(), packageName)
+            AppExecutors.notification.execute { AppMetaCache.prewarm(warmPkgs) }
+
             if (sbns.isEmpty()) return@postDelayed
 
             // ✅ 第二步：再丢进你原来的线程池处理
-            AppExecutors.executors.execute {
-                for (sbn in sbns) {
-                    val notification = sbn.notification ?: continue
-
-                    val nInfo = buildNotificationInfo(
-                        sbn,
-                        notification,
-                        null
-                    )
-
-                    asyncHandleNotificationPostedFor(
-                        sbn,
-                        notification,
-                        nInfo.title,
-                        nInfo.content,
-                        nInfo
-                    )
-
-                    clearNotification(
-                        sbn,
-                        nInfo.title,
-                        nInfo.content,
-                        nInfo.pkgName
-                    )
+            AppExecutors.notification.execute {
+                clearBatch.beginPass()
+                try {
+                    for (sbn in sbns) {
+                        val notification = sbn.notification ?: continue
+
+                        val nInfo = buildNotificationInfo(
+                            sbn,
+                            notification,
+                            null
+                        )
+
+                        asyncHandleNotificationPostedFor(
+                            sbn,
+                            notification,
+                            nInfo.title,
+                            nInfo.content,
+                            nInfo
+                        )
+
+                        clearNotification(
+                            sbn,
+                            nInfo.title,
+                            nInfo.content,
+                            nInfo.pkgName
+                        )
+                    }
+                } finally {
+                    clearBatch.endPass()
                 }
             }
 
@@ -402,13 +440,25 @@ abstract class NotificationListenerServiceAbstract : NotificationListenerService
     override fun onListenerDisconnected() {
         super.onListenerDisconnected()
         instance = null
+        activeIndex.invalidate()
         notificationServiceLiveData.value = null
         runCatching { listeners.forEach { it.onListenerDisconnected() } }
+        if (enableNotificationHistory) AppExecutors.notification.execute { NotificationHistory.flush() }
 
 
 
 
 
+    }
+
+    /**
+     * 按时间从新到旧的活动通知：读内存索引，索引失效时才调用一次 getActiveNotifications 重建
+     */
+    fun activeNotificationsSortedByTime(): List<StatusBarNotification> {
+        if (activeIndex.needsRescan) {
+            activeIndex.rebuild(safeGetActiveNotifications(this))
+        }
+        return activeIndex.sortedByTime()
     }
 
     fun dealsbnEmpty(sbn: StatusBarNotification?): List<String> {
@@ -458,132 +508,34 @@ abstract class NotificationListenerServiceAbstract : NotificationListenerService
             if (ongoing) return false
         }
 
-        val key = buildNotificationUniqueKey(sbn)
-        val now = System.currentTimeMillis()
-
-        synchronized(postWhenLock) {
-            // 如果 key 相同
-            if (TextUtils.equals(key, lastPostWhenKey)) {
-                // 检查是否已过期（允许重新处理）
-                if (now - lastHandleTime > EXPIRY_MS) {
-                    // 过期 -> 允许处理并更新时间（保留相同 key）
-                    lastHandleTime = now
-                    // lastPostWhenKey 保持不变（也可以重新赋值）
-                    // lastPostWhenKey = key
-                    return true
-                } else {
-                    // 未过期 -> 忽略
-                    // Log.d(TAG, "重复通知且未过期，忽略: $key")
-                    return false
-                }
-            }
-
-            // key 不同 -> 允许处理并更新记录
-            lastPostWhenKey = key
-            lastHandleTime = now
-            return true
-        }
+        // 按包名分片的窗口去重：同一 key 在 EXPIRY_MS 内只处理一次，不同应用的通知互不影响
+        return postDedup.firstSeen(sbn.packageName, buildNotificationUniqueKey(sbn))
     }
 
     /**
      * 是否处理该通知：忽略持久系统通知、正在前台的本应用通知等
+     * 每个包记住最近若干个 key，去掉了原来全局 500ms 的最小间隔（会误伤不同应用的连续通知）
      */
     fun should2Handle(sbn: StatusBarNotification): Boolean {
-        val currentTime = System.currentTimeMillis()
-        val uniqueKey =  buildNotificationUniqueKey(sbn)
-        synchronized(handleLock) {
-            // 检查是否为完全相同的通知
-            if (TextUtils.equals(uniqueKey, lastHandledUniqueKey)) {
-                Log.e("通知去重", "完全相同的通知，已忽略")
-                return false
-            }
-
-            // 检查时间间隔
-            if (currentTime - lastHandleTime2 < MIN_HANDLE_INTERVAL) {
-                Log.e("通知去重", "处理间隔过短，已忽略")
-                return false
-            }
-
-            // 更新记录
-            lastHandleTime2 = currentTime
-            lastHandledUniqueKey = uniqueKey
-            if (false){
-                // 忽略本应用的通知（按需）
-                if (sbn.packageName == packageName) return false
-                // 忽略 ongoing（常驻）通知（按需）
-                val ongoing = (sbn.notification.flags and Notification.FLAG_ONGOING_EVENT) != 0
-                if (ongoing) return false
-            }
-            return true
-
+        if (false){
+            // 忽略本应用的通知（按需）
+            if (sbn.packageName == packageName) return false
+            // 忽略 ongoing（常驻）通知（按需）
+            val ongoing = (sbn.notification.flags and Notification.FLAG_ONGOING_EVENT) != 0
+            if (ongoing) return false
         }
-
+        if (!handleDedup.firstSeen(sbn.packageName, buildNotificationUniqueKey(sbn))) {
+            Log.e("通知去重", "完全相同的通知，已忽略")
+            return false
+        }
+        return true
     }
 
     // 获取通知的详细信息，包含从 NotificationCompat.MessagingStyle 提取的消息
 
     fun buildNotificationInfo(sbn: StatusBarNotification,n: Notification, rankingMap: RankingMap?): NotificationInfo {
-        val ex = n.extras
-        fun getStringOrFallback(key: String, fallback: String): String {
-            return ex?.getCharSequence(key)?.toString()?.takeIf { it.isNotBlank() }
-                ?: ex?.getString(key, fallback)
-                ?: fallback
-        }
-        // 获取标题
-        var title = getStringOrFallback(Notification.EXTRA_TITLE, appContext.getString(R.string.notificationtitlenull))
-        // 获取大文本
-        val bigText = getStringOrFallback(Notification.EXTRA_BIG_TEXT, appContext.getString(R.string.notificationcontentnull))
-        // 获取文本，如果 EXTRA_TEXT 为空，则尝试获取 EXTRA_BIG_TEXT
-        var text = getStringOrFallback(Notification.EXTRA_TEXT, bigText)
-        val pendingIntent = n.contentIntent
-
-
-        // 尝试判断 解析 MessagingStyle（如果是聊天类型的通知）
-        var messagingStyle: NotificationCompat.MessagingStyle? = null
-        try {
-            messagingStyle = NotificationCompat.MessagingStyle.extractMessagingStyleFromNotification(n)
-        } catch (_: Exception) { }
-        // 如果是 MessagingStyle 类型的通知，解析该类型的标题和内容
-        // 获取对话标题（例如联系人名称或群聊名称）
-        val conversationTitle = messagingStyle?.conversationTitle?.toString()
-            ?.takeIf { it.isNotBlank() }
-            ?: appContext.getString(R.string.notificationtitlenull)
-
-        // 获取消息列表
-        val messageList = messagingStyle?.messages?:emptyList()
-        // 获取所有按时间排序messagingStyle的消息列表 （降序）
-        val sortedmessageList = getAllSortedMessagingStyleByTime(messageList)
-        //获取最新的一条消息
-        // sortedmessageList?.firstOrNull()
-        // sortedmessageList.getOrNull(0) 两个是等价的
-        //val first_msg = sortedmessageList?.firstOrNull()
-
-        //类型：List<MessageStyleInfo> 转换为msgmaplist（保持降序排序）
-        val msgmaplist = sortedmessageList?.map {
-            MessageStyleInfo(
-                timestamp = it.timestamp,  // 时间戳，假设它不会为 null，但可能为 0
-                title = conversationTitle,
-                sender = it.person?.name?.toString()?.takeIf { it.isNotBlank() } ?: "Unknown",  // 发送者，可能为 null，使用默认值 "Unknown"
-                text = it.text?.toString()?.takeIf { it.isNotBlank() }
-                    ?: appContext.getString(R.string.notificationcontentnull) // 消息内容，可能为 null 或空白，使用默认值
-            )
-        } ?: emptyList()
-
-        if (isTitleAndContentEmpty(title, text)){
-            //获取最新一条消息
-            msgmaplist.firstOrNull()?.let {
-                title = it.title
-                text =  if (TextUtils.equals(appContext.getString(R.string.notificationcontentnull), it.text)){
-                    it.text
-                }else{
-                    it.sender + ":" + it.text
-                }
-            }
-        }
-
-        // 获取其他重要字段
-        val category = n.category // e.g. CALL, MESSAGE, EMAIL, ALARM...
-        val channelId = if (Build.VERSION.SDK_INT >= 26) n.channelId else null
+        // 标题 / 正文 / MessagingStyle 等解析结果走共享缓存，同一条通知只解析一次
+        val parsed = NotificationInfoCache.get(sbn, n)
 
         // group 信息
         val groupKey = sbn.groupKey
@@ -616,42 +568,53 @@ abstract class NotificationListenerServiceAbstract : NotificationListenerService
         return NotificationInfo(
             notification = n,
             pkgName = sbn.packageName,
-            appName = getAppName(sbn.packageName),
+            appName = parsed.appName,
             id = sbn.id?:1,
             tag = sbn.tag,
             postTime = sbn.postTime,
-            title = title,
-            content = text,
-            bigText = bigText,
-            pi = pendingIntent,
+            title = parsed.title,
+            content = parsed.content,
+            bigText = parsed.bigText,
+            pi = parsed.pi,
             key = sbn.key?:"",
-            category = category,
-            channelId = channelId,
+            category = parsed.category,
+            channelId = parsed.channelId,
             groupKey = groupKey,
             isGroupSummary = isGroup?:false,
             importance = importance,
             isAmbient = isAmbient,
             canShowBadge = canShowBadge,
             overrideGroupKey = overrideGroupKey,
-            messageStyleList = msgmaplist // 包含来自 MessagingStyle 的消息列表
+            messageStyleList = parsed.messageStyleList // 包含来自 MessagingStyle 的消息列表
         )
     }
+    /**
+     * 按规则清理通知：先看内置规则，再按顺序看 [clearRules]；只加入 [clearBatch]，由批次统一提交
+     */
     fun clearNotification(sbn: StatusBarNotification,title: String,content: String,pkgName: String){
+        var action = defaultClearAction(sbn, title, content, pkgName)
+        if (action == ClearAction.KEEP) {
+            for (rule in clearRules) {
+                action = rule.decide(sbn, title, content, pkgName)
+                if (action != ClearAction.KEEP) break
+            }
+        }
+        clearBatch.submit(sbn, action)
+    }
+
+    private fun defaultClearAction(sbn: StatusBarNotification,title: String,content: String,pkgName: String): ClearAction {
         //某些 包含本应用的  系统通知的消除
         if (isSystemApp(pkg = pkgName)) {
             //电话应用
-            if (isPhoneApp(pkg = pkgName))return
+            if (isPhoneApp(pkg = pkgName)) return ClearAction.KEEP
             if(title.contains(getAppName(packageName))||
                 content.contains(getAppName(packageName))){
-                sbn.key?.let {
-                    removeNotificationByKey(it)
-                    removeWanGuNotificationByKey(sbn,it)
-                }
+                return ClearAction.CANCEL
             }
         }
 
         //只删除本应用的保活通知
-        if (!TextUtils.equals(pkgName, packageName))return
+        if (!TextUtils.equals(pkgName, packageName)) return ClearAction.KEEP
         //保活通知的自动消除
         if (AliveUtils.getAC_AliveNotification()){
             val aliveTitle = MMKVUtil.get(
@@ -663,11 +626,10 @@ abstract class NotificationListenerServiceAbstract : NotificationListenerService
                 appContext.getString(R.string.wendingrun4)
             )
             if (title.equals(aliveTitle) ||content.equals(aliveContent)){
-                sbn.key?.let {
-                    removeWanGuNotificationByKey(sbn,it)
-                }
+                return ClearAction.SNOOZE
             }
         }
+        return ClearAction.KEEP
     }
 
     /**
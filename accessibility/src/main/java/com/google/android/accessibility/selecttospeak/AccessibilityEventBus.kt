@@ -0,0 +1,230 @@
+package com.google.android.accessibility.selecttospeak
+
+import android.graphics.Rect
+import android.view.accessibility.AccessibilityEvent
+import com.google.android.accessibility.selecttospeak.SelectToSpeakServiceAbstract.Companion.copyEventCompat
+import com.google.android.accessibility.selecttospeak.SelectToSpeakServiceAbstract.Companion.recycleCompat
+import com.google.android.accessibility.selecttospeak.SelectToSpeakServiceAbstract.Companion.recycleEventCompat
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.channels.BufferOverflow
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.flow.MutableSharedFlow
+import kotlinx.coroutines.flow.SharedFlow
+import kotlinx.coroutines.flow.asSharedFlow
+import kotlinx.coroutines.launch
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * 订阅条件，在服务线程上先过滤，不匹配的订阅者不会触发任何节点复制
+ *
+ * @param eventTypes 事件类型掩码，如 TYPE_WINDOW_STATE_CHANGED or TYPE_VIEW_CLICKED
+ * @param packages 包名白名单，空表示不限
+ * @param classNames 类名白名单，空表示不限
+ * @param withRaw 是否需要原始 AccessibilityEvent 副本
+ * @param withSummary 是否需要 event.source 的 NodeSummary（需要一次 Binder 调用）
+ */
+data class EventFilter(
+    val eventTypes: Int = AccessibilityEvent.TYPES_ALL_MASK,
+    val packages: Set<String> = emptySet(),
+    val classNames: Set<String> = emptySet(),
+    val withRaw: Boolean = true,
+    val withSummary: Boolean = false
+) {
+    fun accept(eventType: Int, packageName: String?, className: String?): Boolean {
+        if (eventTypes and eventType == 0) return false
+        if (packages.isNotEmpty() && packageName !in packages) return false
+        if (classNames.isNotEmpty() && className !in classNames) return false
+        return true
+    }
+}
+
+/**
+ * 总线上的事件：类型 / 包名 / 类名已提前取出，[raw] 是副本，[summary] 是摘要
+ *
+ * [raw] 与 [summary]（其中的 bounds 是可变的 Rect）每个订阅单独一份，[raw] 归收到它的收集者所有，用完调用 [recycle]；
+ * 只需要类型 / 包名 / 摘要的订阅请用 withRaw = false，不产生副本
+ */
+class AccessibilityEventItem(
+    val eventType: Int,
+    val packageName: String?,
+    val className: String?,
+    val eventTime: Long,
+    /** 原始事件副本（订阅时 withRaw = false 则为 null），收集者负责回收 */
+    val raw: AccessibilityEvent?,
+    /** event.source 的摘要（订阅时 withSummary = false 或 source 取不到则为 null） */
+    val summary: NodeSummary?
+) {
+    /**
+     * 回收 [raw] 副本；之后不要再访问 raw
+     */
+    fun recycle() {
+        recycleEventCompat(raw)
+    }
+}
+
+/**
+ * 无障碍事件总线（SharedFlow）
+ *
+ * 与 listeners.forEach 在 Binder 线程上直接回调不同，这里服务线程只做过滤和按订阅复制，
+ * 然后 trySend 到每个订阅者自己的缓冲通道，订阅者再慢也不会卡住服务线程。
+ *
+ * 用法：
+ * ```
+ * val sub = AccessibilityEventBus.subscribe(EventFilter(TYPE_WINDOW_STATE_CHANGED, setOf("com.tencent.mm")))
+ * scope.launch { sub.events.collect { try { ... } finally { it.recycle() } } }
+ * sub.close()
+ * ```
+ * 每个订阅只应有一个收集者：[AccessibilityEventItem.raw] 按订阅复制，多个收集者会拿到同一份副本。
+ */
+object AccessibilityEventBus {
+
+    /**
+     * 单个订阅
+     *
+     * 事件先进入长度为 bufferSize 的通道，由总线协程挂起式 emit 给收集者，收集者跟不上时反压到通道：
+     * overflow = DROP_OLDEST / DROP_LATEST：通道满时按策略丢弃
+     * overflow = SUSPEND：同 DROP_LATEST，通道满了丢弃新事件（服务线程本身永远不挂起）
+     * 被丢弃、通道关闭时没取走、或没有收集者时的事件都在这里回收 raw 并计入 [droppedCount]
+     */
+    class Subscription internal constructor(
+        val filter: EventFilter,
+        val bufferSize: Int,
+        val overflow: BufferOverflow
+    ) {
+        private val flow = MutableSharedFlow<AccessibilityEventItem>(replay = 0, extraBufferCapacity = 0)
+        val events: SharedFlow<AccessibilityEventItem> = flow.asSharedFlow()
+
+        // DROP_LATEST 的通道丢新事件时不会回调 onUndeliveredElement，改用 SUSPEND 通道让 trySend 失败，由 offer 回收
+        private val ingress = Channel<AccessibilityEventItem>(
+            bufferSize,
+            if (overflow == BufferOverflow.DROP_LATEST) BufferOverflow.SUSPEND else overflow
+        ) { discard(it) }
+        private var forwarder: Job? = null
+
+        private val delivered = AtomicLong()
+        private val dropped = AtomicLong()
+
+        /** 实际交给收集者的事件数 */
+        val deliveredCount: Long get() = delivered.get()
+        val droppedCount: Long get() = dropped.get()
+
+        internal fun start(scope: CoroutineScope) {
+            forwarder = scope.launch {
+                for (item in ingress) {
+                    // 没有收集者时 emit 会直接丢掉事件，这里先回收，不算投递
+                    if (flow.subscriptionCount.value == 0) {
+                        discard(item)
+                        continue
+                    }
+                    try {
+                        flow.emit(item)
+                    } catch (e: CancellationException) {
+                        discard(item)
+                        throw e
+                    }
+                    delivered.incrementAndGet()
+                }
+            }
+        }
+
+        internal fun offer(item: AccessibilityEventItem) {
+            if (!ingress.trySend(item).isSuccess) discard(item)
+        }
+
+        private fun discard(item: AccessibilityEventItem) {
+            dropped.incrementAndGet()
+            item.recycle()
+        }
+
+        /**
+         * 取消订阅，通道里还没投递的事件随之回收
+         */
+        fun close() {
+            subscriptions.remove(this)
+            ingress.cancel()
+            forwarder?.cancel()
+        }
+    }
+
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.Default)
+    private val subscriptions = CopyOnWriteArrayList<Subscription>()
+
+    @JvmStatic
+    @JvmOverloads
+    fun subscribe(
+        filter: EventFilter = EventFilter(),
+        bufferSize: Int = 64,
+        overflow: BufferOverflow = BufferOverflow.DROP_OLDEST
+    ): Subscription {
+        require(bufferSize > 0) { "bufferSize must be > 0" }
+        return Subscription(filter, bufferSize, overflow).also {
+            it.start(scope)
+            subscriptions.add(it)
+        }
+    }
+
+    val hasSubscribers: Boolean get() = subscriptions.isNotEmpty()
+
+    /**
+     * 在服务线程调用：过滤 → 按需复制一次 → 分发
+     */
+    internal fun publish(event: AccessibilityEvent) {
+        if (subscriptions.isEmpty()) return
+        val eventType = event.eventType
+        val packageName = event.packageName?.toString()
+        val className = event.className?.toString()
+
+        var needSummary = false
+        var matched: ArrayList<Subscription>? = null
+        for (sub in subscriptions) {
+            if (!sub.filter.accept(eventType, packageName, className)) continue
+            if (matched == null) matched = ArrayList(2)
+            matched.add(sub)
+            needSummary = needSummary || sub.filter.withSummary
+        }
+        val targets = matched ?: return
+
+        // source 只查询一次；summary 的 Rect 可变、raw 由各自的收集者回收，所以都按订阅各给一份
+        val summary = if (needSummary) summarize(event) else null
+        var summaryUsed = false
+        for (sub in targets) {
+            sub.offer(
+                AccessibilityEventItem(
+                    eventType = eventType,
+                    packageName = packageName,
+                    className = className,
+                    eventTime = event.eventTime,
+                    raw = if (sub.filter.withRaw) copyEventCompat(event) else null,
+                    summary = if (sub.filter.withSummary && summary != null) {
+                        if (summaryUsed) summary.copy(bounds = Rect(summary.bounds)) else summary.also { summaryUsed = true }
+                    } else {
+                        null
+                    }
+                )
+            )
+        }
+    }
+
+    private fun summarize(event: AccessibilityEvent): NodeSummary? {
+        val source = try { event.source } catch (_: Throwable) { null } ?: return null
+        return try {
+            NodeSummary(
+                packageName = source.packageName?.toString(),
+                className = source.className?.toString(),
+                nodeText = source.text?.toString(),
+                viewId = source.viewIdResourceName,
+                bounds = Rect().also { source.getBoundsInScreen(it) },
+                describe = source.contentDescription?.toString()
+            )
+        } catch (_: Throwable) {
+            null
+        } finally {
+            recycleCompat(source)
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.google.android.accessibility.selecttospeak
+
+import android.os.Handler
+import android.os.Looper
+import android.view.accessibility.AccessibilityEvent
+import android.view.accessibility.AccessibilityNodeInfo
+import com.google.android.accessibility.selecttospeak.SelectToSpeakServiceAbstract.Companion.copyNodeCompat
+import com.google.android.accessibility.selecttospeak.SelectToSpeakServiceAbstract.Companion.recycleCompat
+import com.google.android.accessibility.selecttospeak.SelectToSpeakServiceAbstract.Companion.recycleEventCompat
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * TYPE_WINDOW_CONTENT_CHANGED 合并器
+ *
+ * 聊天页每秒会有上百个内容变化事件，逐个复制节点再丢进单线程执行器会让队列积压好几秒。
+ * 这里按 包名 + windowId 分组，在 [frameWindowMs] 窗口内只保留一份待处理数据，
+ * 窗口结束时每个窗口只投递一个 XPQEventData。
+ * 服务线程上只保存事件副本，event.source 到处理器真正用到节点时才去取。
+ */
+class ContentChangeCoalescer(
+    private val deliver: (PendingContentChange) -> Unit
+) {
+
+    enum class MergeStrategy {
+        /** 只保留最后一个事件的 source 子树 */
+        LATEST,
+
+        /** 保留所有变化子树的最近公共祖先（在投递线程上计算） */
+        COMMON_ANCESTOR
+    }
+
+    /**
+     * 一个窗口在一帧内合并后的结果
+     */
+    class PendingContentChange internal constructor(
+        val pkgName: String,
+        val windowId: Int,
+        /** 本帧暂存的事件副本，最后一个是最新事件 */
+        internal val events: ArrayList<AccessibilityEvent>,
+        /** 本帧合并进来的事件数 */
+        var eventCount: Int = 1
+    ) {
+        /** 最新事件（副本） */
+        val event: AccessibilityEvent get() = events.last()
+
+        /**
+         * 合并后的 source（调用方负责回收）：LATEST 取最新事件的 source；
+         * COMMON_ANCESTOR 取所有事件 source 的最近公共祖先。有 Binder 调用，不要在主线程调
+         */
+        fun resolveSource(): AccessibilityNodeInfo? {
+            if (events.size == 1) return try { events[0].source } catch (_: Throwable) { null }
+            val sources = events.mapNotNull { e -> try { e.source } catch (_: Throwable) { null } }
+            if (sources.size <= 1) return sources.firstOrNull()
+            val lca = lowestCommonAncestor(sources)
+            sources.forEach { recycleCompat(it) }
+            return lca
+        }
+
+        /**
+         * 回收事件副本（事件已投递且处理完后调用）
+         */
+        fun discard() {
+            events.forEach { recycleEventCompat(it) }
+            events.clear()
+        }
+    }
+
+    data class Stats(
+        val received: Long,
+        val merged: Long,
+        val delivered: Long,
+        val dropped: Long
+    )
+
+    /** 合并窗口（毫秒），<= 0 时不合并、逐个投递 */
+    @Volatile
+    var frameWindowMs: Long = 16L
+
+    @Volatile
+    var strategy: MergeStrategy = MergeStrategy.LATEST
+
+    /** COMMON_ANCESTOR 模式下每帧最多暂存的事件数，超出后丢弃最早的 */
+    @Volatile
+    var maxSourcesPerFrame: Int = 8
+
+    /** 分组键：包名 + windowId，不用哈希拼接，避免不同包撞键互相覆盖 */
+    private data class WindowKey(val pkgName: String, val windowId: Int)
+
+    private val handler = Handler(Looper.getMainLooper())
+    private val pending = HashMap<WindowKey, PendingContentChange>()
+
+    private val received = AtomicLong()
+    private val merged = AtomicLong()
+    private val delivered = AtomicLong()
+    private val dropped = AtomicLong()
+
+    /**
+     * 收到一个内容变化事件；[eventCopy] 必须是副本，所有权转移给合并器
+     */
+    fun offer(eventCopy: AccessibilityEvent, pkgName: String) {
+        received.incrementAndGet()
+        val window = frameWindowMs
+        val windowId = eventCopy.windowId
+        if (window <= 0) {
+            dispatch(PendingContentChange(pkgName, windowId, arrayListOf(eventCopy)))
+            return
+        }
+        val key = WindowKey(pkgName, windowId)
+        synchronized(pending) {
+            val current = pending[key]
+            if (current != null) {
+                merged.incrementAndGet()
+                current.eventCount++
+                if (strategy == MergeStrategy.LATEST) {
+                    current.discard()
+                } else if (current.events.size >= maxSourcesPerFrame) {
+                    recycleEventCompat(current.events.removeAt(0))
+                    dropped.incrementAndGet()
+                }
+                current.events.add(eventCopy)
+                return
+            }
+            pending[key] = PendingContentChange(pkgName, windowId, arrayListOf(eventCopy))
+        }
+        handler.postDelayed({ flush(key) }, window)
+    }
+
+    private fun flush(key: WindowKey) {
+        val change = synchronized(pending) { pending.remove(key) } ?: return
+        dispatch(change)
+    }
+
+    private fun dispatch(change: PendingContentChange) {
+        delivered.incrementAndGet()
+        deliver(change)
+    }
+
+    /**
+     * 服务销毁时清空未投递的数据
+     */
+    fun clear() {
+        handler.removeCallbacksAndMessages(null)
+        synchronized(pending) {
+            pending.values.forEach { it.discard() }
+            dropped.addAndGet(pending.size.toLong())
+            pending.clear()
+        }
+    }
+
+    fun stats(): Stats = Stats(
+        received = received.get(),
+        merged = merged.get(),
+        delivered = delivered.get(),
+        dropped = dropped.get()
+    )
+
+    companion object {
+        private const val MAX_ANCESTOR_DEPTH = 64
+
+        /**
+         * 多个节点的最近公共祖先（返回副本），找不到返回 null
+         */
+        @JvmStatic
+        fun lowestCommonAncestor(nodes: List<AccessibilityNodeInfo>): AccessibilityNodeInfo? {
+            if (nodes.isEmpty()) return null
+            // 第一个节点到根的链；chain[0] 属于调用方，其余是取出来的父节点，结束时统一回收
+            val chain = ArrayList<AccessibilityNodeInfo>()
+            try {
+                var cur: AccessibilityNodeInfo? = nodes[0]
+                while (cur != null) {
+                    chain.add(cur)
+                    cur = if (chain.size < MAX_ANCESTOR_DEPTH) cur.parent else null
+                }
+                var lowest = 0
+                for (i in 1 until nodes.size) {
+                    val found = indexInChain(chain, nodes[i])
+                    if (found < 0) return null
+                    if (found > lowest) lowest = found
+                }
+                return copyNodeCompat(chain[lowest])
+            } finally {
+                for (i in 1 until chain.size) recycleCompat(chain[i])
+            }
+        }
+
+        /**
+         * [node] 或其祖先在 [chain] 中的位置，找不到返回 -1；途中取出的父节点用完即回收
+         */
+        private fun indexInChain(chain: List<AccessibilityNodeInfo>, node: AccessibilityNodeInfo): Int {
+            var n: AccessibilityNodeInfo? = node
+            var depth = 0
+            while (n != null) {
+                val idx = chain.indexOf(n)
+                val next = if (idx < 0 && depth + 1 < MAX_ANCESTOR_DEPTH) n.parent else null
+                if (n !== node) recycleCompat(n)
+                if (idx >= 0) return idx
+                n = next
+                depth++
+            }
+            return -1
+        }
+    }
+}
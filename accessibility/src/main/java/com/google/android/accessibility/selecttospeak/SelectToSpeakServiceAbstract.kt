@@ -5,6 +5,7 @@ import android.accessibilityservice.AccessibilityServiceInfo
 import android.app.Notification
 import android.content.Intent
 import android.content.IntentFilter
+import android.content.res.Configuration
 import android.graphics.Rect
 import android.os.Build
 import android.text.TextUtils
@@ -12,7 +13,6 @@ import android.util.Log
 import android.view.accessibility.AccessibilityEvent
 import android.view.accessibility.AccessibilityNodeInfo
 import androidx.annotation.CallSuper
-import androidx.core.app.NotificationCompat
 import androidx.lifecycle.Lifecycle
 import androidx.lifecycle.LifecycleOwner
 import androidx.lifecycle.LifecycleRegistry
@@ -25,14 +25,18 @@ import androidx.savedstate.SavedStateRegistryController
 import androidx.savedstate.SavedStateRegistryOwner
 import com.android.accessibility.ext.R
 import com.google.android.accessibility.ext.AssistsServiceListener
+import com.google.android.accessibility.ext.acc.WindowSnapshot
 import com.google.android.accessibility.ext.utils.AliveUtils
+import com.google.android.accessibility.ext.utils.AppMetaCache
+import com.google.android.accessibility.ext.utils.DedupWindow
+import com.google.android.accessibility.ext.utils.HumanPathLibrary
 import com.google.android.accessibility.ext.utils.KeyguardUnLock
 
 import com.google.android.accessibility.ext.utils.LibCtxProvider.Companion.appContext
 import com.google.android.accessibility.ext.utils.MyTouchGenerator
 import com.google.android.accessibility.ext.utils.NetworkHelperFullSmart
 import com.google.android.accessibility.ext.utils.NotificationUtilXpq.editPaste
-import com.google.android.accessibility.ext.utils.NotificationUtilXpq.getAllSortedMessagingStyleByTime
+import com.google.android.accessibility.ext.utils.ScrollDriver
 import com.google.android.accessibility.ext.utils.broadcastutil.ScreenStateCallback
 import com.google.android.accessibility.ext.utils.broadcastutil.ScreenStateReceiver
 import com.google.android.accessibility.ext.utils.broadcastutil.BroadcastOwnerType
@@ -48,9 +52,7 @@ import com.google.android.accessibility.ext.window.DynamicIslandFloatWindow
 import com.google.android.accessibility.ext.window.SwipeTrajectoryIndicatorManager
 import com.google.android.accessibility.notification.AccessibilityNInfo
 import com.google.android.accessibility.notification.AppExecutors
-import com.google.android.accessibility.notification.MessageStyleInfo
-import com.google.android.accessibility.notification.NotificationListenerServiceAbstract.Companion.getAppName
-import com.google.android.accessibility.notification.NotificationListenerServiceAbstract.Companion.isTitleAndContentEmpty
+import com.google.android.accessibility.notification.NotificationInfoCache
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.Job
@@ -94,11 +96,36 @@ abstract class SelectToSpeakServiceAbstract : AccessibilityService(),
     private val lastWindowContentHandledAt = ConcurrentHashMap<String, Long>()
     private var WINDOW_CONTENT_DEBOUNCE_MS = 300L // 每个包300ms内只处理一次（根据需要调节）
 
-    @Volatile
-    private var lastEventTime: Long = 0L
+    // TYPE_NOTIFICATION_STATE_CHANGED 去重窗口
+    private val eventDedup = DedupWindow(EVENT_DEDUP_WINDOW_MS)
     // 如果你只对特定包感兴趣，可以在这里维护白名单/黑名单
     private val packageNamesFilter: Set<String>? = null // e.g. setOf("com.whatsapp", "com.tencent.mm")
 
+    /**
+     * TYPE_WINDOW_CONTENT_CHANGED 合并：按 包名 + windowId 在一帧内只投递一次 asyncHandle_WINDOW_CONTENT_CHANGED
+     * 子类可调整 frameWindowMs / strategy，frameWindowMs <= 0 恢复逐个投递
+     */
+    protected val contentChangeCoalescer = ContentChangeCoalescer { change ->
+        // content lane 里同一窗口还没执行的投递直接被替换，被替换 / 挤掉的那次由 onDrop 释放
+        AppExecutors.content.execute(change.pkgName to change.windowId, onDrop = { change.discard() }) {
+            val eventData = XPQEventData.lazy(
+                service = this@SelectToSpeakServiceAbstract,
+                event = change.event,
+                pkgName = change.pkgName,
+                className = "",
+                loader = change::resolveSource
+            )
+            try {
+                asyncHandle_WINDOW_CONTENT_CHANGED(eventData)
+            } catch (t: Throwable) {
+
+            } finally {
+                eventData.release()
+                change.discard()
+            }
+        }
+    }
+
 
 
     open fun targetPackageName(): String {
@@ -131,6 +158,8 @@ abstract class SelectToSpeakServiceAbstract : AccessibilityService(),
     override fun onServiceConnected() {
         super.onServiceConnected()
         MyTouchGenerator.attach(this)
+        // 按当前显示预生成拟人化手势模板
+        runCatching { HumanPathLibrary.refresh(this) }
         lifecycleRegistry.handleLifecycleEvent(
             Lifecycle.Event.ON_START
         )
@@ -146,6 +175,10 @@ abstract class SelectToSpeakServiceAbstract : AccessibilityService(),
         // 灵动岛：若开关已开启则自动初始化（受开关控制，关闭则不显示）
         runCatching { DynamicIslandFloatWindow.autoInit() }
 
+        // 预热目标应用的名称 / 图标，首条通知不用再等 PackageManager
+        val warmPkgs = listOf(targetPackageName())
+        AppExecutors.notification.execute { AppMetaCache.prewarm(warmPkgs) }
+
 
 
         val info = AccessibilityServiceInfo().apply {
@@ -226,9 +259,11 @@ abstract class SelectToSpeakServiceAbstract : AccessibilityService(),
         event ?: return
         instance = this
         dealEvent(event)
-        AppExecutors.executors4.execute {
+        ScrollDriver.onEvent(event)
+        AppExecutors.raw.execute {
             asyncHandleAccessibilityEvent(event)
         }
+        AccessibilityEventBus.publish(event)
         runCatching { listeners.forEach { it.onAccessibilityEvent(event) } }
     }
     /**
@@ -248,6 +283,15 @@ abstract class SelectToSpeakServiceAbstract : AccessibilityService(),
         runCatching { listeners.forEach { it.onInterrupt() } }
     }
 
+    /**
+     * 旋转 / 分辨率 / 字体密度变化时重建手势模板
+     */
+    @CallSuper
+    override fun onConfigurationChanged(newConfig: Configuration) {
+        super.onConfigurationChanged(newConfig)
+        runCatching { HumanPathLibrary.refresh(this) }
+    }
+
 
     @CallSuper
     override fun onDestroy() {
@@ -257,6 +301,7 @@ abstract class SelectToSpeakServiceAbstract : AccessibilityService(),
         }
         destroyed = true
         MyTouchGenerator.detach()
+        contentChangeCoalescer.clear()
         lifecycleRegistry.handleLifecycleEvent(
             Lifecycle.Event.ON_DESTROY
         )
@@ -289,6 +334,10 @@ abstract class SelectToSpeakServiceAbstract : AccessibilityService(),
     }
 
     companion object {
+        // TYPE_WINDOWS_CHANGED 在 window-state lane 中的合并 key，排队中只保留最新一个
+        private const val TYPE_WINDOWS_CHANGED_KEY = "windows_changed"
+        private const val EVENT_DEDUP_WINDOW_MS = 5_000L
+
         /**
          * 全局服务实例
          * 用于在应用中获取无障碍服务实例
@@ -338,114 +387,81 @@ abstract class SelectToSpeakServiceAbstract : AccessibilityService(),
             }
         }
 
-    }
-
-    fun shouldHandle(eventTime: Long): Boolean {
-        // 检查通知时间是否重复
-        if (eventTime == lastEventTime) {
-            //Log.e("通知去重", "重复的通知时间，已忽略")
-            return false
-        }
-        // 更新上次处理的通知时间
-        lastEventTime = eventTime
-        return true
-    }
-    // 在 AccessibilityService 中使用  ，构建通知解析结果
-    fun buildAccessibilityNInfo(notification: Notification, pkgName: String, eventTime: Long,eventText: String): AccessibilityNInfo {
-        val ex = notification.extras
-        fun getStringOrFallback(key: String, fallback: String): String {
-            return ex?.getCharSequence(key)?.toString()?.takeIf { it.isNotBlank() }
-                ?: ex?.getString(key, fallback)
-                ?: fallback
-        }
-        // 获取标题
-        var title = getStringOrFallback(Notification.EXTRA_TITLE, appContext.getString(R.string.notificationtitlenull))
-        // 获取大文本
-        val bigText = getStringOrFallback(Notification.EXTRA_BIG_TEXT, appContext.getString(R.string.notificationcontentnull))
-        // 获取文本，如果 EXTRA_TEXT 为空，则尝试获取 EXTRA_BIG_TEXT
-        var text = getStringOrFallback(Notification.EXTRA_TEXT, bigText)
-        val pendingIntent = notification.contentIntent
-
-        // 尝试判断 解析 MessagingStyle（如果是聊天类型的通知）
-        var messagingStyle: NotificationCompat.MessagingStyle? = null
-        try {
-            messagingStyle = NotificationCompat.MessagingStyle.extractMessagingStyleFromNotification(notification)
-        } catch (_: Exception) { }
-        // 如果是 MessagingStyle 类型的通知，解析该类型的标题和内容
-        // 获取对话标题（例如联系人名称或群聊名称）
-        val conversationTitle = messagingStyle?.conversationTitle?.toString()
-            ?.takeIf { it.isNotBlank() }
-            ?: appContext.getString(R.string.notificationtitlenull)
-
-        // 获取消息列表
-        val messageList = messagingStyle?.messages?:emptyList()
-        // 获取所有按时间排序messagingStyle的消息列表 （降序）
-        val sortedmessageList = getAllSortedMessagingStyleByTime(messageList)
-        //获取最新的一条消息
-        // sortedmessageList?.firstOrNull()
-        // sortedmessageList.getOrNull(0) 两个是等价的
-        //val first_msg = sortedmessageList?.firstOrNull()
-
-        //类型：List<MessageStyleInfo> 转换为msgmaplist（保持降序排序）
-        val msgmaplist = sortedmessageList?.map {
-            MessageStyleInfo(
-                timestamp = it.timestamp,  // 时间戳，假设它不会为 null，但可能为 0
-                title = conversationTitle,
-                sender = it.person?.name?.toString()?.takeIf { it.isNotBlank() } ?: "Unknown",  // 发送者，可能为 null，使用默认值 "Unknown"
-                text = it.text?.toString()?.takeIf { it.isNotBlank() }
-                    ?: appContext.getString(R.string.notificationcontentnull) // 消息内容，可能为 null 或空白，使用默认值
-            )
-        } ?: emptyList()
-
-        if (isTitleAndContentEmpty(title, text)){
-            //获取最新一条消息
-            msgmaplist.firstOrNull()?.let {
-                title = it.title
-                text =  if (TextUtils.equals(appContext.getString(R.string.notificationcontentnull), it.text)){
-                    it.text
-                }else{
-                    it.sender + ":" + it.text
+        /**
+         * 复制事件：副本保留 windowId / source 信息，离开 onAccessibilityEvent 之后仍可在工作线程取 source
+         */
+        @JvmStatic
+        @Suppress("DEPRECATION")
+        fun copyEventCompat(event: AccessibilityEvent?): AccessibilityEvent? {
+            if (event == null) return null
+            return try {
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+                    AccessibilityEvent(event)
+                } else {
+                    AccessibilityEvent.obtain(event)
                 }
+            } catch (t: Throwable) {
+                null
+            }
+        }
+        @JvmStatic
+        @Suppress("DEPRECATION")
+        fun recycleEventCompat(event: AccessibilityEvent?) {
+            if (event == null) return
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.TIRAMISU) {
+                try { event.recycle() } catch (_: Throwable) { /* ignore */ }
             }
         }
 
-        // 获取其他重要字段
-        val category = notification.category // e.g. CALL, MESSAGE, EMAIL, ALARM...
-        val channelId = if (Build.VERSION.SDK_INT >= 26) notification.channelId else null
+    }
 
+    @JvmOverloads
+    fun shouldHandle(eventTime: Long, pkgName: String? = null): Boolean {
+        // 检查通知时间是否重复（按包名分片记住最近若干个，交替到达的两条通知也能去重）
+        return eventDedup.firstSeen(pkgName, eventTime.toString())
+    }
+    // 在 AccessibilityService 中使用  ，构建通知解析结果
+    fun buildAccessibilityNInfo(notification: Notification, pkgName: String, eventTime: Long,eventText: String): AccessibilityNInfo {
+        // 与通知栏服务共用解析缓存
+        val parsed = NotificationInfoCache.get(pkgName, notification)
         return AccessibilityNInfo(
             notification = notification,
             pkgName = pkgName,
-            appName = getAppName(pkgName),
+            appName = parsed.appName,
             postTime = eventTime,
-            title = title,
-            content = text,
-            bigText = bigText,
+            title = parsed.title,
+            content = parsed.content,
+            bigText = parsed.bigText,
             eventText = eventText,
-            pi = pendingIntent,
-            category = category,
-            channelId = channelId,
-            messageStyleList = msgmaplist // 包含来自 MessagingStyle 的消息列表
+            pi = parsed.pi,
+            category = parsed.category,
+            channelId = parsed.channelId,
+            messageStyleList = parsed.messageStyleList // 包含来自 MessagingStyle 的消息列表
         )
     }
 
 
     private fun dealEvent(event: AccessibilityEvent) {
+        // 窗口/内容变化只打失效标记，快照在下一次查找时才重建
+        WindowSnapshot.invalidate(event)
         when (event.eventType) {
             //通知改变
             AccessibilityEvent.TYPE_NOTIFICATION_STATE_CHANGED -> {
-                AppExecutors.executors3.execute {
+                AppExecutors.otp.execute {
                     val eventTime = event.eventTime
-                    if (!shouldHandle(eventTime)) return@execute
                     val pkgName = event.packageName?.toString() ?: "UnKnown"
+                    if (!shouldHandle(eventTime, pkgName)) return@execute
                     // 方式一：直接从 event.text 获取（简单但可能不完整）
                     val eventText = event.text?.joinToString(separator = " ")?.takeIf { it.isNotBlank() } ?: "（event.text 为空或不完整）"
                     // 方式二：从 parcelableData 获取 Notification（更完整）
                     val notification = event.parcelableData as? Notification ?: return@execute
                     val a_n_Info = buildAccessibilityNInfo(notification, pkgName, eventTime,eventText)
-                    asyncHandleAccessibilityNotification(notification,a_n_Info.title,a_n_Info.content,a_n_Info)
+                    // 使用方回调交给 notification lane，otp lane 只做验证码解析与上报
+                    AppExecutors.notification.execute {
+                        asyncHandleAccessibilityNotification(notification,a_n_Info.title,a_n_Info.content,a_n_Info)
+                    }
 
-                    val (found, code) = OtpParser.parse(a_n_Info.content)
+                    val (found, code) = OtpParser.parse(a_n_Info.content, pkgName)
                     code ?: return@execute
 
                     OtpCenter.report(
@@ -469,24 +485,22 @@ abstract class SelectToSpeakServiceAbstract : AccessibilityService(),
                 //屏蔽掉无关的干扰包,com.android.systemui  输入法等
                 if (!TextUtils.equals(pkg, ev_pkg)) return
                 cur_PkgName = pkg
-                // 创建节点副本 复制 active root
-                val rootCopy = copyNodeCompat(originalRoot)
-                rootCopy ?: return
-                val eventData = XPQEventData(
+                // rootInActiveWindow 返回的已经是独立实例，不再额外复制；处理器不取 rootNode 时直接回收
+                val eventData = XPQEventData.lazy(
                     service = this@SelectToSpeakServiceAbstract,
                     event = event,
-                    rootNode = rootCopy,
-                    nodeInfoList = listOf(rootCopy),
                     pkgName = pkg,
-                    className = className
+                    className = className,
+                    loader = { originalRoot },
+                    onDiscard = { recycleCompat(originalRoot) }
                 )
-                AppExecutors.executors3.execute {
+                AppExecutors.windowState.execute(null, onDrop = { eventData.release() }) {
                     try {
                         asyncHandle_WINDOW_STATE_CHANGED(eventData)
                     } catch (t: Throwable) {
 
                     } finally {
-
+                        eventData.release()
                     }
                 }
 
@@ -532,68 +546,43 @@ abstract class SelectToSpeakServiceAbstract : AccessibilityService(),
                 // 额外过滤：如果你有白名单，先检查
                 //if (packageNamesFilter != null && pkg !in packageNamesFilter) return@execute
 
-                // event.source 可能为 null（被回收或权限不够）
-                val sourceOriginal = try { event.source } catch (_: Throwable) { null }
-                sourceOriginal ?: return
-
-                val sourceCopy = copyNodeCompat(sourceOriginal)
-                sourceCopy ?: return
-                val eventData = XPQEventData(
-                    service = this@SelectToSpeakServiceAbstract,
-                    event = event,
-                    rootNode = sourceCopy,
-                    nodeInfoList = listOf(sourceCopy),
-                    pkgName = pkg,
-                    className = ""
-                )
-                AppExecutors.executors3.execute {
-                    try {
-                        asyncHandle_WINDOW_CONTENT_CHANGED(eventData)
-                    } catch (t: Throwable) {
-
-                    } finally {
-
-                    }
-                }
+                // 这里只复制事件，event.source 等处理器用到 rootNode 时才取（可能为 null：被回收或权限不够）
+                val eventCopy = copyEventCompat(event) ?: return
+                // 同一窗口一帧内的事件合并后再投递，见 contentChangeCoalescer
+                contentChangeCoalescer.offer(eventCopy, pkg)
 
 
             }
             //滑动改变
             AccessibilityEvent.TYPE_VIEW_SCROLLED -> {
                 val pkg = event.packageName?.toString() ?: return
-                val sourceOriginal = try { event.source } catch (_: Throwable) { null }
-                sourceOriginal ?: return
-                val sourceCopy = copyNodeCompat(sourceOriginal)
-                sourceCopy ?: return
-                val fromIndex = event.fromIndex
-                val toIndex = event.toIndex
-                val scrollx = event.scrollX
-                val scrolly = event.scrollY
-                val eventData = XPQEventData(
+                // 只复制事件，event.source 在处理器访问 rootNode 时才取
+                val eventCopy = copyEventCompat(event) ?: return
+                val eventData = XPQEventData.lazy(
                     service = this@SelectToSpeakServiceAbstract,
-                    event = event,
-                    rootNode = sourceCopy,
-                    nodeInfoList = listOf(sourceCopy),
+                    event = eventCopy,
                     pkgName = pkg,
                     className = "",
-                    fromIndex = fromIndex,
-                    toIndex = toIndex,
-                    scrollx = scrollx,
-                    scrolly = scrolly
+                    fromIndex = event.fromIndex,
+                    toIndex = event.toIndex,
+                    scrollx = event.scrollX,
+                    scrolly = event.scrollY,
+                    loader = { eventCopy.source },
+                    recycleEvent = true
                 )
-                AppExecutors.executors3.execute {
+                AppExecutors.content.execute(null, onDrop = { eventData.release() }) {
                     try {
                         asyncHandle_VIEW_SCROLLED(eventData)
                     } catch (t: Throwable) {
 
                     } finally {
-
+                        eventData.release()
                     }
                 }
 
             }
             AccessibilityEvent.TYPE_WINDOWS_CHANGED -> {
-                AppExecutors.executors3.execute {
+                AppExecutors.windowState.execute(TYPE_WINDOWS_CHANGED_KEY) {
                     asyncHandle_WINDOWS_CHANGED(event)
                 }
              }
@@ -654,17 +643,197 @@ data class NodeSummary(
     val bounds: Rect,
     val describe: String?
 )
-data class XPQEventData(
+/**
+ * 事件数据
+ *
+ * 基本字段（包名、类名、滚动位置等）在服务线程上提前取好；rootNode / nodeInfoList 可以是延迟加载的，
+ * 处理器第一次访问时才取节点（Binder 调用），只读 pkgName 的处理器完全不会碰节点树。
+ *
+ * 节点所有权：处理器返回后父类调用 [release] 回收节点；需要在处理器返回后继续使用节点时，
+ * 在处理器内调用 [claim] 接管，之后由调用方自己回收。
+ */
+class XPQEventData private constructor(
     val service: AccessibilityService,
     val event: AccessibilityEvent,
-    val rootNode: AccessibilityNodeInfo,
-    val nodeInfoList: List<AccessibilityNodeInfo>,
-    val pkgName: String = "",
-    val className: String = "",
-    val fromIndex: Int = 0,
-    val toIndex: Int = 0,
-    val scrollx: Int = 0,
-    val scrolly: Int = 0,
+    val pkgName: String,
+    val className: String,
+    val fromIndex: Int,
+    val toIndex: Int,
+    val scrollx: Int,
+    val scrolly: Int,
+    private var loader: (() -> AccessibilityNodeInfo?)?,
+    private var onDiscard: (() -> Unit)?,
+    private var extraNodes: List<AccessibilityNodeInfo>?,
+    private val ownsEvent: Boolean
+) {
 
+    /**
+     * 立即加载的写法（节点已经准备好），与原 data class 的构造参数一致
+     */
+    constructor(
+        service: AccessibilityService,
+        event: AccessibilityEvent,
+        rootNode: AccessibilityNodeInfo,
+        nodeInfoList: List<AccessibilityNodeInfo>,
+        pkgName: String = "",
+        className: String = "",
+        fromIndex: Int = 0,
+        toIndex: Int = 0,
+        scrollx: Int = 0,
+        scrolly: Int = 0,
+    ) : this(service, event, pkgName, className, fromIndex, toIndex, scrollx, scrolly, null, null, nodeInfoList, false) {
+        node = rootNode
+        loaded = true
+    }
 
-)
\ No newline at end of file
+    private val lock = Any()
+    private var node: AccessibilityNodeInfo? = null
+    private var loaded = false
+    private var claimed = false
+    private var released = false
+
+    /** rootNode 是否已经加载过 */
+    val isNodeLoaded: Boolean get() = synchronized(lock) { loaded }
+
+    /**
+     * 节点，首次访问时加载；节点已失效（source 被回收或窗口已关闭）时为 null
+     *
+     * 与原 data class 不同：原来取不到节点时不调用处理器，现在为了不在服务线程上提前取节点，处理器照常调用，
+     * 这里可能为 null，处理器需要判空
+     */
+    val rootNode: AccessibilityNodeInfo?
+        get() = synchronized(lock) {
+            if (!loaded) {
+                loaded = true
+                node = if (released) null else try { loader?.invoke() } catch (_: Throwable) { null }
+                loader = null
+                onDiscard = null
+            }
+            node
+        }
+
+    val nodeInfoList: List<AccessibilityNodeInfo>
+        get() = extraNodes ?: listOfNotNull(rootNode)
+
+    /**
+     * 接管节点：处理器返回后父类不再回收，由调用方负责 recycleCompat
+     */
+    fun claim(): AccessibilityNodeInfo? {
+        val n = rootNode
+        synchronized(lock) { claimed = true }
+        return n
+    }
+
+    /**
+     * 处理器返回后由父类调用：未被接管的节点回收；从未加载过的直接丢弃加载器；自己复制的事件一并回收
+     */
+    internal fun release() {
+        val toRecycle: List<AccessibilityNodeInfo>
+        val discard: (() -> Unit)?
+        synchronized(lock) {
+            if (released) return
+            released = true
+            discard = onDiscard
+            loader = null
+            onDiscard = null
+            if (claimed || !loaded) {
+                toRecycle = emptyList()
+            } else {
+                toRecycle = (extraNodes.orEmpty() + listOfNotNull(node)).distinct()
+            }
+        }
+        discard?.invoke()
+        toRecycle.forEach { SelectToSpeakServiceAbstract.recycleCompat(it) }
+        if (ownsEvent) SelectToSpeakServiceAbstract.recycleEventCompat(event)
+    }
+
+    // ===== 原 data class 的成员，按原构造参数的顺序；component3 / component4 / copy 会触发 rootNode 加载 =====
+
+    operator fun component1(): AccessibilityService = service
+    operator fun component2(): AccessibilityEvent = event
+    operator fun component3(): AccessibilityNodeInfo? = rootNode
+    operator fun component4(): List<AccessibilityNodeInfo> = nodeInfoList
+    operator fun component5(): String = pkgName
+    operator fun component6(): String = className
+    operator fun component7(): Int = fromIndex
+    operator fun component8(): Int = toIndex
+    operator fun component9(): Int = scrollx
+    operator fun component10(): Int = scrolly
+
+    /**
+     * 返回立即加载的副本，与原对象共用节点与事件：原对象 release 之后副本里的节点也随之失效，需要长期持有请先 [claim]
+     */
+    fun copy(
+        service: AccessibilityService = this.service,
+        event: AccessibilityEvent = this.event,
+        rootNode: AccessibilityNodeInfo? = this.rootNode,
+        nodeInfoList: List<AccessibilityNodeInfo> = this.nodeInfoList,
+        pkgName: String = this.pkgName,
+        className: String = this.className,
+        fromIndex: Int = this.fromIndex,
+        toIndex: Int = this.toIndex,
+        scrollx: Int = this.scrollx,
+        scrolly: Int = this.scrolly
+    ): XPQEventData = XPQEventData(
+        service, event, pkgName, className, fromIndex, toIndex, scrollx, scrolly, null, null, nodeInfoList, false
+    ).also {
+        it.node = rootNode
+        it.loaded = true
+    }
+
+    /**
+     * 只比较事件本身的字段，不比较节点：比较 / 放进集合时不触发节点加载，release 前后结果也不变
+     */
+    override fun equals(other: Any?): Boolean {
+        if (this === other) return true
+        if (other !is XPQEventData) return false
+        return service == other.service &&
+            event == other.event &&
+            pkgName == other.pkgName &&
+            className == other.className &&
+            fromIndex == other.fromIndex &&
+            toIndex == other.toIndex &&
+            scrollx == other.scrollx &&
+            scrolly == other.scrolly
+    }
+
+    override fun hashCode(): Int {
+        var result = service.hashCode()
+        result = 31 * result + event.hashCode()
+        result = 31 * result + pkgName.hashCode()
+        result = 31 * result + className.hashCode()
+        result = 31 * result + fromIndex
+        result = 31 * result + toIndex
+        result = 31 * result + scrollx
+        result = 31 * result + scrolly
+        return result
+    }
+
+    override fun toString(): String =
+        "XPQEventData(service=$service, event=$event, isNodeLoaded=$isNodeLoaded, " +
+            "pkgName=$pkgName, className=$className, fromIndex=$fromIndex, toIndex=$toIndex, scrollx=$scrollx, scrolly=$scrolly)"
+
+    companion object {
+        /**
+         * 延迟加载的写法：[loader] 在处理器第一次访问 rootNode 时调用（在处理线程上），返回的节点归 XPQEventData 所有；
+         * [onDiscard] 在节点从未被访问时调用，用于释放 loader 持有的资源；
+         * [recycleEvent] 为 true 表示 [event] 是调用方复制的副本，release 时一起回收（处理器不要在返回后继续持有 event）
+         */
+        @JvmStatic
+        fun lazy(
+            service: AccessibilityService,
+            event: AccessibilityEvent,
+            pkgName: String,
+            className: String = "",
+            fromIndex: Int = 0,
+            toIndex: Int = 0,
+            scrollx: Int = 0,
+            scrolly: Int = 0,
+            loader: () -> AccessibilityNodeInfo?,
+            onDiscard: (() -> Unit)? = null,
+            recycleEvent: Boolean = false
+        ): XPQEventData = XPQEventData(
+            service, event, pkgName, className, fromIndex, toIndex, scrollx, scrolly, loader, onDiscard, null, recycleEvent
+        )
+    }
+}
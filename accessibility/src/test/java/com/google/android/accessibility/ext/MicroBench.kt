@@ -0,0 +1,63 @@
+package com.google.android.accessibility.ext
+
+import kotlin.math.roundToLong
+
+/**
+ * 单元测试源码集里各个微基准共用的计时与汇总
+ *
+ * 默认（普通 test 任务）只跑 [rounds] 缩小后的轮次，当作冒烟测试，保证基准代码和其中的一致性检查一直能跑通；
+ * 带 -Pbenchmark 运行时按完整轮次计时并打印报告：
+ * ```
+ * ./gradlew :accessibility:testDebugUnitTest -Pbenchmark --tests '*MicroBenchmarkTest'
+ * ```
+ * 入口见 MicroBenchmarkTest。
+ */
+object MicroBench {
+
+    private const val SMOKE_DIVISOR = 1000
+
+    /** 是否按完整轮次运行（gradle 传入的 benchmark 系统属性） */
+    @JvmStatic
+    val full: Boolean = System.getProperty("benchmark")?.toBoolean() ?: false
+
+    /**
+     * 完整运行时返回 [full]，冒烟时缩小到 1/[SMOKE_DIVISOR]（至少 1）
+     */
+    @JvmStatic
+    fun rounds(full: Int): Int = if (this.full) full else (full / SMOKE_DIVISOR).coerceAtLeast(1)
+
+    /**
+     * 预热 [warmupRounds] 轮后计时 [rounds] 轮，返回每次操作的平均耗时（ns），每轮算 [opsPerRound] 次操作
+     */
+    inline fun nsPerOp(warmupRounds: Int, rounds: Int, opsPerRound: Int = 1, block: () -> Unit): Double {
+        repeat(warmupRounds) { block() }
+        val start = System.nanoTime()
+        repeat(rounds) { block() }
+        return (System.nanoTime() - start).toDouble() / rounds / opsPerRound
+    }
+
+    /**
+     * 一份基准报告：标题一行，之后每种实现一行 “名称 : 耗时 单位”
+     */
+    class Report(private val title: String) {
+        private val rows = ArrayList<Pair<String, String>>()
+
+        fun row(label: String, ns: Double, unit: String): Report {
+            rows.add(label to "${(ns * 10).roundToLong() / 10.0} $unit")
+            return this
+        }
+
+        fun note(label: String, value: Any): Report {
+            rows.add(label to value.toString())
+            return this
+        }
+
+        override fun toString(): String {
+            val width = rows.maxOfOrNull { it.first.length } ?: 0
+            return buildString {
+                append(title)
+                for ((label, value) in rows) append('\n').append(label.padEnd(width)).append(" : ").append(value)
+            }
+        }
+    }
+}
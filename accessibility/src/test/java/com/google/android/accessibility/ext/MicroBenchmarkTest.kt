@@ -0,0 +1,30 @@
+package com.google.android.accessibility.ext
+
+import com.google.android.accessibility.ext.acc.TextMatcherBenchmark
+import com.google.android.accessibility.ext.utils.HumanPathBenchmark
+import com.google.android.accessibility.ext.utils.verificationcode.OtpDedupBenchmark
+import com.google.android.accessibility.ext.utils.verificationcode.OtpParserBenchmark
+import org.junit.Test
+
+/**
+ * 统一运行单元测试源码集里的微基准：默认冒烟（轮次缩小，只校验能跑通和一致性检查），
+ * -Pbenchmark 时完整计时，见 [MicroBench]
+ */
+class MicroBenchmarkTest {
+
+    @Test
+    fun textMatcher() = report(TextMatcherBenchmark.run())
+
+    @Test
+    fun otpDedup() = report(OtpDedupBenchmark.run())
+
+    @Test
+    fun otpParser() = report(OtpParserBenchmark.run())
+
+    @Test
+    fun humanPath() = report(HumanPathBenchmark.run())
+
+    private fun report(result: String) {
+        if (MicroBench.full) println(result)
+    }
+}
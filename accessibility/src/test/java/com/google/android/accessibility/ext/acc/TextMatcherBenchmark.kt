@@ -0,0 +1,112 @@
+package com.google.android.accessibility.ext.acc
+
+import com.google.android.accessibility.ext.MicroBench
+
+/**
+ * [TextMatcher] 的 JVM 微基准，由 MicroBenchmarkTest 运行
+ *
+ * 构造一棵合成的 5k 节点树，对比：
+ *  - legacy：原 findNodeByTextOrDesc 的写法，每个节点 text / desc 各编译一次正则
+ *  - regexOnce：每次查询编译一次正则
+ *  - matcher：TextMatcher 手写快速路径
+ *
+ * 关键字放在最后一个节点，保证每轮都完整遍历整棵树。
+ */
+object TextMatcherBenchmark {
+
+    private class SynthNode(
+        val text: String?,
+        val desc: String?,
+        val children: Array<SynthNode?>
+    )
+
+    private const val KEYWORD = "发送"
+
+    @JvmStatic
+    @JvmOverloads
+    fun run(
+        nodeCount: Int = 5000,
+        warmupRounds: Int = MicroBench.rounds(20),
+        rounds: Int = MicroBench.rounds(50)
+    ): String {
+        val root = buildTree(nodeCount)
+        val legacy = measure(root, nodeCount, warmupRounds, rounds) { findLegacy(it) }
+        val regexOnce = measure(root, nodeCount, warmupRounds, rounds) {
+            val regex = Regex("^${Regex.escape(KEYWORD)}(\\(\\d+\\))?$")
+            find(it) { v -> v != null && regex.matches(v) }
+        }
+        val matcher = measure(root, nodeCount, warmupRounds, rounds) {
+            val m = TextMatcher.of(KEYWORD, MatchMode.SEND_WITH_COUNT)
+            find(it) { v -> m.matches(v) }
+        }
+        return MicroBench.Report("TextMatcherBenchmark nodes=$nodeCount rounds=$rounds")
+            .row("legacy", legacy, "ns/node")
+            .row("regexOnce", regexOnce, "ns/node")
+            .row("matcher", matcher, "ns/node")
+            .toString()
+    }
+
+    /**
+     * 返回每个节点的平均耗时（ns）；每一轮都必须找到关键字
+     */
+    private inline fun measure(
+        root: SynthNode,
+        nodeCount: Int,
+        warmupRounds: Int,
+        rounds: Int,
+        crossinline block: (SynthNode) -> SynthNode?
+    ): Double {
+        var sink = 0
+        val ns = MicroBench.nsPerOp(warmupRounds, rounds, nodeCount) { if (block(root) != null) sink++ }
+        check(sink == warmupRounds + rounds) { "keyword not found" }
+        return ns
+    }
+
+    private fun findLegacy(root: SynthNode): SynthNode? = find(root) { value ->
+        value != null && value.matches(Regex("^${Regex.escape(KEYWORD)}(\\(\\d+\\))?$"))
+    }
+
+    private inline fun find(root: SynthNode, match: (String?) -> Boolean): SynthNode? {
+        val stack = ArrayDeque<SynthNode>()
+        stack.addLast(root)
+        while (stack.isNotEmpty()) {
+            val node = stack.removeLast()
+            if (match(node.text) || match(node.desc)) return node
+            for (i in node.children.indices.reversed()) {
+                node.children[i]?.let { stack.addLast(it) }
+            }
+        }
+        return null
+    }
+
+    /**
+     * 每个节点最多 8 个子节点，先序最后一个节点的 text 为 “发送(12)”
+     */
+    private fun buildTree(nodeCount: Int): SynthNode {
+        val texts = arrayOfNulls<String>(nodeCount)
+        val descs = arrayOfNulls<String>(nodeCount)
+        for (i in 0 until nodeCount) {
+            texts[i] = when (i % 4) {
+                0 -> null
+                1 -> "发送消息$i"
+                2 -> "联系人$i"
+                else -> "发($i)"
+            }
+            descs[i] = if (i % 3 == 0) "按钮$i" else null
+        }
+        var next = 1
+        fun build(index: Int, depth: Int): SynthNode {
+            val childCount = if (depth > 6) 0 else minOf(8, nodeCount - next)
+            val children = arrayOfNulls<SynthNode>(childCount)
+            val childIndexes = IntArray(childCount) { next++ }
+            for (c in 0 until childCount) {
+                children[c] = build(childIndexes[c], depth + 1)
+            }
+            return SynthNode(texts[index], descs[index], children)
+        }
+        val root = build(0, 0)
+        // 关键字挂在根节点的最后一个子节点上，即先序遍历的最后一个节点
+        val target = SynthNode("$KEYWORD(12)", null, emptyArray())
+        return SynthNode(root.text, root.desc, root.children + target)
+    }
+}
@@ -0,0 +1,56 @@
+package com.google.android.accessibility.ext.utils
+
+import com.google.android.accessibility.ext.MicroBench
+import com.google.android.accessibility.ext.utils.HumanPathGeneratorTest.Companion.DPI
+import com.google.android.accessibility.ext.utils.HumanPathGeneratorTest.Companion.HEIGHT
+import com.google.android.accessibility.ext.utils.HumanPathGeneratorTest.Companion.WIDTH
+
+/**
+ * [HumanPathGenerator] 的 JVM 微基准（固定种子，可复现），由 MicroBenchmarkTest 运行
+ *
+ * 两种实现同一种子下输出一致，见 [HumanPathGeneratorTest]。对比：
+ *  - legacy：原 createNaturalSwipePathInfo + computeAutoDuration 的计算方式，每次重算全部参数并拼接日志
+ *    （不含真机上的 getScreenSize / displayMetrics 查询，实际差距比这里更大）
+ *  - template：缓存模板 + 抖动
+ */
+object HumanPathBenchmark {
+
+    @JvmStatic
+    @JvmOverloads
+    fun run(
+        warmupRounds: Int = MicroBench.rounds(200_000),
+        rounds: Int = MicroBench.rounds(1_000_000),
+        seed: Long = 42L
+    ): String {
+        val generator = HumanPathGenerator(WIDTH, HEIGHT, DPI)
+        val out = FloatArray(10)
+        var sink = 0L
+        val legacyRnd = HumanRandom(seed)
+        val templateRnd = HumanRandom(seed)
+        val legacyNs = MicroBench.nsPerOp(warmupRounds, rounds) { sink += legacy(legacyRnd, out) }
+        val templateNs = MicroBench.nsPerOp(warmupRounds, rounds) { sink += template(generator, templateRnd, out) }
+        // 时长在 [80, 900] 内，总和为正说明每次调用都真的算了
+        check(sink >= 80L * 2 * (warmupRounds + rounds))
+        return MicroBench.Report("HumanPathBenchmark ${WIDTH}x$HEIGHT@$DPI rounds=$rounds")
+            .row("legacy", legacyNs, "ns/op")
+            .row("template", templateNs, "ns/op")
+            .toString()
+    }
+
+    private fun template(generator: HumanPathGenerator, rnd: HumanRandom, out: FloatArray): Long {
+        val t = generator.template(HumanPathGenerator.DEFAULT_CURVE, 0f, HumanPathGenerator.DEFAULT_JITTER)
+        t.sample(rnd, out)
+        return t.duration(out[1] - out[7], 80L, 900L)
+    }
+
+    /**
+     * 原实现：计算同 [HumanPathGeneratorTest.legacySwipe]，另外每次拼两条日志
+     */
+    private fun legacy(rnd: HumanRandom, out: FloatArray): Long {
+        val log1 = "设备的宽度= " + WIDTH + ", 高度= " + HEIGHT
+        val duration = HumanPathGeneratorTest.legacySwipe(rnd, out)
+        val log2 = "模拟人手轻微抖动轨迹: start=(${out[0]},${out[1]}) end=(${out[6]},${out[7]}) " +
+            "cp1=(${out[2]},${out[3]}) cp2=(${out[4]},${out[5]})"
+        return duration + (log1.length + log2.length and 0)
+    }
+}
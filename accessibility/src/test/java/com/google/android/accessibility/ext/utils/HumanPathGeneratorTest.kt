@@ -0,0 +1,155 @@
+package com.google.android.accessibility.ext.utils
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNotSame
+import org.junit.Assert.assertSame
+import org.junit.Test
+import kotlin.math.max
+import kotlin.math.roundToLong
+
+/**
+ * 固定种子可复现，以及模板缓存的 key / 参数一致
+ */
+class HumanPathGeneratorTest {
+
+    private fun swipes(seed: Long, curve: Float, offset: Float, jitter: Float, count: Int): Pair<List<FloatArray>, List<Long>> {
+        val generator = HumanPathGenerator(WIDTH, HEIGHT, DPI)
+        val rnd = HumanRandom(seed)
+        val paths = ArrayList<FloatArray>()
+        val durations = ArrayList<Long>()
+        repeat(count) {
+            val t = generator.template(curve, offset, jitter)
+            val out = FloatArray(10)
+            t.sample(rnd, out)
+            paths.add(out)
+            durations.add(t.duration(out[1] - out[7], 80L, 900L))
+        }
+        return paths to durations
+    }
+
+    private fun taps(seed: Long, count: Int): List<FloatArray> {
+        val generator = HumanPathGenerator(WIDTH, HEIGHT, DPI)
+        val rnd = HumanRandom(seed)
+        return List(count) {
+            val out = FloatArray(8)
+            val n = generator.sampleTap(rnd, 540f, 1200f, 7.0, 1.6, 1..3, out)
+            out.copyOf(n * 2)
+        }
+    }
+
+    @Test
+    fun sameSeedGivesSamePathAndDuration() {
+        for ((curve, offset, jitter) in listOf(
+            Triple(HumanPathGenerator.DEFAULT_CURVE, 0f, HumanPathGenerator.DEFAULT_JITTER),
+            Triple(0.3f, -0.2f, 0.05f),
+            Triple(0f, 0.4f, 0f)
+        )) {
+            val (pathsA, durationsA) = swipes(42L, curve, offset, jitter, 200)
+            val (pathsB, durationsB) = swipes(42L, curve, offset, jitter, 200)
+            pathsA.indices.forEach { assertArrayEquals("curve=$curve sample=$it", pathsA[it], pathsB[it], 0f) }
+            assertEquals(durationsA, durationsB)
+        }
+        val (other, _) = swipes(43L, HumanPathGenerator.DEFAULT_CURVE, 0f, HumanPathGenerator.DEFAULT_JITTER, 1)
+        val (first, _) = swipes(42L, HumanPathGenerator.DEFAULT_CURVE, 0f, HumanPathGenerator.DEFAULT_JITTER, 1)
+        assertFalse(other[0].contentEquals(first[0]))
+    }
+
+    @Test
+    fun sameSeedGivesSameTapPoints() {
+        val a = taps(7L, 200)
+        val b = taps(7L, 200)
+        a.indices.forEach { assertArrayEquals("tap=$it", a[it], b[it], 0f) }
+    }
+
+    @Test
+    fun templateMatchesLegacyComputation() {
+        val generator = HumanPathGenerator(WIDTH, HEIGHT, DPI)
+        val a = HumanRandom(42L)
+        val b = HumanRandom(42L)
+        val legacy = FloatArray(10)
+        val sampled = FloatArray(10)
+        repeat(10_000) {
+            val expected = legacySwipe(a, legacy)
+            val t = generator.template(HumanPathGenerator.DEFAULT_CURVE, 0f, HumanPathGenerator.DEFAULT_JITTER)
+            t.sample(b, sampled)
+            assertEquals(expected, t.duration(sampled[1] - sampled[7], 80L, 900L))
+            assertArrayEquals(legacy, sampled, 0.01f)
+        }
+    }
+
+    @Test
+    fun equivalentParametersShareOneTemplate() {
+        val generator = HumanPathGenerator(WIDTH, HEIGHT, DPI)
+        // 超出范围的按上限，同一千分位的取整后相同
+        assertSame(generator.template(0.5f, 1f, 0.1f), generator.template(0.9f, 3f, 0.4f))
+        assertSame(generator.template(0.123f, 0f, 0.02f), generator.template(0.1234f, 0f, 0.0201f))
+        // 模板用取整后的参数建，与谁先请求无关
+        val first = HumanPathGenerator(WIDTH, HEIGHT, DPI).template(0.1236f, 0.5004f, 0.02f)
+        val second = HumanPathGenerator(WIDTH, HEIGHT, DPI).template(0.1244f, 0.4996f, 0.02f)
+        assertEquals(0.124f, first.curveFactor, 0f)
+        assertEquals(first.curveFactor, second.curveFactor, 0f)
+        assertEquals(first.endX, second.endX, 0f)
+        assertEquals(first.baseDurationMs, second.baseDurationMs)
+    }
+
+    @Test
+    fun templateCacheIsBounded() {
+        val generator = HumanPathGenerator(WIDTH, HEIGHT, DPI)
+        val oldest = generator.template(0f, -1f, 0f)
+        for (i in 1..HumanPathGenerator.MAX_TEMPLATES) generator.template(i / 1000f, 0f, 0f)
+        val recent = generator.template(HumanPathGenerator.MAX_TEMPLATES / 1000f, 0f, 0f)
+        assertSame(recent, generator.template(HumanPathGenerator.MAX_TEMPLATES / 1000f, 0f, 0f))
+        assertNotSame(oldest, generator.template(0f, -1f, 0f))
+    }
+
+    companion object {
+        const val WIDTH = 1080
+        const val HEIGHT = 2400
+        const val DPI = 440
+
+        /**
+         * 原 createNaturalSwipePathInfo + computeAutoDuration 的计算过程（同样的抖动顺序），
+         * 点写入 [out]（布局同 [SwipeTemplate.sample]），返回时长
+         */
+        @JvmStatic
+        fun legacySwipe(rnd: HumanRandom, out: FloatArray): Long {
+            val screenWidth = WIDTH
+            val screenHeight = HEIGHT
+            val curveIntensity = HumanPathGenerator.DEFAULT_CURVE
+            val horizontalOffsetRatio = 0f
+            val startXBase = screenWidth / 2f
+            val startYBase = screenHeight * 0.88f
+            val endXBase = screenWidth / 2f + screenWidth * horizontalOffsetRatio
+            val endYBase = screenHeight * 0.30f
+            val curveFactor = curveIntensity.coerceIn(0f, 0.5f)
+            val jitterFactor = HumanPathGenerator.DEFAULT_JITTER.coerceIn(0f, 0.1f)
+            fun jitter(amountRatio: Float) = rnd.symmetric() * amountRatio
+
+            val startX = startXBase + screenWidth * jitter(jitterFactor)
+            val startY = startYBase + screenHeight * jitter(jitterFactor * 0.5f)
+            val endX = endXBase + screenWidth * jitter(jitterFactor * 0.5f)
+            val endY = endYBase + screenHeight * jitter(jitterFactor * 0.2f)
+            val distance = (startY - endY).coerceAtLeast(1f)
+            out[0] = startX
+            out[1] = startY
+            out[2] = startX + screenWidth * (0.05f * curveFactor) + screenWidth * jitter(jitterFactor)
+            out[3] = startY - distance * 0.33f - screenHeight * (0.02f * curveFactor)
+            out[4] = endX - screenWidth * (0.05f * curveFactor) + screenWidth * jitter(jitterFactor)
+            out[5] = startY - distance * 0.66f + screenHeight * (0.01f * curveFactor)
+            out[6] = endX
+            out[7] = endY
+            out[8] = (startX + endX) / 2f + screenWidth * jitter(jitterFactor * 0.3f)
+            out[9] = (startY + endY) / 2f + screenHeight * jitter(jitterFactor * 0.3f)
+
+            val dist = max(1f, startY - endY)
+            val densityFactor = (DPI / 420f).coerceIn(0.7f, 1.4f)
+            var speedPxPerMs = 2.5f * densityFactor
+            val distFactor = (dist / 1000f).coerceIn(0.6f, 2.0f)
+            speedPxPerMs *= (1.0f + (distFactor - 1f) * 0.2f)
+            speedPxPerMs /= 1f + (curveIntensity.coerceIn(0f, 0.5f) * 0.6f)
+            return (dist / speedPxPerMs).roundToLong().coerceIn(80L, 900L)
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.google.android.accessibility.ext.utils.verificationcode
+
+import com.google.android.accessibility.ext.MicroBench
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * [OtpDedupStore] 的并发微基准，由 MicroBenchmarkTest 运行
+ *
+ * 多个生产者线程同时上报（包名 × 验证码 随机，约一半是窗口内重复），对比：
+ *  - legacy：原 OtpCenter 的 LinkedHashMap + 每次全表 cleanup（加锁后才线程安全）
+ *  - store：OtpDedupStore
+ */
+object OtpDedupBenchmark {
+
+    private const val WINDOW_MS = 5000L
+
+    private interface Dedup {
+        fun firstSeen(pkg: String, code: String, now: Long): Boolean
+    }
+
+    private class Legacy : Dedup {
+        private val recent = LinkedHashMap<String, Long>()
+
+        @Synchronized
+        override fun firstSeen(pkg: String, code: String, now: Long): Boolean {
+            val key = "$pkg:$code"
+            val old = recent[key]
+            if (old != null && now - old < WINDOW_MS) return false
+            recent[key] = now
+            val it = recent.entries.iterator()
+            while (it.hasNext()) {
+                if (now - it.next().value > WINDOW_MS) it.remove()
+            }
+            return true
+        }
+    }
+
+    private class Store : Dedup {
+        private val store = OtpDedupStore(256, WINDOW_MS)
+        override fun firstSeen(pkg: String, code: String, now: Long) = store.firstSeen(pkg, code, now)
+    }
+
+    @JvmStatic
+    @JvmOverloads
+    fun run(
+        threads: Int = 4,
+        opsPerThread: Int = MicroBench.rounds(200_000),
+        rounds: Int = MicroBench.rounds(5)
+    ): String {
+        val packages = Array(16) { "com.example.app$it" }
+        val codes = Array(256) { (100000 + it * 37).toString() }
+        // 预热
+        measure(Legacy(), threads, opsPerThread / 4, packages, codes)
+        measure(Store(), threads, opsPerThread / 4, packages, codes)
+        var legacy = 0.0
+        var store = 0.0
+        repeat(rounds) {
+            legacy += measure(Legacy(), threads, opsPerThread, packages, codes)
+            store += measure(Store(), threads, opsPerThread, packages, codes)
+        }
+        return MicroBench.Report("OtpDedupBenchmark threads=$threads ops/thread=$opsPerThread rounds=$rounds")
+            .row("legacy", legacy / rounds, "ns/op")
+            .row("store", store / rounds, "ns/op")
+            .toString()
+    }
+
+    /**
+     * 返回平均每次上报耗时（ns，按总墙钟时间 / 总次数）
+     */
+    private fun measure(
+        dedup: Dedup,
+        threads: Int,
+        opsPerThread: Int,
+        packages: Array<String>,
+        codes: Array<String>
+    ): Double {
+        val start = CountDownLatch(1)
+        val done = CountDownLatch(threads)
+        val accepted = AtomicLong()
+        // 用一个递增的逻辑时钟代替 currentTimeMillis，保证每轮窗口行为一致
+        val clock = AtomicLong()
+        repeat(threads) { t ->
+            Thread {
+                var seed = 0x9E3779B9L * (t + 1)
+                var ok = 0L
+                start.await()
+                for (i in 0 until opsPerThread) {
+                    seed = seed * 6364136223846793005L + 1442695040888963407L
+                    val r = (seed ushr 33).toInt()
+                    val pkg = packages[r and 15]
+                    val code = codes[(r ushr 4) and 255]
+                    val now = clock.incrementAndGet() / 64
+                    if (dedup.firstSeen(pkg, code, now)) ok++
+                }
+                accepted.addAndGet(ok)
+                done.countDown()
+            }.start()
+        }
+        val begin = System.nanoTime()
+        start.countDown()
+        done.await()
+        val cost = System.nanoTime() - begin
+        check(accepted.get() > 0)
+        return cost.toDouble() / (threads.toLong() * opsPerThread)
+    }
+}
@@ -0,0 +1,99 @@
+package com.google.android.accessibility.ext.utils.verificationcode
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.Random
+
+/**
+ * [OtpDedupStore] 对照 LinkedHashMap 模型的随机测试
+ *
+ * 模型即原 OtpCenter 的语义加上容量上限：按插入顺序保存 key -> 首次时间，
+ * 超过窗口的过期，满了淘汰最旧的，窗口内重复不刷新时间。
+ */
+class OtpDedupStoreTest {
+
+    private class Model(private val capacity: Int, private val windowMs: Long) {
+        val recent = LinkedHashMap<String, Long>()
+        var suppressed = 0L
+
+        fun firstSeen(pkg: String?, code: String, now: Long): Boolean {
+            val it = recent.entries.iterator()
+            while (it.hasNext()) {
+                if (now - it.next().value >= windowMs) it.remove()
+            }
+            val key = "${pkg ?: "unknown"}:$code"
+            if (recent.containsKey(key)) {
+                suppressed++
+                return false
+            }
+            if (recent.size == capacity) recent.remove(recent.keys.first())
+            recent[key] = now
+            return true
+        }
+    }
+
+    @Test
+    fun matchesModelUnderRandomInsertAndExpire() {
+        for (capacity in intArrayOf(1, 2, 7, 16, 64)) {
+            for (seed in 1L..20L) {
+                runAgainstModel(capacity, windowMs = 100L, seed = seed, ops = 5000)
+            }
+        }
+    }
+
+    @Test
+    fun duplicateInsideWindowIsSuppressedAndExpiresAfter() {
+        val store = OtpDedupStore(capacity = 4, windowMs = 100L)
+        assertTrue(store.firstSeen("com.a", "123456", 0L))
+        assertFalse(store.firstSeen("com.a", "123456", 99L))
+        // 重复不刷新时间，窗口从第一次算起
+        assertTrue(store.firstSeen("com.a", "123456", 100L))
+        // 包名不同不算重复，null 包名与 "unknown" 等价
+        assertTrue(store.firstSeen("com.b", "123456", 100L))
+        assertTrue(store.firstSeen(null, "123456", 100L))
+        assertFalse(store.firstSeen("unknown", "123456", 100L))
+        assertEquals(2L, store.suppressedCount)
+    }
+
+    @Test
+    fun fullStoreEvictsOldest() {
+        val store = OtpDedupStore(capacity = 2, windowMs = 1000L)
+        assertTrue(store.firstSeen("p", "1", 0L))
+        assertTrue(store.firstSeen("p", "2", 1L))
+        assertTrue(store.firstSeen("p", "3", 2L))
+        assertEquals(2, store.size)
+        assertTrue(store.firstSeen("p", "1", 3L))
+        assertFalse(store.firstSeen("p", "3", 4L))
+    }
+
+    private fun runAgainstModel(capacity: Int, windowMs: Long, seed: Long, ops: Int) {
+        val rnd = Random(seed)
+        val store = OtpDedupStore(capacity, windowMs)
+        val model = Model(capacity, windowMs)
+        // key 空间是容量的几倍，既有窗口内重复，也会触发满容量淘汰
+        val packages = arrayOf(null, "com.a", "com.b", "com.c")
+        val codes = Array(capacity * 2 + 1) { (100000 + it).toString() }
+        var now = 0L
+        for (op in 0 until ops) {
+            now += when (rnd.nextInt(10)) {
+                0 -> windowMs + rnd.nextInt(windowMs.toInt())  // 整体过期
+                1, 2 -> 0L                                      // 同一时刻多条
+                else -> rnd.nextInt((windowMs / 4).toInt()).toLong()
+            }
+            if (rnd.nextInt(1000) == 0) {
+                store.clear()
+                model.recent.clear()
+                continue
+            }
+            val pkg = packages[rnd.nextInt(packages.size)]
+            val code = codes[rnd.nextInt(codes.size)]
+            val expected = model.firstSeen(pkg, code, now)
+            assertEquals("capacity=$capacity seed=$seed op=$op pkg=$pkg code=$code now=$now",
+                expected, store.firstSeen(pkg, code, now))
+            assertEquals("size capacity=$capacity seed=$seed op=$op", model.recent.size, store.size)
+        }
+        assertEquals(model.suppressed, store.suppressedCount)
+    }
+}
@@ -0,0 +1,74 @@
+package com.google.android.accessibility.ext.utils.verificationcode
+
+import com.google.android.accessibility.ext.MicroBench
+import java.util.regex.Pattern
+
+/**
+ * [OtpParser] 的 JVM 微基准，由 MicroBenchmarkTest 运行
+ *
+ * 语料和结果一致性见 [OtpScannerTest]，这里只计时，对比：
+ *  - legacy：原实现，每次 replace + Pattern.compile
+ *  - regexOnce：正则只编译一次
+ *  - scanner：OtpScanner 单次扫描
+ *  - engine：OtpParser.parse（OtpRuleEngine 选规则 + 扫描 + 统计）
+ */
+object OtpParserBenchmark {
+
+    @JvmStatic
+    @JvmOverloads
+    fun run(
+        warmupRounds: Int = MicroBench.rounds(20_000),
+        rounds: Int = MicroBench.rounds(100_000)
+    ): String {
+        val corpus = OtpScannerTest.CORPUS
+        val scanner = OtpScanner(OtpLocale.ZH_CN)
+        val compiled = OtpParser.patterns.map { Pattern.compile(it) }
+
+        val legacy: (String) -> String? = { content -> OtpScannerTest.parseLegacy(content) }
+        val regexOnce: (String) -> String? = { content ->
+            if (!OtpParser.verificationKeywords.any { content.contains(it) }) null
+            else {
+                val clean = content.replace(" ", "")
+                var found: String? = null
+                for (p in compiled) {
+                    val m = p.matcher(clean)
+                    if (m.find()) {
+                        found = m.group(0)
+                        break
+                    }
+                }
+                found
+            }
+        }
+        val scan: (String) -> String? = { content -> scanner.parse(content) }
+        val engine: (String) -> String? = { content -> OtpParser.parse(content).second }
+
+        val tLegacy = measure(corpus, warmupRounds, rounds, legacy)
+        val tRegex = measure(corpus, warmupRounds, rounds, regexOnce)
+        val tScan = measure(corpus, warmupRounds, rounds, scan)
+        val tEngine = measure(corpus, warmupRounds, rounds, engine)
+        return MicroBench.Report("OtpParserBenchmark texts=${corpus.size} rounds=$rounds")
+            .row("legacy", tLegacy, "ns/text")
+            .row("regexOnce", tRegex, "ns/text")
+            .row("scanner", tScan, "ns/text")
+            .row("engine", tEngine, "ns/text")
+            .toString()
+    }
+
+    /**
+     * 返回每条正文的平均耗时（ns）；每轮命中的验证码总长必须相同，防止调用被优化掉
+     */
+    private fun measure(
+        corpus: List<String>,
+        warmupRounds: Int,
+        rounds: Int,
+        parse: (String) -> String?
+    ): Double {
+        var sink = 0L
+        val ns = MicroBench.nsPerOp(warmupRounds, rounds, corpus.size) {
+            for (t in corpus) sink += parse(t)?.length ?: 0
+        }
+        check(sink % (warmupRounds + rounds) == 0L)
+        return ns
+    }
+}
@@ -0,0 +1,39 @@
+package com.google.android.accessibility.ext.utils.verificationcode
+
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Test
+
+/**
+ * 替换验证码规则时，默认取件码规则的去留
+ */
+class OtpRuleEngineTest {
+
+    private val parcel = "【顺丰速运】您的快件已到达丰巢柜，取件码 20483312，请及时领取。"
+
+    @After
+    fun tearDown() {
+        OtpRuleEngine.reset()
+    }
+
+    @Test
+    fun otpOnlyRulesKeepBuiltInPackageRules() {
+        OtpRuleEngine.setRules(listOf(OtpRule(id = "custom_otp", keywords = listOf("口令"), anchors = listOf("口令是"))))
+        val match = OtpRuleEngine.match(parcel, type = OtpRule.TYPE_PACKAGE)
+        assertEquals("20483312", match?.code)
+        assertEquals("丰巢取件码", match?.label)
+        // 验证码规则确实换掉了
+        assertNull(OtpRuleEngine.match("您的验证码是 386214"))
+        assertEquals("386214", OtpRuleEngine.match("您的口令是 386214")?.code)
+    }
+
+    @Test
+    fun explicitPackageRuleReplacesBuiltIn() {
+        OtpRuleEngine.setRules(listOf(
+            OtpRule(id = "locker", type = OtpRule.TYPE_PACKAGE, label = "柜号", keywords = listOf("柜号"))
+        ))
+        assertNull(OtpRuleEngine.match(parcel, type = OtpRule.TYPE_PACKAGE))
+        assertEquals(listOf("locker"), OtpRuleEngine.rules.map { it.id })
+    }
+}
@@ -0,0 +1,89 @@
+package com.google.android.accessibility.ext.utils.verificationcode
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import java.util.regex.Pattern
+
+/**
+ * [OtpScanner] / [OtpParser] 与原正则实现在同一份语料上的结果必须一致
+ *
+ * 语料 [CORPUS] 同时给 OtpParserBenchmark 计时用。
+ */
+class OtpScannerTest {
+
+    @Before
+    fun setUp() {
+        // OtpParser 走全局规则，别的测试改过规则也不影响这里
+        OtpRuleEngine.reset()
+    }
+
+    @Test
+    fun corpusHasBothCodesAndPlainTexts() {
+        val hits = CORPUS.count { parseLegacy(it) != null }
+        assertTrue("hits=$hits", hits in 1 until CORPUS.size)
+    }
+
+    @Test
+    fun scannerMatchesLegacy() {
+        val scanner = OtpScanner(OtpLocale.ZH_CN)
+        for (text in CORPUS) {
+            assertEquals(text, parseLegacy(text), scanner.parse(text))
+        }
+    }
+
+    @Test
+    fun engineMatchesLegacy() {
+        for (text in CORPUS) {
+            val expected = parseLegacy(text)
+            val (found, code) = OtpParser.parse(text)
+            assertEquals(text, expected, code)
+            assertEquals(text, expected != null, found)
+        }
+    }
+
+    companion object {
+
+        /**
+         * 常见短信 / 通知正文，含验证码与不含验证码的各一半
+         */
+        @JvmField
+        val CORPUS = listOf(
+            "【招商银行】您的验证码是 386214，5分钟内有效，请勿泄露。",
+            "【支付宝】验证码：902316，您正在进行身份验证，打死不要告诉别人！",
+            "【微信】你的验证码为 5541，该验证码5分钟内有效。",
+            "【京东】验证码 7 7 3 1 0 2 ，用于登录，10分钟内有效。",
+            "【中国移动】您本次的动态密码为：260093，请在页面中输入完成验证。",
+            "【美团】342190（登录验证码），请在5分钟内完成验证，如非本人操作请忽略。",
+            "【12306】校验码:4471，请在10分钟内完成购票。",
+            "【饿了么】您的授权码是621357，30分钟内有效。",
+            "【网易】随机码 990123 用于修改密码，2分钟内有效。",
+            "【工商银行】您尾号8842的卡于06月12日消费人民币128.00元，余额3542.16元。",
+            "【顺丰速运】您的快件SF1402398822已到达菜鸟驿站，取件码 6-2-3011。",
+            "【滴滴出行】您的行程已结束，本次费用 23.6 元，感谢使用。",
+            "张三：今晚八点开会，记得带上 2024 年的报表。",
+            "【拼多多】您关注的商品降价啦，立即查看 https://t.cn/A6x8Kz2",
+            "群聊[家庭]：妈妈: 周末回家吃饭吗",
+            "【中国联通】您本月已用流量 12.5GB，剩余 7.5GB。",
+            "Your verification code is 482913. It expires in 10 minutes.",
+            "【淘宝】验证码 1 2 3 4 5 6，您正在登录，若非本人操作请忽略。",
+            "【抖音】验证码7781，用于手机号登录，5分钟内有效，请勿告诉他人。",
+            "【建设银行】您的账户于 2024-06-12 14:22 收入 5000.00 元。"
+        )
+
+        /**
+         * 原 OtpParser.parse 的写法，作为对照
+         */
+        @JvmStatic
+        fun parseLegacy(content: String): String? {
+            if (!OtpParser.verificationKeywords.any { content.contains(it) }) return null
+            val cleanContent = content.replace(" ", "")
+            for (pattern in OtpParser.patterns) {
+                val matcher = Pattern.compile(pattern).matcher(cleanContent)
+                if (matcher.find()) return matcher.group(0)
+            }
+            return null
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.google.android.accessibility.notification
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.io.OutputStream
+import java.io.RandomAccessFile
+import java.util.Random
+
+class NotificationHistoryStoreTest {
+
+    @get:Rule
+    val tmp = TemporaryFolder()
+
+    private var now = 0L
+
+    private fun newStore(
+        dir: File,
+        retentionMs: Long = NotificationHistoryStore.DAY_MS,
+        maxSegmentBytes: Long = 1024 * 1024,
+        segmentSpanMs: Long = NotificationHistoryStore.DAY_MS,
+        bucketMs: Long = 1000L,
+        batchSize: Int = 1000
+    ) = NotificationHistoryStore(dir, retentionMs, maxSegmentBytes, segmentSpanMs, bucketMs, batchSize) { now }
+
+    private fun record(i: Int, postTime: Long = i.toLong(), pkg: String = "com.a", title: String = "title$i", content: String = "content$i") =
+        HistoryRecord("key$i", pkg, "App", postTime, title, content, null, null)
+
+    private fun segmentFiles(dir: File): List<File> =
+        dir.listFiles { f -> f.name.endsWith(".seg") }!!.sortedBy { it.name }
+
+    private fun all(store: NotificationHistoryStore) = store.range(Long.MIN_VALUE, Long.MAX_VALUE)
+
+    @Test
+    fun scanDropsTornTail() {
+        val dir = tmp.newFolder()
+        val store = newStore(dir)
+        (1..3).forEach { store.append(record(it)) }
+        store.flush()
+        val goodSize = segmentFiles(dir).single().length()
+        store.append(record(4))
+        store.flush()
+        val file = segmentFiles(dir).single()
+        // 模拟写到一半进程被杀：第 4 条只留一半
+        RandomAccessFile(file, "rw").use { it.setLength(goodSize + (file.length() - goodSize) / 2) }
+
+        val reopened = newStore(dir)
+        assertEquals(listOf("key3", "key2", "key1"), all(reopened).map { it.key })
+        assertEquals(3, reopened.stats().records)
+        assertEquals(goodSize, reopened.stats().bytes)
+
+        // 截断的尾部之后还能继续写，重启后都能读到
+        reopened.append(record(5))
+        assertEquals(1, reopened.flush())
+        assertEquals(listOf("key5", "key3", "key2", "key1"), all(newStore(dir)).map { it.key })
+    }
+
+    @Test
+    fun scanStopsAtCrcMismatch() {
+        val dir = tmp.newFolder()
+        val store = newStore(dir)
+        (1..3).forEach { store.append(record(it)) }
+        store.flush()
+        val file = segmentFiles(dir).single()
+        RandomAccessFile(file, "rw").use { raf ->
+            // 第 2 条：跳过 长度 / CRC / postTime / key 长度，改 key 的第一个字节
+            val second = 4 + raf.readInt()
+            val pos = second + 4L + 4 + 8 + 2
+            raf.seek(pos)
+            val b = raf.read()
+            raf.seek(pos)
+            raf.write(b xor 0x01)
+        }
+
+        val reopened = newStore(dir)
+        assertEquals(listOf("key1"), all(reopened).map { it.key })
+        assertEquals(1, reopened.stats().records)
+    }
+
+    @Test
+    fun failedWriteTruncatesPartialBatch() {
+        val dir = tmp.newFolder()
+        val store = newStore(dir)
+        store.append(record(1))
+        store.append(record(2))
+        assertEquals(2, store.flush())
+        val file = segmentFiles(dir).single()
+        val goodSize = file.length()
+
+        // 写一半后抛异常，模拟磁盘写满
+        store.openAppend = { f ->
+            object : OutputStream() {
+                private val out = FileOutputStream(f, true)
+                override fun write(b: Int) = out.write(b)
+                override fun write(b: ByteArray, off: Int, len: Int) {
+                    out.write(b, off, len / 2)
+                    throw IOException("No space left on device")
+                }
+                override fun close() = out.close()
+            }
+        }
+        store.append(record(3))
+        store.append(record(4))
+        assertEquals(0, store.flush())
+        assertEquals(goodSize, file.length())
+        assertEquals(0, store.stats().pending)
+
+        store.openAppend = { FileOutputStream(it, true) }
+        store.append(record(5))
+        assertEquals(1, store.flush())
+        assertEquals(listOf("key5", "key2", "key1"), all(store).map { it.key })
+        // 失败的那批已经截掉，重启扫描能读到全部后续记录
+        val reopened = newStore(dir)
+        assertEquals(listOf("key5", "key2", "key1"), all(reopened).map { it.key })
+        assertEquals(file.length(), reopened.stats().bytes)
+    }
+
+    @Test
+    fun segmentsRollBySpanAndPurgeAfterRetention() {
+        val dir = tmp.newFolder()
+        val store = newStore(dir, retentionMs = 3000L, segmentSpanMs = 1000L)
+        for (i in 0..3) {
+            now = i * 1000L
+            store.append(record(i, postTime = now))
+            store.flush()
+        }
+        // 每个时间跨度一个分段；第一段 now - lastTime 正好等于保留期，还不删
+        assertEquals(4, store.stats().segments)
+
+        now = 4000L
+        store.append(record(4, postTime = now))
+        store.flush()
+        assertEquals(4, store.stats().segments)
+        assertEquals(4, segmentFiles(dir).size)
+        assertFalse(segmentFiles(dir).any { it.name.startsWith("00000001") })
+        assertEquals(listOf("key4", "key3", "key2", "key1"), all(store).map { it.key })
+        assertEquals(listOf("key4", "key3", "key2", "key1"), store.latest("com.a", 10).map { it.key })
+        assertTrue(store.search("title0").isEmpty())
+
+        // 重启时也清理：7000 - 4000 正好等于保留期，只剩最后一段
+        now = 7000L
+        val reopened = newStore(dir, retentionMs = 3000L, segmentSpanMs = 1000L)
+        assertEquals(listOf("key4"), all(reopened).map { it.key })
+        assertEquals(1, reopened.stats().segments)
+    }
+
+    @Test
+    fun segmentsRollBySize() {
+        val dir = tmp.newFolder()
+        val store = newStore(dir, maxSegmentBytes = 1L)
+        (1..3).forEach {
+            store.append(record(it))
+            store.flush()
+        }
+        assertEquals(3, segmentFiles(dir).size)
+        assertEquals(listOf("key3", "key2", "key1"), all(newStore(dir)).map { it.key })
+    }
+
+    @Test
+    fun queryLimitMatchesModelAcrossBuckets() {
+        val dir = tmp.newFolder()
+        val rnd = Random(7)
+        val packages = arrayOf("com.a", "com.b", "com.c")
+        // postTime 互不相同且乱序写入，分散在约 50 个桶里；batchSize 让一部分记录留在未写盘批次里
+        val times = (0 until 5000).shuffled(rnd).take(300)
+        val records = times.mapIndexed { i, t -> record(i, postTime = t.toLong(), pkg = packages[rnd.nextInt(3)]) }
+        val store = newStore(dir, bucketMs = 100L, batchSize = 7)
+        records.forEach { store.append(it) }
+        assertTrue(store.stats().pending > 0)
+
+        fun check(store: NotificationHistoryStore) {
+            repeat(300) {
+                val a = rnd.nextInt(5200).toLong() - 100
+                val b = rnd.nextInt(5200).toLong() - 100
+                val from = minOf(a, b)
+                val to = maxOf(a, b)
+                val pkg = if (rnd.nextBoolean()) null else packages[rnd.nextInt(3)]
+                val limit = 1 + rnd.nextInt(25)
+                val expected = records
+                    .filter { it.postTime in from..to && (pkg == null || it.pkgName == pkg) }
+                    .sortedByDescending { it.postTime }
+                    .take(limit)
+                assertEquals("from=$from to=$to pkg=$pkg limit=$limit", expected, store.range(from, to, pkg, limit))
+            }
+        }
+        check(store)
+        store.flush()
+        check(newStore(dir, bucketMs = 100L, batchSize = 7))
+    }
+
+    @Test
+    fun searchMatchesBeforeAndAfterFlush() {
+        val dir = tmp.newFolder()
+        val store = newStore(dir)
+        val longContent = "x".repeat(5000) + "TailMarker"
+        store.append(record(1, title = "Your CODE is ready", content = "验证码 386214"))
+        store.append(record(2, title = "快递", content = "取件码 6-2-3011 code"))
+        store.append(record(3, title = "long", content = longContent))
+        store.append(record(4, title = "ÄBC", content = "äbc"))
+        val needles = listOf("code", "CoDe", "验证码", "3011", "tailmarker", "xxxx", "äbc", "ÄBC", "missing")
+
+        val before = needles.associateWith { store.search(it).map { r -> r.key } }
+        assertEquals(4, store.stats().pending)
+        store.flush()
+        val after = needles.associateWith { store.search(it).map { r -> r.key } }
+        val reopened = needles.associateWith { newStore(dir).search(it).map { r -> r.key } }
+
+        assertEquals(before, after)
+        assertEquals(before, reopened)
+        assertEquals(listOf("key2", "key1"), after["code"])
+        // 超过正文长度上限的部分不参与搜索
+        assertEquals(emptyList<String>(), after["tailmarker"])
+        assertEquals(listOf("key3"), after["xxxx"])
+        // 非 ASCII 不折叠大小写
+        assertEquals(listOf("key4"), after["äbc"])
+        assertEquals(listOf("key4"), after["ÄBC"])
+    }
+}
@@ -72,7 +72,7 @@ class NotificationListenerServiceImp : NotificationListenerServiceAbstract() {
             //if (!Regex("@.*欢迎.*加入").containsMatchIn(content)) return@launch
 
             if (pI != null) {
-                LatestPendingIntentStore.saveLatest(buildNotificationUniqueKey(sbn), pI)
+                LatestPendingIntentStore.saveLatest(sbn, pI)
             }
             if (KeyguardUnLock.screenIsOn() && KeyguardUnLock.keyguardIsOn()){
                 //已解锁